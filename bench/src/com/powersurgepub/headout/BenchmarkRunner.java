@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import org.openjdk.jmh.profile.*;
+  import org.openjdk.jmh.runner.*;
+  import org.openjdk.jmh.runner.options.*;
+
+/**
+ Runs the Head Out benchmarks with the GC profiler attached, so that 
+ allocation per operation is reported alongside throughput and latency. 
+ Any arguments are taken as regular expressions selecting the benchmarks 
+ to be run; with no arguments, all are run. 
+
+ @author Herb Bowie
+ */
+public class BenchmarkRunner {
+  
+  public static void main(String[] args) 
+      throws RunnerException {
+    
+    ChainedOptionsBuilder builder = new OptionsBuilder()
+        .addProfiler(GCProfiler.class)
+        .shouldFailOnError(true);
+    if (args.length == 0) {
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+    } else {
+      for (String pattern : args) {
+        builder.include(pattern);
+      }
+    }
+    new Runner(builder.build()).run();
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.mkdown.*;
+
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Compares finding the headings of a document with a full pass of the 
+ Markdown parser, as Create ToC used to do, against the heading scanner. 
+ Documents are mostly prose, with one heading in every 50 lines. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeadingScannerBenchmark {
+  
+  /** Number of lines in the document. */
+  @Param({"10000", "100000"})
+  public int lines;
+  
+  private             String[]            document;
+  
+  @Setup(Level.Trial)
+  public void setUp() {
+    document = SyntheticDocuments.markdown(lines, 50, 4).split("\n", -1);
+  }
+  
+  @Benchmark
+  public int markdownParser() {
+    int headings = 0;
+    MarkdownInitialParser parser = new MarkdownInitialParser(
+        new MarkdownLineReader() {
+          int next = 0;
+          public String getMarkdownInputLine() {
+            if (next < document.length) {
+              next++;
+              return document[next - 1];
+            } else {
+              return null;
+            }
+          }
+        });
+    MarkdownLine mdLine = parser.getNextLine();
+    while (mdLine != null) {
+      if (mdLine.getHeadingLevel() > 0 && mdLine.getID().length() > 0) {
+        headings++;
+      }
+      mdLine = parser.getNextLine();
+    }
+    return headings;
+  }
+  
+  @Benchmark
+  public int headingScanner() {
+    int headings = 0;
+    HeadingScanner scanner = new HeadingScanner();
+    for (String line : document) {
+      int level = scanner.scanLine(line);
+      if (level > 0 && HeadingIDs.idFor(level, scanner.getHeadingText()).length() > 0) {
+        headings++;
+      }
+    }
+    return headings;
+  }
+
+}
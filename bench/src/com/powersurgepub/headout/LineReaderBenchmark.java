@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Compares the cost of reading a local Markdown file line by line with 
+ FileLineReader and with MappedLineReader, both as Strings and (for the 
+ mapped reader) as CharSequence views. Divide gc.alloc.rate.norm by the 
+ number of lines to compare allocation per line. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineReaderBenchmark {
+  
+  /** Number of lines in the file. */
+  @Param({"10000", "1000000"})
+  public int lines;
+  
+  private             File                file;
+  
+  @Setup(Level.Trial)
+  public void setUp() 
+      throws IOException {
+    Path path = Files.createTempFile("headout-bench", ".md");
+    Files.write(path, 
+        SyntheticDocuments.markdown(lines, 10, 4).getBytes(StandardCharsets.UTF_8));
+    file = path.toFile();
+  }
+  
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    file.delete();
+  }
+  
+  @Benchmark
+  public long fileLineReader() {
+    return readStrings(new FileLineReader(file));
+  }
+  
+  @Benchmark
+  public long mappedStrings() {
+    return readStrings(new MappedLineReader(file));
+  }
+  
+  @Benchmark
+  public long mappedViews() {
+    MappedLineReader reader = new MappedLineReader(file);
+    long total = 0;
+    reader.open();
+    CharSequence line = reader.readLineSequence();
+    while (line != null) {
+      if (line.length() > 0) {
+        total = total + line.charAt(0);
+      }
+      total = total + line.length();
+      line = reader.readLineSequence();
+    }
+    reader.close();
+    return total;
+  }
+  
+  private long readStrings(TextLineReader reader) {
+    long total = 0;
+    reader.open();
+    String line = reader.readLine();
+    while (line != null) {
+      if (line.length() > 0) {
+        total = total + line.charAt(0);
+      }
+      total = total + line.length();
+      line = reader.readLine();
+    }
+    reader.close();
+    return total;
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the three Markdown transforms (Markdown ToC, HTML ToC and 
+ Add ToC) across documents of varying size, heading density and heading 
+ depth. The document is generated once per trial, so that only the 
+ transform itself is measured. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownTocBenchmark {
+  
+  /** Number of lines in the document. */
+  @Param({"1000", "100000"})
+  public int lines;
+  
+  /** One line in this many is a heading. */
+  @Param({"5", "50"})
+  public int headingEvery;
+  
+  /** Deepest heading level used. */
+  @Param({"2", "6"})
+  public int depth;
+  
+  /** The transform to be measured. */
+  @Param({"md-toc", "html-toc", "add-toc"})
+  public String type;
+  
+  private             String              document;
+  private             TransformOptions    options;
+  private             NullLineWriter      sink = new NullLineWriter();
+  
+  @Setup(Level.Trial)
+  public void setUp() {
+    document = SyntheticDocuments.markdown(lines, headingEvery, depth);
+    options = new TransformOptions(TransformOptions.lookupTransformType(type));
+  }
+  
+  @Benchmark
+  public long transform() 
+      throws TransformException {
+    GenTocFromMarkdown transformer = new GenTocFromMarkdown(options);
+    transformer.transformNow(new StringLineReader(document), sink);
+    return sink.getChars();
+  }
+
+}
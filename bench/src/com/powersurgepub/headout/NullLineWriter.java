@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ A line writer that throws its output away, keeping only a count of the 
+ characters and lines written, so that benchmarks measure the transformer 
+ rather than the destination. 
+
+ @author Herb Bowie
+ */
+public class NullLineWriter
+    implements 
+      TextLineWriter,
+      CharLineWriter {
+  
+  private             long                chars = 0;
+  private             long                lines = 0;
+  
+  public NullLineWriter() {
+    
+  }
+  
+  public boolean openForOutput() {
+    chars = 0;
+    lines = 0;
+    return true;
+  }
+  
+  public boolean newLine() {
+    lines++;
+    return true;
+  }
+  
+  public boolean writeLine(String s) {
+    chars = chars + s.length();
+    lines++;
+    return true;
+  }
+  
+  public boolean write(String s) {
+    chars = chars + s.length();
+    return true;
+  }
+  
+  public boolean write(char[] buffer, int offset, int length) {
+    chars = chars + length;
+    return true;
+  }
+  
+  public boolean flush() {
+    return true;
+  }
+  
+  public boolean close() {
+    return true;
+  }
+  
+  public boolean isOK() {
+    return true;
+  }
+  
+  public String getDestination() {
+    return "null";
+  }
+  
+  public long getChars() {
+    return chars;
+  }
+  
+  public long getLines() {
+    return lines;
+  }
+
+}
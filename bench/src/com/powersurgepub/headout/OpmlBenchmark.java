@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the complete OPML to Markdown transform, from parsing through 
+ the insertion of the Table of Contents, in both the default (two pass) 
+ and streaming modes, with either the SAX or the StAX parser. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpmlBenchmark {
+  
+  /** Number of outline elements. */
+  @Param({"1000", "20000"})
+  public int outlines;
+  
+  /** Deepest nesting of outline elements. */
+  @Param({"3", "8"})
+  public int depth;
+  
+  /** Lines of note text attached to each outline element. */
+  @Param({"0", "8"})
+  public int noteLines;
+  
+  @Param({"false", "true"})
+  public boolean streaming;
+  
+  /** Read with the StAX pull parser rather than SAX? */
+  @Param({"false", "true"})
+  public boolean pull;
+  
+  private             String              document;
+  private             TransformOptions    options;
+  private             NullLineWriter      sink = new NullLineWriter();
+  
+  @Setup(Level.Trial)
+  public void setUp() {
+    document = SyntheticDocuments.opml(outlines, depth, noteLines, 60);
+    options = new TransformOptions(TransformOptions.MARKDOWN_FROM_OPML);
+    options.setStreaming(streaming);
+    options.setPullParsing(pull);
+  }
+  
+  @Benchmark
+  public long transform() 
+      throws TransformException {
+    OPMLtoMarkdown transformer = new OPMLtoMarkdown(options);
+    transformer.transformNow(new StringLineReader(document), sink);
+    return sink.getChars();
+  }
+
+}
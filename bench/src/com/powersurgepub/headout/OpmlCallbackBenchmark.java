@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+  import org.xml.sax.helpers.*;
+
+/**
+ Measures the SAX callbacks of the OPML to Markdown transform in 
+ isolation, driving startElement and endElement directly with prepared 
+ attributes, so that the cost of the XML parser is excluded. This is where 
+ headings are written and notes are split into lines. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpmlCallbackBenchmark {
+  
+  /** Nesting depth of each outline element. */
+  @Param({"2", "8"})
+  public int depth;
+  
+  /** Lines of note text attached to each outline element. */
+  @Param({"0", "8", "64"})
+  public int noteLines;
+  
+  private             OPMLtoMarkdown      transformer;
+  private             NullLineWriter      sink = new NullLineWriter();
+  private             AttributesImpl      attributes = new AttributesImpl();
+  
+  @Setup(Level.Trial)
+  public void setUp() {
+    TransformOptions options 
+        = new TransformOptions(TransformOptions.MARKDOWN_FROM_OPML);
+    transformer = new OPMLtoMarkdown(options);
+    transformer.openMarkdownWriter(sink);
+    attributes.addAttribute("", "text", "text", "CDATA", 
+        "Configure the outline heading");
+    if (noteLines > 0) {
+      StringBuilder note = new StringBuilder();
+      for (int i = 0; i < noteLines; i++) {
+        if (i > 0) {
+          note.append('\n');
+          if (i % 4 == 0) {
+            note.append('\n');
+          }
+        }
+        note.append("The quick brown fox jumps over the lazy dog, once more.");
+      }
+      attributes.addAttribute("", "_note", "_note", "CDATA", note.toString());
+    }
+  }
+  
+  /**
+   Open and close one branch of the outline, down to the given depth. 
+  */
+  @Benchmark
+  @OperationsPerInvocation(8)
+  public long outlineBranch() {
+    for (int i = 0; i < 8; i++) {
+      for (int d = 0; d < depth; d++) {
+        transformer.startElement("", "outline", "outline", attributes);
+      }
+      for (int d = 0; d < depth; d++) {
+        transformer.endElement("", "outline", "outline");
+      }
+    }
+    return sink.getChars();
+  }
+
+}
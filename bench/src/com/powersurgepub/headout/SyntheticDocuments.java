@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import java.util.*;
+
+/**
+ Generates Markdown and OPML documents of any desired shape, for use as 
+ benchmark input. The same parameters always produce the same document. 
+
+ @author Herb Bowie
+ */
+public class SyntheticDocuments {
+  
+  private static final String[] WORDS = {
+    "the", "outline", "heading", "table", "of", "contents", "markdown", 
+    "document", "section", "chapter", "install", "configure", "notes", 
+    "example", "and", "with", "a", "for", "reference", "manual"
+  };
+  
+  private SyntheticDocuments() {
+    
+  }
+  
+  /**
+   Generate a Markdown document. 
+  
+   @param lines        The approximate number of lines wanted. 
+   @param headingEvery One line in this many will be a heading. 
+   @param depth        The deepest heading level to be used (1 - 6). 
+   @return The generated document. 
+  */
+  public static String markdown(int lines, int headingEvery, int depth) {
+    Random random = new Random(lines * 31 + headingEvery * 7 + depth);
+    StringBuilder doc = new StringBuilder(lines * 60);
+    doc.append("# Synthetic Document\n\n");
+    doc.append("## Table of Contents\n\n");
+    int level = 1;
+    int headingNumber = 0;
+    for (int i = 0; i < lines; i++) {
+      if (headingEvery > 0 && i % headingEvery == 0) {
+        // Walk the levels up and down, as a real document would
+        if (level < depth && random.nextBoolean()) {
+          level++;
+        } else if (level > 2 && random.nextInt(3) == 0) {
+          level--;
+        } else if (level < 2) {
+          level = 2;
+        }
+        headingNumber++;
+        doc.append('\n');
+        for (int h = 0; h < level; h++) {
+          doc.append('#');
+        }
+        doc.append(' ');
+        appendWords(doc, random, 3);
+        doc.append(' ');
+        doc.append(headingNumber);
+        doc.append("\n\n");
+      } else if (i % 17 == 16) {
+        doc.append('\n');
+      } else {
+        appendWords(doc, random, 10);
+        doc.append(".\n");
+      }
+    } // end for each line
+    return doc.toString();
+  }
+  
+  /**
+   Generate an OPML outline. 
+  
+   @param outlines       The number of outline elements wanted. 
+   @param depth          The deepest nesting level to be used. 
+   @param noteLines      The number of lines in each note; zero for no notes. 
+   @param noteLineLength The approximate length of each note line. 
+   @return The generated outline. 
+  */
+  public static String opml(int outlines, int depth, 
+      int noteLines, int noteLineLength) {
+    Random random = new Random(outlines * 31 + depth * 7 + noteLines);
+    StringBuilder doc = new StringBuilder();
+    doc.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    doc.append("<opml version=\"2.0\">\n<head><title>Synthetic</title></head>\n<body>\n");
+    doc.append("<outline text=\"Synthetic Outline\">\n");
+    doc.append("<outline text=\"Table of Contents\"/>\n");
+    int open = 0;
+    for (int i = 0; i < outlines; i++) {
+      int next = 1 + random.nextInt(depth);
+      if (next > open + 1) {
+        next = open + 1;
+      }
+      while (open >= next) {
+        doc.append("</outline>\n");
+        open--;
+      }
+      open++;
+      doc.append("<outline text=\"");
+      appendWords(doc, random, 4);
+      doc.append(' ');
+      doc.append(i);
+      doc.append('"');
+      if (noteLines > 0) {
+        doc.append(" _note=\"");
+        for (int n = 0; n < noteLines; n++) {
+          if (n > 0) {
+            doc.append("&#10;");
+            if (n % 4 == 0) {
+              doc.append("&#10;");
+            }
+          }
+          appendWords(doc, random, Math.max(1, noteLineLength / 6));
+        }
+        doc.append('"');
+      }
+      doc.append(">\n");
+    } // end for each outline
+    while (open > 0) {
+      doc.append("</outline>\n");
+      open--;
+    }
+    doc.append("</outline>\n</body>\n</opml>\n");
+    return doc.toString();
+  }
+  
+  private static void appendWords(StringBuilder doc, Random random, int count) {
+    for (int w = 0; w < count; w++) {
+      if (w > 0) {
+        doc.append(' ');
+      }
+      doc.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+  }
+
+}
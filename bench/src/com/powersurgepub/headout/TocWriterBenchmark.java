@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures writing a Table of Contents from headings already found, in 
+ each output format. With a sink that accepts characters directly, the 
+ steady state should allocate nothing: gc.alloc.rate.norm should be close 
+ to zero bytes per operation. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TocWriterBenchmark {
+  
+  /** Number of headings in the Table of Contents. */
+  @Param({"100", "2000"})
+  public int headings;
+  
+  @Param({"markdown", "html", "compact"})
+  public String format;
+  
+  private             int[]               levels;
+  private             String[]            ids;
+  private             String[]            texts;
+  private             TocWriter           tocWriter;
+  private             NullLineWriter      sink = new NullLineWriter();
+  
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(headings);
+    levels = new int[headings];
+    ids = new String[headings];
+    texts = new String[headings];
+    int level = 1;
+    for (int i = 0; i < headings; i++) {
+      if (level < 4 && random.nextBoolean()) {
+        level++;
+      } else if (level > 1 && random.nextInt(3) == 0) {
+        level--;
+      }
+      levels[i] = level;
+      texts[i] = "Configure the outline heading " + String.valueOf(i);
+      ids[i] = "configure-the-outline-heading-" + String.valueOf(i);
+    }
+    int markupFormat = MarkupWriter.HTML_FRAGMENT_FORMAT;
+    if (format.equals("markdown")) {
+      markupFormat = MarkupWriter.MARKDOWN_FORMAT;
+    }
+    tocWriter = new TocWriter(sink, markupFormat);
+    tocWriter.setCompact(format.equals("compact"));
+  }
+  
+  @Benchmark
+  public long writeToc() {
+    tocWriter.start();
+    for (int i = 0; i < headings; i++) {
+      tocWriter.addHeading(levels[i], ids[i], texts[i]);
+    }
+    tocWriter.finish();
+    return sink.getChars();
+  }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+
+  import java.util.*;
+  import java.util.concurrent.atomic.*;
+  import java.util.concurrent.locks.*;
+
+  import javafx.application.*;
+
+/**
+ A log output that never keeps the thread doing the logging waiting. Each 
+ line is placed in a fixed-size ring buffer, without any locking, and a 
+ single background thread takes the lines from the buffer in batches and 
+ passes them along to the real log output: either directly, or on the 
+ JavaFX application thread, one batch at a time, for a log window. <p>
+
+ If lines arrive faster than they can be passed along, and the buffer 
+ fills, further lines are dropped rather than making anyone wait, and a 
+ line noting how many were dropped is passed along once there is room. 
+
+ @author Herb Bowie
+ */
+public class AsyncLogOutput 
+    extends LogOutput {
+  
+  /** The default number of lines the buffer can hold. */
+  public static final int   DEFAULT_CAPACITY = 8192;
+  
+  /** How long the background thread rests when there is nothing to do. */
+  private static final long IDLE_NANOS = 5000000;
+  
+  /** The most lines passed along in one batch. */
+  private static final int  MAX_BATCH = 512;
+  
+  private             LogOutput           target;
+  private             boolean             fxThread;
+  
+  private             int                 mask;
+  private             String[]            lines;
+  
+  /** 
+   For each slot, the position of the next line to be placed there, or 
+   one more than the position of the line now waiting there. 
+  */
+  private             AtomicLongArray     sequences;
+  
+  /** The position at which the next line will be placed. */
+  private             AtomicLong          tail = new AtomicLong();
+  
+  /** The position of the next line to be taken; used only by the drainer. */
+  private             long                head = 0;
+  
+  private             LongAdder           dropped = new LongAdder();
+  private             long                droppedReported = 0;
+  
+  private volatile    boolean             closing = false;
+  private             Thread              drainer;
+  
+  /**
+   Construct an output with a buffer of the default size. 
+  
+   @param target   The log output to receive the lines. 
+   @param fxThread True if the target must only be written from the 
+                   JavaFX application thread, as a log window must. 
+  */
+  public AsyncLogOutput (LogOutput target, boolean fxThread) {
+    this(target, fxThread, DEFAULT_CAPACITY);
+  }
+  
+  /**
+   Construct an output. 
+  
+   @param target   The log output to receive the lines. 
+   @param fxThread True if the target must only be written from the 
+                   JavaFX application thread. 
+   @param capacity The number of lines the buffer can hold, which will be 
+                   rounded up to a power of two. 
+  */
+  public AsyncLogOutput (LogOutput target, boolean fxThread, int capacity) {
+    this.target = target;
+    this.fxThread = fxThread;
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    mask = size - 1;
+    lines = new String[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    drainer = new Thread(() -> drainUntilClosed(), 
+        Headout.PROGRAM_NAME + " Log");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+  
+  /**
+   Place a line in the buffer, or drop it if the buffer is full. 
+  
+   @param line The line to be logged. 
+  */
+  public void writeLine(String line) {
+    if (! offer(line)) {
+      dropped.increment();
+    }
+  }
+  
+  /**
+   Place a line in the next free slot, if there is one. 
+  
+   @param line The line to be logged. 
+   @return True if the line was placed, false if the buffer was full. 
+  */
+  private boolean offer(String line) {
+    long position = tail.get();
+    while (true) {
+      int slot = (int)position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          lines[slot] = line;
+          // Publishes the line to the drainer
+          sequences.set(slot, position + 1);
+          return true;
+        }
+        position = tail.get();
+      }
+      else
+      if (difference < 0) {
+        // The drainer has not yet emptied this slot
+        return false;
+      } else {
+        // Another thread has just taken this position
+        position = tail.get();
+      }
+    } // end while looking for a free slot
+  }
+  
+  /**
+   Take the lines waiting in the buffer, up to a limit. Called only by 
+   the drainer, or once the drainer has stopped. 
+  
+   @param batch The list to receive the lines. 
+   @return The number of lines taken. 
+  */
+  private int take(List<String> batch) {
+    int taken = 0;
+    while (taken < MAX_BATCH) {
+      int slot = (int)head & mask;
+      if (sequences.get(slot) != head + 1) {
+        break;
+      }
+      batch.add(lines[slot]);
+      lines[slot] = null;
+      // Frees the slot for the line that will come one lap later
+      sequences.set(slot, head + lines.length);
+      head++;
+      taken++;
+    } // end while lines are waiting
+    long droppedNow = dropped.sum();
+    if (droppedNow > droppedReported) {
+      batch.add(Headout.PROGRAM_NAME + " log: " 
+          + String.valueOf(droppedNow - droppedReported) 
+          + " events dropped because the log could not keep up");
+      droppedReported = droppedNow;
+    }
+    return taken;
+  }
+  
+  private void drainUntilClosed() {
+    List<String> batch = new ArrayList<>(MAX_BATCH + 1);
+    while (! closing) {
+      if (take(batch) == 0 && batch.isEmpty()) {
+        LockSupport.parkNanos(IDLE_NANOS);
+      } else {
+        deliver(batch);
+        batch = new ArrayList<>(MAX_BATCH + 1);
+      }
+    } // end while open
+  }
+  
+  /**
+   Pass a batch of lines to the target. 
+  
+   @param batch The lines to be passed along. 
+  */
+  private void deliver(List<String> batch) {
+    if (fxThread && ! Platform.isFxApplicationThread()) {
+      Platform.runLater(() -> write(batch));
+    } else {
+      write(batch);
+    }
+  }
+  
+  private void write(List<String> batch) {
+    for (String line : batch) {
+      target.writeLine(line);
+    }
+    if (target instanceof RollingFileLogOutput) {
+      ((RollingFileLogOutput)target).flush();
+    }
+  }
+  
+  /**
+   Get the number of lines dropped so far, because the buffer was full. 
+  
+   @return The number of lines dropped. 
+  */
+  public long getDropped() {
+    return dropped.sum();
+  }
+  
+  /**
+   Stop the background thread, pass along any lines still waiting, and 
+   close the target, unless it belongs to the JavaFX application thread. 
+  */
+  public void close() {
+    if (closing) {
+      return;
+    }
+    closing = true;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    List<String> batch = new ArrayList<>(MAX_BATCH + 1);
+    while (take(batch) > 0 || ! batch.isEmpty()) {
+      deliver(batch);
+      batch = new ArrayList<>(MAX_BATCH + 1);
+    }
+    if (! fxThread) {
+      target.close();
+    }
+  }
+
+}
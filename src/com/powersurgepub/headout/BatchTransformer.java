@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.text.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.stream.*;
+
+/**
+ Applies one transformation to every matching file within a directory tree.
+ Files are read ahead on a small I/O pool, so that the next file's contents
+ are usually waiting by the time a transform thread is free, and the
+ transforms themselves run on a fork-join pool sized to the available
+ processors. Results are reported in path order, regardless of the order in
+ which the files finish.
+
+ @author Herb Bowie
+ */
+public class BatchTransformer {
+
+  /** Output file name endings, indexed by built-in transform type. */
+  public static final String[] OUTPUT_SUFFIXES = {
+    "-toc.md",
+    "-toc.html",
+    "-with-toc.md",
+    ".md",
+    "-section.md",
+    ".opml"
+  };
+
+  /** Default file name patterns, indexed by built-in transform type. */
+  public static final String[] DEFAULT_GLOBS = {
+    "**.{md,markdown}",
+    "**.{md,markdown}",
+    "**.{md,markdown}",
+    "**.opml",
+    "**.{md,markdown}",
+    "**.{md,markdown}"
+  };
+
+  private             TransformOptions    options;
+  private             Path                inputDir;
+  private             Path                outputDir;
+  private             String              glob;
+  private             int                 threads;
+
+  private             PathMatcher         matcher;
+  private             String              outputSuffix;
+  private             boolean             skipOutputs;
+
+  private             PrintStream         report = System.err;
+
+  /**
+   Set up a batch run.
+
+   @param options   The transformation to be applied to each file.
+   @param inputDir  The top of the directory tree to be searched.
+   @param glob      A glob pattern, relative to the input directory, used to
+                    select files; null to use the default for the transform.
+   @param outputDir The top of the output directory tree; null to write
+                    each output alongside its source.
+   @param threads   The number of transform threads; zero or less to use
+                    one per available processor.
+  */
+  public BatchTransformer (
+      TransformOptions options,
+      Path inputDir,
+      String glob,
+      Path outputDir,
+      int threads) {
+
+    this.options = options;
+    this.inputDir = inputDir;
+    if (glob == null || glob.length() == 0) {
+      this.glob = TransformerRegistry.getShared()
+          .getProvider(options.getTransformTypeIndex()).getInputGlob();
+    } else {
+      this.glob = glob;
+    }
+    if (outputDir == null) {
+      this.outputDir = inputDir;
+    } else {
+      this.outputDir = outputDir;
+    }
+    if (threads > 0) {
+      this.threads = threads;
+    } else {
+      this.threads = Runtime.getRuntime().availableProcessors();
+    }
+    matcher = inputDir.getFileSystem().getPathMatcher("glob:" + this.glob);
+    outputSuffix = TransformerRegistry.getShared()
+        .getProvider(options.getFinalTransformTypeIndex()).getOutputSuffix();
+    skipOutputs = ! outputSuffix.equals(".md");
+  }
+
+  /**
+   Specify where progress and the final summary should be printed.
+
+   @param report The stream to receive the report.
+  */
+  public void setReport(PrintStream report) {
+    this.report = report;
+  }
+
+  /**
+   Find all the files to be transformed, in a stable (sorted) order.
+
+   @return The matching files.
+   @throws IOException If the directory tree could not be walked.
+  */
+  public List<Path> findFiles()
+      throws IOException {
+
+    try (Stream<Path> paths = Files.walk(inputDir)) {
+      return paths
+          .filter(path -> matches(path))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   Should the given file be transformed? Files named like the output of
+   this transformation are excluded, so that a batch may be run in place.
+
+   @param path A path within the input directory.
+   @return True if the path is a regular file matching the glob pattern.
+  */
+  public boolean matches(Path path) {
+    return Files.isRegularFile(path)
+        && matcher.matches(inputDir.relativize(path))
+        && ! (skipOutputs
+            && path.getFileName().toString().endsWith(outputSuffix));
+  }
+
+  public Path getInputDir() {
+    return inputDir;
+  }
+
+  /**
+   Determine the output path for a source file.
+
+   @param source A source file within the input directory.
+   @return The corresponding output file.
+  */
+  public Path getOutputPath(Path source) {
+    Path relative = inputDir.relativize(source);
+    String fileName = relative.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    if (dot > 0) {
+      fileName = fileName.substring(0, dot);
+    }
+    fileName = fileName + outputSuffix;
+    return outputDir.resolve(relative).resolveSibling(fileName);
+  }
+
+  /**
+   Transform every matching file.
+
+   @return The number of files that failed.
+   @throws IOException If the directory tree could not be walked.
+  */
+  public int run()
+      throws IOException {
+
+    long startTime = System.nanoTime();
+    List<Path> files = findFiles();
+
+    // Limit the number of files read ahead, so that memory stays bounded
+    Semaphore inFlight = new Semaphore(threads * 2);
+    ExecutorService ioPool = Executors.newFixedThreadPool(2);
+    ForkJoinPool transformPool = new ForkJoinPool(threads);
+
+    List<CompletableFuture<FileResult>> futures = new ArrayList<>(files.size());
+    BatchSummary summary = new BatchSummary();
+    int reported = 0;
+    try {
+      for (Path source : files) {
+        inFlight.acquireUninterruptibly();
+        CompletableFuture<FileResult> future = CompletableFuture
+            .supplyAsync(() -> readSource(source), ioPool)
+            .thenApplyAsync(result -> transform(result), transformPool)
+            .whenComplete((result, e) -> inFlight.release());
+        futures.add(future);
+        while (reported < futures.size() && futures.get(reported).isDone()) {
+          report(futures.get(reported).join(), summary);
+          reported++;
+        }
+      } // end for each source file
+      while (reported < futures.size()) {
+        report(futures.get(reported).join(), summary);
+        reported++;
+      }
+    } finally {
+      ioPool.shutdown();
+      transformPool.shutdown();
+    }
+
+    summary.elapsedNanos = System.nanoTime() - startTime;
+    printSummary(summary);
+    return summary.failures;
+  }
+
+  /**
+   Read and transform a single file, on the calling thread.
+
+   @param source The file to be transformed.
+   @return The result of the transformation.
+  */
+  FileResult transformFile(Path source) {
+    return transform(readSource(source));
+  }
+
+  /**
+   Read the entire source file. Runs on the I/O pool.
+
+   @param source The file to be read.
+   @return The result so far, containing the source text or an error.
+  */
+  private FileResult readSource(Path source) {
+    FileResult result = new FileResult(source);
+    try {
+      byte[] bytes = Files.readAllBytes(source);
+      result.bytesIn = bytes.length;
+      result.text = new String(bytes, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      result.message = "Could not be read: " + e.getMessage();
+    }
+    return result;
+  }
+
+  /**
+   Transform one file's contents. Runs on the transform pool.
+
+   @param result The result of reading the file.
+   @return The completed result.
+  */
+  private FileResult transform(FileResult result) {
+    if (result.text == null) {
+      return result;
+    }
+    Path target = getOutputPath(result.source);
+    try {
+      if (Files.isSameFile(target, result.source)) {
+        result.message = "Output would replace its source";
+        result.text = null;
+        return result;
+      }
+    } catch (IOException e) {
+      // Target does not exist yet, so it cannot be the source
+    }
+    HeadoutEvents.BatchFile event = new HeadoutEvents.BatchFile();
+    event.begin();
+    long startTime = System.nanoTime();
+    try {
+      Path parent = target.getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      CountingLineReader reader
+          = new CountingLineReader(new StringLineReader(result.text));
+      result.text = null;
+      HeadOutTransformer transformer
+          = HeadoutCommandLine.createTransformer(options);
+      TextLineWriter writer = new FileMaker(target.toFile());
+      transformer.transformNow(reader, writer);
+      result.linesIn = reader.getLines();
+      result.bytesOut = Files.size(target);
+      result.ok = true;
+    } catch (TransformException e) {
+      result.message = e.getMessage();
+    } catch (IOException e) {
+      result.message = "Could not be written: " + e.getMessage();
+    } catch (RuntimeException e) {
+      result.message = e.toString();
+    }
+    result.nanos = System.nanoTime() - startTime;
+    event.end();
+    if (event.shouldCommit()) {
+      event.transformType = options.getTransformTypeString();
+      event.source = result.source.toString();
+      event.bytesIn = result.bytesIn;
+      event.bytesOut = result.bytesOut;
+      event.linesIn = result.linesIn;
+      event.ok = result.ok;
+      event.message = result.message;
+      event.commit();
+    }
+    return result;
+  }
+
+  private void report(FileResult result, BatchSummary summary) {
+    summary.files++;
+    summary.bytesIn = summary.bytesIn + result.bytesIn;
+    summary.bytesOut = summary.bytesOut + result.bytesOut;
+    summary.linesIn = summary.linesIn + result.linesIn;
+    if (result.ok) {
+      report.println("  ok    " + inputDir.relativize(result.source));
+    } else {
+      summary.failures++;
+      report.println("  FAIL  " + inputDir.relativize(result.source)
+          + ": " + result.message);
+    }
+  }
+
+  private void printSummary(BatchSummary summary) {
+    NumberFormat numberFormat = NumberFormat.getInstance();
+    double seconds = summary.elapsedNanos / 1000000000.0;
+    report.println(Headout.PROGRAM_NAME + " batch: "
+        + options.toString());
+    report.println("  Files:    " + numberFormat.format(summary.files)
+        + " (" + numberFormat.format(summary.failures) + " failed)");
+    report.println("  Bytes:    " + numberFormat.format(summary.bytesIn)
+        + " in, " + numberFormat.format(summary.bytesOut) + " out");
+    report.println("  Lines:    " + numberFormat.format(summary.linesIn));
+    report.println("  Elapsed:  " + numberFormat.format(seconds) + " seconds, "
+        + String.valueOf(threads) + " threads");
+    if (seconds > 0) {
+      report.println("  Rate:     "
+          + numberFormat.format(Math.round(summary.linesIn / seconds))
+          + " lines/sec, "
+          + numberFormat.format(Math.round(summary.files / seconds))
+          + " files/sec");
+    }
+  }
+
+  /**
+   What happened to one file.
+  */
+  static class FileResult {
+    Path      source;
+    String    text = null;
+    boolean   ok = false;
+    String    message = "";
+    long      bytesIn = 0;
+    long      bytesOut = 0;
+    long      linesIn = 0;
+    long      nanos = 0;
+
+    FileResult(Path source) {
+      this.source = source;
+    }
+  }
+
+  /**
+   Running totals for a batch.
+  */
+  static class BatchSummary {
+    int       files = 0;
+    int       failures = 0;
+    long      bytesIn = 0;
+    long      bytesOut = 0;
+    long      linesIn = 0;
+    long      elapsedNanos = 0;
+  }
+
+}
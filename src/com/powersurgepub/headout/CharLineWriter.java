@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ An optional capability of a line writer: accepting characters straight 
+ from an array, so that a caller building output in a reusable buffer 
+ need not create a String for every line. 
+
+ @author Herb Bowie
+ */
+public interface CharLineWriter {
+  
+  /**
+   Write characters from an array, without ending the line. 
+  
+   @param chars  The characters to be written. 
+   @param offset The index of the first character to be written. 
+   @param length The number of characters to be written. 
+   @return True if everything is ok. 
+  */
+  public boolean write(char[] chars, int offset, int length);
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ A line reader that passes through the lines of another reader, keeping
+ count of the lines and characters consumed along the way.
+
+ @author Herb Bowie
+ */
+public class CountingLineReader
+    implements TextLineReader {
+
+  private             TextLineReader      reader;
+
+  private volatile    long                lines = 0;
+  private volatile    long                chars = 0;
+
+  /**
+   Wrap another line reader.
+
+   @param reader The reader supplying the lines.
+  */
+  public CountingLineReader (TextLineReader reader) {
+    this.reader = reader;
+  }
+
+  public boolean open() {
+    lines = 0;
+    chars = 0;
+    return reader.open();
+  }
+
+  public String readLine() {
+    String line = reader.readLine();
+    if (line != null) {
+      lines++;
+      chars = chars + line.length() + 1;
+    }
+    return line;
+  }
+
+  /**
+   Read the next line, as a view onto a mapped file where the wrapped
+   reader can supply one, so that counting costs no extra Strings.
+
+   @return The next line, or null at the end of the input.
+  */
+  public CharSequence readLineSequence() {
+    CharSequence line = MappedLineReader.readLineFrom(reader);
+    if (line != null) {
+      lines++;
+      chars = chars + line.length() + 1;
+    }
+    return line;
+  }
+
+  public boolean close() {
+    return reader.close();
+  }
+
+  public boolean isOK() {
+    return reader.isOK();
+  }
+
+  public boolean isAtEnd() {
+    return reader.isAtEnd();
+  }
+
+  /**
+   Get the number of lines read so far.
+
+   @return The number of lines read.
+  */
+  public long getLines() {
+    return lines;
+  }
+
+  /**
+   Get the number of characters read so far, counting one for each
+   line terminator.
+
+   @return The number of characters read.
+  */
+  public long getChars() {
+    return chars;
+  }
+
+  /**
+   Identify the input using the wrapped reader's identity, so that
+   transformers looking for a file path still find it.
+
+   @return The string value of the wrapped reader.
+  */
+  public String toString() {
+    return reader.toString();
+  }
+
+  /**
+   Get the wrapped reader.
+
+   @return The reader supplying the lines.
+  */
+  public TextLineReader getReader() {
+    return reader;
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ A line writer that holds its output until told to commit it to the 
+ real destination, so that a transformation that is cancelled part way 
+ through leaves nothing behind. 
+
+ @author Herb Bowie
+ */
+public class DeferredLineWriter
+    implements 
+      TextLineWriter,
+      CharLineWriter {
+  
+  private             TextLineWriter      target;
+  private             StringBuilder       pending = new StringBuilder();
+  
+  private             boolean             ok = true;
+  
+  /**
+   Construct a writer that will eventually write to the given target. 
+  
+   @param target The real destination for the output. 
+  */
+  public DeferredLineWriter (TextLineWriter target) {
+    this.target = target;
+  }
+  
+  public boolean openForOutput() {
+    pending.setLength(0);
+    ok = true;
+    return ok;
+  }
+  
+  public boolean newLine() {
+    pending.append('\n');
+    return ok;
+  }
+  
+  public boolean writeLine(String s) {
+    pending.append(s);
+    pending.append('\n');
+    return ok;
+  }
+  
+  public boolean write(String s) {
+    pending.append(s);
+    return ok;
+  }
+  
+  public boolean write(char[] chars, int offset, int length) {
+    pending.append(chars, offset, length);
+    return ok;
+  }
+  
+  public boolean flush() {
+    return ok;
+  }
+  
+  /**
+   Nothing is written until commit is called. 
+  
+   @return True if everything is ok.
+  */
+  public boolean close() {
+    return ok;
+  }
+  
+  public boolean isOK() {
+    return ok;
+  }
+  
+  public String getDestination() {
+    return target.getDestination();
+  }
+  
+  /**
+   Get the number of characters being held, awaiting a commit. 
+  
+   @return The length of the pending output. 
+  */
+  public int getPendingLength() {
+    return pending.length();
+  }
+  
+  /**
+   Throw away everything written so far. 
+  */
+  public void discard() {
+    pending = new StringBuilder();
+  }
+  
+  /**
+   Pass everything written so far to the real destination, and close it. 
+  
+   @return True if the target accepted all of the output. 
+  */
+  public boolean commit() {
+    HeadoutEvents.Flush event = new HeadoutEvents.Flush();
+    event.begin();
+    long chars = pending.length();
+    ok = target.openForOutput();
+    int start = 0;
+    int end = pending.indexOf("\n", start);
+    while (ok && end >= 0) {
+      if (end > start) {
+        ok = target.write(pending.substring(start, end));
+      }
+      if (ok) {
+        ok = target.newLine();
+      }
+      start = end + 1;
+      end = pending.indexOf("\n", start);
+    }
+    if (ok && start < pending.length()) {
+      ok = target.write(pending.substring(start));
+    }
+    if (! target.close()) {
+      ok = false;
+    }
+    discard();
+    event.end();
+    if (event.shouldCommit()) {
+      event.destination = target.getDestination();
+      event.chars = chars;
+      event.commit();
+    }
+    return ok;
+  }
+  
+  public String toString() {
+    return target.toString();
+  }
+
+}
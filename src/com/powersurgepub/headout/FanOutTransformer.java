@@ -0,0 +1,399 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ Produces several outputs from a single reading of a Markdown document. 
+ The document is scanned for headings just once, each heading is given 
+ its ID just once, and the resulting stream of lines and headings is 
+ fed to one emitter per requested output, each writing to its own line 
+ writer. <p>
+
+ A Markdown ToC or HTML ToC is written heading by heading as the 
+ document is read. For the document with an added ToC, the document is 
+ held, in memory or, if streaming was requested, in a temporary spool 
+ file, and then passed through TocAdder, just as by Add ToC to Markdown 
+ on its own, so that the document comes out the same either way. 
+
+ @author Herb Bowie
+ */
+public class FanOutTransformer {
+  
+  private             TransformOptions    options;
+  
+  private             List<Integer>       types = new ArrayList<>();
+  private             List<TextLineWriter> writers = new ArrayList<>();
+  
+  private             List<Emitter>       emitters = new ArrayList<>();
+  
+  /**
+   Prepare to fan out the given transformation. 
+  
+   @param options The heading levels, and other options, to be applied to 
+                  every output. 
+  */
+  public FanOutTransformer (TransformOptions options) {
+    this.options = options;
+  }
+  
+  /**
+   Can the given type of transformation be one of the outputs? 
+  
+   @param transformTypeIndex The transform type. 
+   @return True for a Markdown ToC, an HTML ToC or an added ToC. 
+  */
+  public static boolean canFanOut(int transformTypeIndex) {
+    return transformTypeIndex == TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN
+        || transformTypeIndex == TransformOptions.HTML_TOC_FROM_MARKDOWN
+        || transformTypeIndex == TransformOptions.ADD_TOC_TO_MARKDOWN;
+  }
+  
+  /**
+   Request another output. 
+  
+   @param transformTypeIndex The transform type to be written. 
+   @param lineWriter         Where the output should go. 
+  */
+  public void addOutput(int transformTypeIndex, TextLineWriter lineWriter) {
+    if (! canFanOut(transformTypeIndex)) {
+      throw new IllegalArgumentException("Transform type " 
+          + String.valueOf(transformTypeIndex) + " cannot be fanned out");
+    }
+    types.add(transformTypeIndex);
+    writers.add(lineWriter);
+  }
+  
+  /**
+   Get the number of outputs requested. 
+  
+   @return The number of outputs. 
+  */
+  public int getOutputs() {
+    return types.size();
+  }
+  
+  /**
+   Get the writers for the outputs, in the order requested. 
+  
+   @return The line writers. 
+  */
+  public List<TextLineWriter> getWriters() {
+    return writers;
+  }
+  
+  /**
+   Name the fan-out after its outputs' transform types. 
+  
+   @return The names of the outputs' types, separated by commas. 
+  */
+  public String getName() {
+    TransformerRegistry registry = TransformerRegistry.getShared();
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < types.size(); i++) {
+      if (i > 0) {
+        name.append(',');
+      }
+      name.append(registry.getName(types.get(i)));
+    }
+    return name.toString();
+  }
+  
+  /**
+   Read the document once, writing every requested output. 
+  
+   @param reader The Markdown input. 
+   @throws TransformException If the input could not be read, or an 
+                              output could not be held back until its 
+                              ToC was ready. 
+  */
+  public void transformNow(TextLineReader reader) 
+      throws TransformException {
+    transformNow(reader, writers);
+  }
+  
+  /**
+   Read the document once, writing every requested output to a writer 
+   standing in for the one it was requested with, such as one measuring 
+   what is written. 
+  
+   @param reader  The Markdown input. 
+   @param writers One writer for each output, in the order requested. 
+   @throws TransformException If the input could not be read, or an 
+                              output could not be held back until its 
+                              ToC was ready. 
+  */
+  public void transformNow(TextLineReader reader, List<TextLineWriter> writers) 
+      throws TransformException {
+    
+    emitters.clear();
+    for (int i = 0; i < types.size(); i++) {
+      int type = types.get(i);
+      TextLineWriter lineWriter = writers.get(i);
+      if (type == TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN) {
+        emitters.add(new TocEmitter(lineWriter, MarkupWriter.MARKDOWN_FORMAT));
+      }
+      else
+      if (type == TransformOptions.HTML_TOC_FROM_MARKDOWN) {
+        emitters.add(new TocEmitter(lineWriter, 
+            MarkupWriter.HTML_FRAGMENT_FORMAT));
+      } else {
+        emitters.add(new AddTocEmitter(lineWriter));
+      }
+    }
+    
+    TransformMetrics.startStage("scan");
+    reader.open();
+    HeadingScanner scanner = new HeadingScanner();
+    HeadingIDs ids = new HeadingIDs();
+    for (Emitter emitter : emitters) {
+      emitter.start();
+    }
+    long headingCount = 0;
+    boolean ok = false;
+    TransformException failure = null;
+    try {
+      CharSequence line = nextLine(reader);
+      while (line != null) {
+        int level = scanner.scanLine(line);
+        String id = null;
+        if (level > 0) {
+          id = ids.assign(level, scanner.getHeadingText());
+        }
+        boolean inParagraph = level == 0 && scanner.isInParagraph();
+        if (id == null) {
+          for (Emitter emitter : emitters) {
+            emitter.line(line, inParagraph);
+          }
+        } else {
+          Heading heading = new Heading(level, id, ids.getContent());
+          boolean setext = scanner.isSetext();
+          for (Emitter emitter : emitters) {
+            emitter.heading(line, heading, setext);
+          }
+          headingCount++;
+        }
+        line = nextLine(reader);
+      } // end while more markdown lines to process
+      ok = reader.isOK();
+    } finally {
+      reader.close();
+      TransformMetrics.startStage("emit");
+      for (Emitter emitter : emitters) {
+        try {
+          emitter.finish(ok);
+        } catch (TransformException e) {
+          if (failure == null) {
+            failure = e;
+          }
+        }
+      }
+    }
+    TransformMetrics.addHeadings(headingCount);
+    if (! ok) {
+      throw new TransformException("Trouble reading " + reader.toString());
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+  
+  /**
+   Obtain the next line of Markdown, as a view onto the input wherever 
+   possible. 
+  
+   @param reader The input. 
+   @return The next line, or null at the end of the input. 
+  */
+  private static CharSequence nextLine(TextLineReader reader) {
+    if (reader.isAtEnd() || (! reader.isOK())) {
+      return null;
+    } else {
+      return MappedLineReader.readLineFrom(reader);
+    }
+  }
+  
+  /**
+   One of the outputs, fed each line of the document in turn. 
+  */
+  abstract static class Emitter {
+    
+    /**
+     Open the output. 
+    */
+    abstract void start();
+    
+    /**
+     Handle a line that is not part of a heading. 
+    
+     @param line        The line, which may be a view that is about to be 
+                        reused. 
+     @param inParagraph True if the line is paragraph text, which may yet 
+                        turn out to be the text of a Setext heading. 
+    */
+    abstract void line(CharSequence line, boolean inParagraph);
+    
+    /**
+     Handle a heading. 
+    
+     @param line    The line completing the heading: the heading itself, 
+                    or a Setext underline. 
+     @param heading The heading, with its unique ID. 
+     @param setext  True if the heading's text was in the paragraph 
+                    above. 
+    */
+    abstract void heading(CharSequence line, Heading heading, boolean setext);
+    
+    /**
+     Complete and close the output. 
+    
+     @param ok False if the input could not be read in full, in which 
+               case the output need only be closed. 
+     @throws TransformException If held back output cannot be read again. 
+    */
+    abstract void finish(boolean ok) 
+        throws TransformException;
+  }
+  
+  /**
+   Writes a Markdown or HTML Table of Contents, heading by heading. 
+  */
+  class TocEmitter 
+      extends Emitter {
+    
+    private             TextLineWriter      lineWriter;
+    private             TocWriter           tocWriter;
+    
+    TocEmitter(TextLineWriter lineWriter, int markupFormat) {
+      this.lineWriter = lineWriter;
+      tocWriter = new TocWriter(lineWriter, markupFormat);
+      tocWriter.setCompact(options.isCompact());
+    }
+    
+    void start() {
+      lineWriter.openForOutput();
+      tocWriter.start();
+    }
+    
+    void line(CharSequence line, boolean inParagraph) {
+      
+    }
+    
+    void heading(CharSequence line, Heading heading, boolean setext) {
+      if (options.inRange(heading.getLevel())
+          && TocWriter.isTocEntry(heading.getID())) {
+        tocWriter.addHeading(heading);
+      }
+    }
+    
+    void finish(boolean ok) {
+      tocWriter.finish();
+      lineWriter.close();
+    }
+  }
+  
+  /**
+   Holds the document, a line at a time, and then adds a Table of 
+   Contents to it with TocAdder. 
+  */
+  class AddTocEmitter 
+      extends Emitter {
+    
+    private             TextLineWriter      finalLineWriter;
+    
+    private             TextLineWriter      spoolWriter = null;
+    private             File                spoolFile = null;
+    
+    AddTocEmitter(TextLineWriter finalLineWriter) {
+      this.finalLineWriter = finalLineWriter;
+    }
+    
+    /**
+     Open the writer holding the document. If a spool file was requested 
+     but cannot be created, the document is held in memory instead. 
+    */
+    void start() {
+      spoolWriter = null;
+      if (options.isStreaming()) {
+        try {
+          spoolFile = File.createTempFile("headout", ".md");
+          spoolFile.deleteOnExit();
+          spoolWriter = new StreamLineWriter(
+              new FileOutputStream(spoolFile), spoolFile.toString());
+        } catch (IOException e) {
+          deleteSpool();
+        }
+      }
+      if (spoolWriter == null) {
+        spoolWriter = new MemoryLineWriter();
+      }
+      spoolWriter.openForOutput();
+    }
+    
+    void line(CharSequence line, boolean inParagraph) {
+      spoolWriter.writeLine(line.toString());
+    }
+    
+    void heading(CharSequence line, Heading heading, boolean setext) {
+      spoolWriter.writeLine(line.toString());
+    }
+    
+    void finish(boolean ok) 
+        throws TransformException {
+      
+      spoolWriter.close();
+      if (! ok) {
+        deleteSpool();
+        finalLineWriter.close();
+        return;
+      }
+      TextLineReader spoolReader;
+      if (spoolFile == null) {
+        String held = spoolWriter.toString();
+        TransformMetrics.noteBufferSize(held.length());
+        spoolReader = new StringLineReader(held);
+      } else {
+        try {
+          spoolReader = new StreamLineReader(
+              new FileInputStream(spoolFile), spoolFile.toString());
+        } catch (IOException e) {
+          deleteSpool();
+          finalLineWriter.close();
+          throw new TransformException("Could not read spool file");
+        }
+      }
+      spoolWriter = null;
+      try {
+        new TocAdder(options).transformNow(spoolReader, finalLineWriter);
+      } finally {
+        deleteSpool();
+      }
+    }
+    
+    private void deleteSpool() {
+      if (spoolFile != null) {
+        spoolFile.delete();
+        spoolFile = null;
+      }
+    }
+  }
+
+}
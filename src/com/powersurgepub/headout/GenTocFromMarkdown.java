@@ -16,14 +16,13 @@
 package com.powersurgepub.headout;
 
   import com.powersurgepub.psutils2.env.*;
-  import com.powersurgepub.psutils2.mkdown.*;
   import com.powersurgepub.psutils2.textio.*;
   import com.powersurgepub.psutils2.txbio.*;
-  import com.powersurgepub.psutils2.ui.*;
 
-  import javafx.scene.control.*;
   import javafx.scene.layout.*;
 
+  import java.io.*;
+
 /**
  Generate a Table of Contents from Markdown source. 
 
@@ -31,79 +30,46 @@ package com.powersurgepub.headout;
  */
 public class GenTocFromMarkdown 
      implements 
-        HeadOutTransformer,
-        MarkdownLineReader {
+        HeadOutTransformer {
   
   private     static  final String HEADING_LEVEL_START = "heading-level-start";
   private     static  final String HEADING_LEVEL_END   = "heading-level-end";
   
-  private             UserPrefs           prefs;
+  private             UserPrefs           prefs = null;
   
-  private             int                 transformTypeIndex = 0;
-  private             String              transformTypeString = "";
-
-  private             FXUtils             fxUtils;
+  private             TransformOptions    options;
 
-  private             GridPane            grid;
-  
-  private             Menu                fileMenu;
-  private             Button              genTOCButton;
-  private             Label               headingLevelEndLabel;
-  private             Slider              headingLevelEndSlider;
-  private             Label               headingLevelStartLabel;
-  private             Slider              headingLevelStartSlider;
-  private             MenuBar             menuBar;
-  private             Label               messageLabel;
-  private             ComboBox            outputFormatComboBox;
-  private             Label               outputFormatLabel;
+  private             HeadingLevelGrid    headingLevelGrid = null;
   
   private             TextLineReader      reader;
   private             TextLineWriter      lineWriter;
   
-  private             int                 startHeadingLevel = 2;
-  private             int                 endHeadingLevel = 4;
+  /**
+   Construct a transformer for use within the user interface, with 
+   heading levels initialized from the user's preferences. 
   
+   @param transformTypeIndex Which transformation was requested?
+   @param transformTypeString What did we call it? 
+  */
   public GenTocFromMarkdown (
       int transformTypeIndex, 
       String transformTypeString) {
 
-    this.transformTypeIndex = transformTypeIndex;
-    this.transformTypeString = transformTypeString;
+    this(new TransformOptions(transformTypeIndex, transformTypeString));
     
     prefs = UserPrefs.getShared();
-
-    fxUtils = FXUtils.getShared();
-    grid = new GridPane();
-    fxUtils.applyStyle(grid);
-    
-    headingLevelStartLabel = new Label();
-    headingLevelStartLabel.setText("Lowest Heading Level");
-    grid.add(headingLevelStartLabel, 0, 0, 1, 1);
-
-    headingLevelStartSlider = new Slider(1, 6, 1);
-    headingLevelStartSlider.setValue(prefs.getPrefAsInt(HEADING_LEVEL_START, 1));
-    headingLevelStartSlider.setSnapToTicks(true);
-    headingLevelStartSlider.setShowTickLabels(true);
-    headingLevelStartSlider.setShowTickMarks(true);
-    headingLevelStartSlider.setMajorTickUnit(1.0);
-    headingLevelStartSlider.setMinorTickCount(0);
-    grid.add(headingLevelStartSlider, 0, 1, 1, 1);
-    GridPane.setHgrow(headingLevelStartSlider, Priority.ALWAYS);
-    
-    headingLevelEndLabel = new Label();
-    headingLevelEndLabel.setText("Highest Heading Level");
-    grid.add(headingLevelEndLabel, 0, 2, 1, 1);
-
-    headingLevelEndSlider = new Slider(1, 6, 6);
-    headingLevelEndSlider.setValue(prefs.getPrefAsInt(HEADING_LEVEL_END, 6));
-    headingLevelEndSlider.setSnapToTicks(true);
-    headingLevelEndSlider.setShowTickLabels(true);
-    headingLevelEndSlider.setShowTickMarks(true);
-    headingLevelEndSlider.setMajorTickUnit(1.0);
-    headingLevelEndSlider.setMinorTickCount(0);
-    grid.add(headingLevelEndSlider, 0, 3, 1, 1);
-    GridPane.setHgrow(headingLevelEndSlider, Priority.ALWAYS);
-    
+    options.setStartHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_START, 1));
+    options.setEndHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_END, 6));
+  }
+  
+  /**
+   Construct a transformer driven solely by the passed options, without 
+   touching user preferences or any JavaFX controls. 
+  
+   @param options The transform type and heading levels to be used. 
+  */
+  public GenTocFromMarkdown (TransformOptions options) {
+    this.options = options;
   }
 
   /**
@@ -112,7 +78,19 @@ public class GenTocFromMarkdown
    @return the grid pane containing the controls for this type of transformation.
    */
   public GridPane getGrid() {
-    return grid;
+    if (headingLevelGrid == null) {
+      headingLevelGrid = new HeadingLevelGrid(options);
+    }
+    return headingLevelGrid.getGrid();
+  }
+  
+  /**
+   Get the options governing this transformer. 
+  
+   @return The transform type and heading levels. 
+  */
+  public TransformOptions getOptions() {
+    return options;
   }
   
   /**
@@ -125,19 +103,105 @@ public class GenTocFromMarkdown
   public void transformNow(TextLineReader reader, TextLineWriter lineWriter) 
       throws TransformException {
 
-    Double startHeadingLevelDouble = new Double(headingLevelStartSlider.getValue());
-    startHeadingLevel = startHeadingLevelDouble.intValue();
-    Double endHeadingLevelDouble = new Double(headingLevelEndSlider.getValue());
-    endHeadingLevel = endHeadingLevelDouble.intValue();
+    if (options.getTransformTypeIndex() 
+        == TransformOptions.ADD_TOC_TO_MARKDOWN) {
+      addToC(reader, lineWriter, options);
+    } else {
+      File source = getSourceFile(reader);
+      if (options.isIndexing() && source != null) {
+        genTocFromIndex (source, lineWriter);
+      } else {
+        genToC (reader, lineWriter);
+      }
+    }
+  }
+  
+  /**
+   Copy Markdown to the output, with its headings converted to HTML with 
+   unique IDs, and with a Table of Contents following its 'Table of 
+   Contents' heading. 
+  
+   @param reader     The Markdown input. 
+   @param lineWriter Where the Markdown with its ToC should go. 
+   @param options    The heading levels to be included in the ToC. 
+   @throws TransformException If the document could not be held back 
+                              while its IDs were made unique. 
+  */
+  static void addToC(TextLineReader reader, TextLineWriter lineWriter, 
+      TransformOptions options) 
+        throws TransformException {
     
-    if (transformTypeString.contains("Add ToC to Markdown")) {
-      AddToCtoMarkdown addToC = new AddToCtoMarkdown();
-      addToC.transformNow(reader, lineWriter, startHeadingLevel, endHeadingLevel);
+    TocAdder tocAdder = new TocAdder(options);
+    tocAdder.transformNow(reader, lineWriter);
+  }
+  
+  /**
+   Find the local file being read, if any. 
+  
+   @param reader The line reader supplying the input. 
+   @return The file being read, or null if the input is not a local file. 
+  */
+  static File getSourceFile(TextLineReader reader) {
+    while (reader instanceof CountingLineReader) {
+      reader = ((CountingLineReader)reader).getReader();
+    }
+    if (reader instanceof MappedLineReader) {
+      return ((MappedLineReader)reader).getFile();
+    }
+    else
+    if (reader instanceof FileLineReader) {
+      return new File(reader.toString());
+    } else {
+      return null;
+    }
+  }
+  
+  private int getMarkupFormat() {
+    if (options.getTransformTypeIndex() 
+        == TransformOptions.HTML_TOC_FROM_MARKDOWN) {
+      return MarkupWriter.HTML_FRAGMENT_FORMAT;
     } else {
-      genToC (reader, lineWriter);
+      return MarkupWriter.MARKDOWN_FORMAT;
     }
+  }
+  
+  /**
+   Generate a Table of Contents from the file's heading index, building 
+   the index first if there is no current one. 
+  
+   @param source     The Markdown source file. 
+   @param lineWriter The line writer to be used to create the output. 
+   @throws TransformException If the source file cannot be read. 
+  */
+  private void genTocFromIndex (File source, TextLineWriter lineWriter)
+      throws TransformException {
     
-    savePrefs();
+    TransformMetrics.startStage("index");
+    HeadingIndex index;
+    try {
+      index = HeadingIndex.forFile(source);
+    } catch (IOException e) {
+      throw new TransformException("Could not index " + source.toString() 
+          + ": " + e.getMessage());
+    }
+    
+    TransformMetrics.startStage("toc");
+    int markupFormat = getMarkupFormat();
+    lineWriter.openForOutput();
+    TocWriter tocWriter = new TocWriter(lineWriter, markupFormat);
+    tocWriter.setCompact(options.isCompact());
+    tocWriter.start();
+    HeadingIDs ids = new HeadingIDs();
+    for (Heading heading : index.getHeadings()) {
+      heading = ids.assign(heading);
+      if (options.inRange(heading.getLevel())
+          && TocWriter.isTocEntry(heading.getID())) {
+        tocWriter.addHeading(heading);
+      }
+    }
+    tocWriter.finish();
+    TransformMetrics.addHeadings(tocWriter.getEntries());
+    lineWriter.close();
   }
   
   private void genToC (TextLineReader reader, TextLineWriter lineWriter)
@@ -145,136 +209,59 @@ public class GenTocFromMarkdown
     
     this.reader = reader;
     this.lineWriter = lineWriter;
+    TransformMetrics.startStage("scan");
     reader.open();
-    MarkdownInitialParser mdParser = new MarkdownInitialParser (this);
+    HeadingScanner scanner = new HeadingScanner();
+    HeadingIDs ids = new HeadingIDs();
     
     // Open Output File
-    int markupFormat = MarkupWriter.MARKDOWN_FORMAT;
-    if (transformTypeString.contains("Create HTML")) {
-      markupFormat = MarkupWriter.HTML_FRAGMENT_FORMAT;
-    }
-    MarkupWriter writer = new MarkupWriter(lineWriter, markupFormat);
-    writer.setIndenting(true);
-    writer.setIndentPerLevel(2);
-    writer.openForOutput();
-    
-    
-    int firstHeadingLevel = 0;
-    
-    boolean listItemOpen[] = new boolean[7];
-    for (int i = 0; i < 7; i++) {
-      listItemOpen[i] = false;
-    }
+    int markupFormat = getMarkupFormat();
+    lineWriter.openForOutput();
     
-    if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
-      writer.startDiv("", "toc");
-      writer.startUnorderedList("");
-    }
-    
-    int lastHeadingLevel = 1;
-
-    MarkdownLine mdLine = mdParser.getNextLine();
-    while (mdLine != null) {    
-      if (mdLine.getHeadingLevel() > 0
-        && mdLine.getHeadingLevel() >= startHeadingLevel 
-        && mdLine.getHeadingLevel() <= endHeadingLevel) {
-        if (mdLine.getID().length() > 0
-            && (! mdLine.getID().equals("tableofcontents"))
-            && (! mdLine.getID().equals("contents"))) {
-          if (firstHeadingLevel < 1) {
-            firstHeadingLevel = mdLine.getHeadingLevel();
-            lastHeadingLevel = mdLine.getHeadingLevel();
-          }
-
-          String link = "#" + mdLine.getID();
-          String text = mdLine.getLineContent();
-          if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
-            // Write HTML
-            if (mdLine.getHeadingLevel() > lastHeadingLevel) {
-              writer.startUnorderedList("");
-            } else {
-              if (mdLine.getHeadingLevel() < lastHeadingLevel) {
-                int l = lastHeadingLevel;
-                while (l > mdLine.getHeadingLevel()) {
-                  if (listItemOpen[l]) {
-                    writer.endListItem();
-                    writer.endUnorderedList();
-                    listItemOpen[l] = false;
-                  }
-                  l--;
-                } // end while higher (more deeply indented) lists still open
-              } else {
-                // No change in heading level
-                if (listItemOpen[mdLine.getHeadingLevel()]) {
-                  writer.endListItem();
-                  listItemOpen[mdLine.getHeadingLevel()] = false;
-                }
-              }
-            } // end if new heading level less than or equal to last
+    TocWriter tocWriter = new TocWriter(lineWriter, markupFormat);
+    tocWriter.setCompact(options.isCompact());
+    tocWriter.start();
 
-            if (listItemOpen[mdLine.getHeadingLevel()]) {
-              writer.endListItem();
-              listItemOpen[mdLine.getHeadingLevel()] = false;
-            }
-            writer.startListItem("");
-            writer.startLink(link);
-            writer.write(text);
-            writer.endLink(link);
-            listItemOpen[mdLine.getHeadingLevel()] = true;
-          } else {
-            // Write Markdown
-            StringBuilder tocLine = new StringBuilder();
-            int h = firstHeadingLevel;
-            while (h < mdLine.getHeadingLevel()) {
-              tocLine.append("    ");
-              h++;
-            }
-            tocLine.append("* ");
-            tocLine.append("[");
-            tocLine.append(text);
-            tocLine.append("](");
-            tocLine.append(link);
-            tocLine.append(")");
-            writer.writeLine(tocLine.toString());
-          } // end if markdown format
-          lastHeadingLevel = mdLine.getHeadingLevel();
-
-        } // end if we have a heading string
-      } // end if we have a heading identifier
+    // Every heading is scanned and given an ID, even if out of range, 
+    // since each one takes its ID away from any later heading with the 
+    // same text
+    CharSequence line = nextLine();
+    while (line != null) {
+      int level = scanner.scanLine(line);
+      if (level > 0) {
+        String id = ids.assign(level, scanner.getHeadingText());
+        if (id != null 
+            && options.inRange(level) 
+            && TocWriter.isTocEntry(id)) {
+          tocWriter.addHeading(level, id, ids.getContent());
+        } // end if we have a heading string within range
+      } // end if we have a heading
       
-      mdLine = mdParser.getNextLine();
+      line = nextLine();
     } // end while more markdown lines to process
     
-    if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
-      int l = lastHeadingLevel;
-      while (l >= firstHeadingLevel) {
-        if (listItemOpen[l]) {
-          writer.endListItem();
-          writer.endUnorderedList();
-          listItemOpen[l] = false;
-        }
-        l--;
-      } // end while higher (more deeply indented) lists still open
-      writer.endDiv();
-    }
+    tocWriter.finish();
+    TransformMetrics.addHeadings(tocWriter.getEntries());
     
     reader.close();
-    writer.close();
+    lineWriter.close();
     
   }
   
   /**
-   Obtains the next line of raw markdown source. 
+   Obtains the next line of raw markdown source. When reading a mapped 
+   file, even through a counting reader, the line is a view onto the 
+   file, and no String is created. 
   
    @return The next markdown input line, or null when no more input is available.
    */
-  public String getMarkdownInputLine() {
+  private CharSequence nextLine() {
     if (reader == null
         || reader.isAtEnd()
         || (! reader.isOK())) {
       return null;
     } else {
-      return reader.readLine();
+      return MappedLineReader.readLineFrom(reader);
     }
   }
   
@@ -283,8 +270,10 @@ public class GenTocFromMarkdown
   */
   public void savePrefs() {
 
-    prefs.setPref(HEADING_LEVEL_START, headingLevelStartSlider.getValue());
-    prefs.setPref(HEADING_LEVEL_END, headingLevelEndSlider.getValue());
+    if (prefs != null) {
+      prefs.setPref(HEADING_LEVEL_START, options.getStartHeadingLevel());
+      prefs.setPref(HEADING_LEVEL_END, options.getEndHeadingLevel());
+    }
 
   }
 
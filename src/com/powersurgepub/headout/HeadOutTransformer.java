@@ -48,4 +48,15 @@ public interface HeadOutTransformer {
   */
   public void savePrefs();
   
+  /**
+   Get the options governing this transformer, as they stand after any 
+   changes made through its controls. 
+  
+   @return The transform type and heading levels, or null if this 
+           transformer does not keep its options in a TransformOptions. 
+  */
+  public default TransformOptions getOptions() {
+    return null;
+  }
+  
 }
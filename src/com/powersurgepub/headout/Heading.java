@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ One heading found within a document: its level, the ID used to link 
+ to it, its text and, when known, where it was found. 
+
+ @author Herb Bowie
+ */
+public class Heading {
+  
+  private             int                 level;
+  private             String              id;
+  private             String              text;
+  private             long                offset = -1;
+  private             int                 lineNumber = 0;
+  
+  /**
+   Construct a new heading. 
+  
+   @param level The heading level, from 1 through 6. 
+   @param id    The ID used to link to this heading. 
+   @param text  The text of the heading. 
+  */
+  public Heading (int level, String id, String text) {
+    this.level = level;
+    this.id = id;
+    this.text = text;
+  }
+  
+  /**
+   Construct a new heading, noting where it was found. 
+  
+   @param level      The heading level, from 1 through 6. 
+   @param id         The ID used to link to this heading. 
+   @param text       The text of the heading. 
+   @param offset     The offset of the start of the heading's first line 
+                     within the document. 
+   @param lineNumber The heading's first line number, starting from 1. 
+  */
+  public Heading (int level, String id, String text, 
+      long offset, int lineNumber) {
+    this(level, id, text);
+    this.offset = offset;
+    this.lineNumber = lineNumber;
+  }
+  
+  /**
+   Return a copy of this heading, moved by the given amounts.  
+  
+   @param offsetDelta The change in offset. 
+   @param lineDelta   The change in line number. 
+   @return The moved heading. 
+  */
+  public Heading shift(long offsetDelta, int lineDelta) {
+    if (offsetDelta == 0 && lineDelta == 0) {
+      return this;
+    } else {
+      return new Heading(level, id, text, 
+          offset + offsetDelta, lineNumber + lineDelta);
+    }
+  }
+  
+  public int getLevel() {
+    return level;
+  }
+  
+  public String getID() {
+    return id;
+  }
+  
+  public String getText() {
+    return text;
+  }
+  
+  /**
+   Return the offset of the heading within its document. 
+  
+   @return The offset of the start of the heading, or -1 if not known. 
+  */
+  public long getOffset() {
+    return offset;
+  }
+  
+  /**
+   Return the line number of the heading within its document. 
+  
+   @return The line number, starting from 1, or zero if not known. 
+  */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+  
+  public String toString() {
+    return String.valueOf(level) + " " + id + " " + text;
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.mkdown.*;
+
+  import java.util.*;
+
+/**
+ Determines heading IDs and content for headings found by means other 
+ than a full pass of the Markdown parser, using the same rules as the 
+ parser uses everywhere else, so that links always agree. <p>
+
+ An instance assigns the IDs for the headings of one document, in 
+ document order, keeping each one unique in the same way as GitHub 
+ does: the second heading to share an ID has "-1" appended, the third 
+ "-2", and so on, skipping any ID already taken by another heading. A 
+ count of the suffixes used so far is kept for each ID, so the cost per 
+ heading stays constant no matter how many headings repeat. The IDs and 
+ content parsed for recently seen heading text are cached, so that a 
+ heading such as "Examples", repeated throughout a document, is parsed 
+ only once, and its ID shared. 
+
+ @author Herb Bowie
+ */
+public class HeadingIDs {
+  
+  /** The number of distinct heading texts whose parsed IDs are cached. */
+  public      static  final int           CACHE_SIZE = 4096;
+  
+  /** 
+   Every ID assigned so far, each with the number of the last suffix 
+   appended to it, or zero if it has only been used as is. 
+  */
+  private             Map<String, Integer> assigned = new HashMap<>();
+  
+  private             Map<String, String[]> slugs;
+  
+  private             String              content = "";
+  
+  /**
+   Prepare to assign the heading IDs for a document. 
+  */
+  public HeadingIDs () {
+    this(CACHE_SIZE);
+  }
+  
+  /**
+   Prepare to assign the heading IDs for a document, caching the parsed 
+   IDs for a given number of distinct heading texts. 
+  
+   @param cacheSize The most heading texts to be cached; the least 
+                    recently used are dropped to make room. 
+  */
+  public HeadingIDs (int cacheSize) {
+    slugs = new LinkedHashMap<String, String[]>(64, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+  
+  /**
+   Start again with a new document. Cached IDs are kept. 
+  */
+  public void reset() {
+    assigned.clear();
+    content = "";
+  }
+  
+  /**
+   Assign a unique ID to the next heading in the document. 
+  
+   @param level The heading level. 
+   @param text  The raw heading text. 
+   @return The unique ID for the heading, or null if the parser did not 
+           recognize it as a heading. 
+  */
+  public String assign(int level, String text) {
+    String[] slug = slugs.get(text);
+    if (slug == null) {
+      MarkdownLine mdLine = parseHeading(level, text);
+      if (mdLine == null) {
+        slug = new String[0];
+      } else {
+        slug = new String[] { mdLine.getID(), mdLine.getLineContent() };
+      }
+      slugs.put(text, slug);
+    }
+    if (slug.length == 0) {
+      content = "";
+      return null;
+    }
+    content = slug[1];
+    return unique(slug[0]);
+  }
+  
+  /**
+   Get the content of the heading most recently assigned an ID from its 
+   raw text. 
+  
+   @return The heading's text, as parsed. 
+  */
+  public String getContent() {
+    return content;
+  }
+  
+  /**
+   Assign a unique ID to the next heading in the document, when the 
+   heading has already been parsed. 
+  
+   @param heading The next heading, with the ID the parser gave it. 
+   @return The same heading, if its ID was not already taken, otherwise 
+           a copy with a unique ID. 
+  */
+  public Heading assign(Heading heading) {
+    String id = unique(heading.getID());
+    if (id.equals(heading.getID())) {
+      return heading;
+    } else {
+      return new Heading(heading.getLevel(), id, heading.getText(), 
+          heading.getOffset(), heading.getLineNumber());
+    }
+  }
+  
+  /**
+   Make an ID unique within the document, and note that it is now taken. 
+   An empty ID is returned as is. 
+  
+   @param id The ID given by the parser. 
+   @return The ID itself, if not yet taken, otherwise the ID with the 
+           next free numeric suffix appended. 
+  */
+  public String unique(String id) {
+    if (id.length() == 0) {
+      return id;
+    }
+    Integer suffix = assigned.putIfAbsent(id, 0);
+    if (suffix == null) {
+      return id;
+    }
+    int n = suffix;
+    String candidate;
+    do {
+      n++;
+      candidate = id + "-" + String.valueOf(n);
+    } while (assigned.containsKey(candidate));
+    assigned.put(id, n);
+    assigned.put(candidate, 0);
+    return candidate;
+  }
+  
+  /**
+   Parse a single heading as an ATX-style Markdown heading line. 
+  
+   @param level The heading level. 
+   @param text  The raw heading text. 
+   @return The parsed line, or null if the parser returned nothing. 
+  */
+  public static MarkdownLine parseHeading(int level, String text) {
+    StringBuilder headingLine = new StringBuilder();
+    for (int i = 0; i < level; i++) {
+      headingLine.append('#');
+    }
+    headingLine.append(' ');
+    headingLine.append(text);
+    String[] lines = { headingLine.toString() };
+    MarkdownInitialParser headingParser = new MarkdownInitialParser(
+        new MarkdownLineReader() {
+          int next = 0;
+          public String getMarkdownInputLine() {
+            if (next < lines.length) {
+              next++;
+              return lines[next - 1];
+            } else {
+              return null;
+            }
+          }
+        });
+    return headingParser.getNextLine();
+  }
+  
+  /**
+   Determine the ID for a heading, as the parser would, without regard to 
+   any other headings in the same document. 
+  
+   @param level The heading level. 
+   @param text  The heading text. 
+   @return The ID for the heading. 
+  */
+  public static String idFor(int level, String text) {
+    MarkdownLine mdLine = parseHeading(level, text);
+    if (mdLine == null) {
+      return "";
+    } else {
+      return mdLine.getID();
+    }
+  }
+
+}
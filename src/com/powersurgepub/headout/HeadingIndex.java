@@ -0,0 +1,321 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+  import com.powersurgepub.psutils2.mkdown.*;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.channels.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.zip.*;
+
+/**
+ A persistent index of the headings within a Markdown file, kept in a 
+ compact binary sidecar file alongside the source, so that a Table of 
+ Contents for a very large document can be produced from the index alone, 
+ without reading the document again. <p>
+
+ For each heading the index holds its level, byte offset, line number, ID 
+ and text. It also records the size and modification time of the source, 
+ plus a CRC-32 fingerprint of the source's first and last 64 KB and of 
+ samples from in between. The fingerprint is checked before the index is 
+ trusted, and costs the same for any size of file; any difference causes 
+ the index to be rebuilt. <p>
+
+ Sidecar layout (big-endian, as written by DataOutputStream): magic 
+ number, format version, source size, source modification time, 
+ fingerprint, heading count, and then for each heading its level (byte), 
+ offset (long), line number (int), ID and text (modified UTF-8). 
+
+ @author Herb Bowie
+ */
+public class HeadingIndex {
+  
+  /** Appended to the source file's name to form the sidecar's name. */
+  public      static  final String        INDEX_SUFFIX = ".headout-index";
+  
+  private     static  final int           MAGIC = 0x484F4958;
+  private     static  final int           VERSION = 2;
+  
+  private     static  final int           SAMPLE_SIZE = 64 * 1024;
+  private     static  final int           MIDDLE_SAMPLES = 14;
+  private     static  final int           MIDDLE_SAMPLE_SIZE = 4 * 1024;
+  
+  private             File                source;
+  private             long                size = 0;
+  private             long                modified = 0;
+  private             long                fingerprint = 0;
+  private             List<Heading>       headings = new ArrayList<>();
+  
+  private HeadingIndex (File source) {
+    this.source = source;
+  }
+  
+  /**
+   Get the sidecar file for a source file. 
+  
+   @param source The Markdown source file. 
+   @return The file in which its index is kept. 
+  */
+  public static File getIndexFile(File source) {
+    return new File(source.getPath() + INDEX_SUFFIX);
+  }
+  
+  /**
+   Get a current index for a source file, loading it from its sidecar if 
+   that is still valid, or else building it afresh and saving it. Trouble 
+   saving the sidecar is logged, but otherwise ignored. 
+  
+   @param source The Markdown source file. 
+   @return A current index of the file's headings. 
+   @throws IOException If the source file cannot be read. 
+  */
+  public static HeadingIndex forFile(File source) 
+      throws IOException {
+    HeadingIndex index = load(source);
+    if (index == null) {
+      index = build(source);
+      try {
+        index.save();
+      } catch (IOException e) {
+        Logger.getShared().recordEvent(LogEvent.MINOR, 
+            "Could not save heading index for " + source.toString() 
+            + ": " + e.getMessage(), 
+            false);
+      }
+    }
+    return index;
+  }
+  
+  /**
+   Load the index for a source file from its sidecar. 
+  
+   @param source The Markdown source file. 
+   @return The index, or null if there is no sidecar, or if it cannot be 
+           read, or if it no longer matches the source. 
+  */
+  public static HeadingIndex load(File source) {
+    File indexFile = getIndexFile(source);
+    if (! indexFile.isFile()) {
+      return null;
+    }
+    HeadingIndex index = new HeadingIndex(source);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      index.size = in.readLong();
+      index.modified = in.readLong();
+      index.fingerprint = in.readLong();
+      if (! index.isCurrent()) {
+        return null;
+      }
+      int count = in.readInt();
+      index.headings = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        int level = in.readByte();
+        long offset = in.readLong();
+        int lineNumber = in.readInt();
+        String id = in.readUTF();
+        String text = in.readUTF();
+        index.headings.add(new Heading(level, id, text, offset, lineNumber));
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return index;
+  }
+  
+  /**
+   Build an index by scanning a source file. 
+  
+   @param source The Markdown source file. 
+   @return The new index. 
+   @throws IOException If the source file cannot be read. 
+  */
+  public static HeadingIndex build(File source) 
+      throws IOException {
+    HeadingIndex index = new HeadingIndex(source);
+    index.size = source.length();
+    index.modified = source.lastModified();
+    index.fingerprint = fingerprint(source, index.size);
+    
+    MappedLineReader reader = new MappedLineReader(source);
+    if (! reader.open()) {
+      throw new IOException("Could not read " + source.toString());
+    }
+    HeadingScanner scanner = new HeadingScanner();
+    long paragraphOffset = 0;
+    int paragraphLine = 0;
+    int lineNumber = 0;
+    CharSequence line = reader.readLineSequence();
+    while (line != null) {
+      lineNumber++;
+      long offset = reader.getLineOffset();
+      int level = scanner.scanLine(line);
+      if (level > 0) {
+        MarkdownLine mdLine 
+            = HeadingIDs.parseHeading(level, scanner.getHeadingText());
+        if (mdLine != null) {
+          if (scanner.isSetext()) {
+            index.headings.add(new Heading(level, mdLine.getID(), 
+                mdLine.getLineContent(), paragraphOffset, paragraphLine));
+          } else {
+            index.headings.add(new Heading(level, mdLine.getID(), 
+                mdLine.getLineContent(), offset, lineNumber));
+          }
+        }
+      }
+      else
+      if (scanner.isInParagraph() && scanner.getParagraphLines() == 1) {
+        // A Setext heading starts with the first line of its paragraph
+        paragraphOffset = offset;
+        paragraphLine = lineNumber;
+      } // end if a heading was found
+      line = reader.readLineSequence();
+    } // end while more lines
+    boolean ok = reader.isOK();
+    reader.close();
+    if (! ok) {
+      throw new IOException("Trouble reading " + source.toString());
+    }
+    return index;
+  }
+  
+  /**
+   Save the index to its sidecar file. The index is written to a 
+   temporary file first, and then moved into place, so that a reader 
+   never sees half an index. 
+  
+   @throws IOException If the sidecar could not be written. 
+  */
+  public void save() 
+      throws IOException {
+    File indexFile = getIndexFile(source);
+    File parent = indexFile.getAbsoluteFile().getParentFile();
+    File temp = File.createTempFile("headout", ".tmp", parent);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeLong(fingerprint);
+        out.writeInt(headings.size());
+        for (Heading heading : headings) {
+          out.writeByte(heading.getLevel());
+          out.writeLong(heading.getOffset());
+          out.writeInt(heading.getLineNumber());
+          out.writeUTF(heading.getID());
+          out.writeUTF(heading.getText());
+        }
+      }
+      try {
+        Files.move(temp.toPath(), indexFile.toPath(), 
+            StandardCopyOption.REPLACE_EXISTING, 
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), indexFile.toPath(), 
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      temp.delete();
+    }
+  }
+  
+  /**
+   Does this index still describe its source file? 
+  
+   @return True if the source's size, modification time and fingerprint 
+           all match those recorded in the index. 
+  */
+  public boolean isCurrent() {
+    if (source.length() != size || source.lastModified() != modified) {
+      return false;
+    }
+    try {
+      return fingerprint(source, size) == fingerprint;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+  
+  /**
+   Compute a fingerprint of a file from its first and last blocks, and 
+   from evenly spaced samples in between, so that the cost does not grow 
+   with the size of the file. 
+  
+   @param file The file. 
+   @param size The size of the file. 
+   @return The fingerprint. 
+   @throws IOException If the file cannot be read. 
+  */
+  private static long fingerprint(File file, long size) 
+      throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(file.toPath(), 
+        StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+      if (size <= SAMPLE_SIZE * 2) {
+        long position = 0;
+        while (position < size) {
+          position = position + sample(channel, position, SAMPLE_SIZE, buffer, crc);
+        }
+      } else {
+        sample(channel, 0, SAMPLE_SIZE, buffer, crc);
+        long between = size - SAMPLE_SIZE * 2;
+        for (int i = 1; i <= MIDDLE_SAMPLES; i++) {
+          long position = SAMPLE_SIZE + (between * i / (MIDDLE_SAMPLES + 1));
+          sample(channel, position, MIDDLE_SAMPLE_SIZE, buffer, crc);
+        }
+        sample(channel, size - SAMPLE_SIZE, SAMPLE_SIZE, buffer, crc);
+      }
+    }
+    return crc.getValue();
+  }
+  
+  private static int sample(FileChannel channel, long position, int length, 
+      ByteBuffer buffer, CRC32 crc) 
+      throws IOException {
+    buffer.clear();
+    buffer.limit(length);
+    int read = channel.read(buffer, position);
+    if (read <= 0) {
+      throw new EOFException();
+    }
+    crc.update(buffer.array(), 0, read);
+    return read;
+  }
+  
+  public File getSource() {
+    return source;
+  }
+  
+  /**
+   Get the headings, at every level, in document order. 
+  
+   @return The indexed headings. 
+  */
+  public List<Heading> getHeadings() {
+    return headings;
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.ui.*;
+
+  import javafx.scene.control.*;
+  import javafx.scene.layout.*;
+
+/**
+ The pair of sliders used to pick a range of heading levels. Slider
+ movements are passed straight through to the transform options, so that
+ the transformer itself never needs to look at a JavaFX control.
+
+ @author Herb Bowie
+ */
+public class HeadingLevelGrid {
+
+  private             TransformOptions    options;
+
+  private             FXUtils             fxUtils;
+  private             GridPane            grid;
+
+  private             Label               headingLevelStartLabel;
+  private             Slider              headingLevelStartSlider;
+  private             Label               headingLevelEndLabel;
+  private             Slider              headingLevelEndSlider;
+
+  /**
+   Build the controls, initialized from the passed options.
+
+   @param options The options to be updated as the sliders are moved.
+  */
+  public HeadingLevelGrid (TransformOptions options) {
+
+    this.options = options;
+
+    fxUtils = FXUtils.getShared();
+    grid = new GridPane();
+    fxUtils.applyStyle(grid);
+
+    headingLevelStartLabel = new Label();
+    headingLevelStartLabel.setText("Lowest Heading Level");
+    grid.add(headingLevelStartLabel, 0, 0, 1, 1);
+
+    headingLevelStartSlider = buildSlider(options.getStartHeadingLevel());
+    headingLevelStartSlider.valueProperty().addListener(
+        (observable, oldValue, newValue) ->
+            options.setStartHeadingLevel(newValue.intValue()));
+    grid.add(headingLevelStartSlider, 0, 1, 1, 1);
+    GridPane.setHgrow(headingLevelStartSlider, Priority.ALWAYS);
+
+    headingLevelEndLabel = new Label();
+    headingLevelEndLabel.setText("Highest Heading Level");
+    grid.add(headingLevelEndLabel, 0, 2, 1, 1);
+
+    headingLevelEndSlider = buildSlider(options.getEndHeadingLevel());
+    headingLevelEndSlider.valueProperty().addListener(
+        (observable, oldValue, newValue) ->
+            options.setEndHeadingLevel(newValue.intValue()));
+    grid.add(headingLevelEndSlider, 0, 3, 1, 1);
+    GridPane.setHgrow(headingLevelEndSlider, Priority.ALWAYS);
+  }
+
+  private Slider buildSlider(int level) {
+    Slider slider = new Slider(
+        TransformOptions.MIN_HEADING_LEVEL,
+        TransformOptions.MAX_HEADING_LEVEL,
+        level);
+    slider.setSnapToTicks(true);
+    slider.setShowTickLabels(true);
+    slider.setShowTickMarks(true);
+    slider.setMajorTickUnit(1.0);
+    slider.setMinorTickCount(0);
+    return slider;
+  }
+
+  /**
+   Get the GridPane containing the sliders.
+
+   @return The grid pane containing the sliders.
+  */
+  public GridPane getGrid() {
+    return grid;
+  }
+
+}
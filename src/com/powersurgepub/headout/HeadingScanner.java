@@ -0,0 +1,615 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ A lexer that finds Markdown headings, and nothing else, one line at a 
+ time. It recognizes ATX headings (starting with hashes) and Setext 
+ headings (underlined with equals signs or hyphens), and steps over fenced 
+ code blocks, indented code blocks, HTML blocks and HTML comments, so that 
+ nothing within them is mistaken for a heading. A Setext heading takes 
+ its text from every line of the paragraph it underlines, joined by 
+ spaces; text within a list item or block quote is never taken for one, 
+ so that a list followed by a line of hyphens is a list and a thematic 
+ break, just as the Markdown parser finds. <p>
+
+ Lines are examined in place, as character sequences, and nothing at all 
+ is allocated for lines that are not headings, or for headings outside 
+ the requested range of levels. A caller assigning unique heading IDs 
+ must scan at every level, though, since a heading outside the range 
+ still takes its ID away from later headings. The text of a heading is 
+ only extracted when asked for. Lines may be passed as views onto a larger buffer, as 
+ supplied by MappedLineReader, or as ranges within a complete document. 
+
+ @author Herb Bowie
+ */
+public class HeadingScanner {
+  
+  /** 
+   Block-level HTML elements that begin an HTML block, ended by a blank 
+   line. Heading elements are left out, so that HTML headings written by 
+   Add ToC to Markdown do not hide the text around them. 
+  */
+  private     static  final String[] BLOCK_TAGS = {
+    "address", "article", "aside", "blockquote", "body", "caption", 
+    "center", "dd", "details", "dialog", "div", "dl", "dt", "fieldset", 
+    "figcaption", "figure", "footer", "form", "frameset", "head", 
+    "header", "hr", "html", "iframe", "legend", "li", "link", "main", 
+    "menu", "nav", "noframes", "ol", "optgroup", "option", "p", "param", 
+    "section", "summary", "table", "tbody", "td", "tfoot", "th", 
+    "thead", "title", "tr", "ul"
+  };
+  
+  /** 
+   Elements whose content is left alone until the closing tag, even 
+   across blank lines. 
+  */
+  private     static  final String[] RAW_TAGS = {
+    "pre", "script", "style", "textarea"
+  };
+  
+  private             int                 startLevel;
+  private             int                 endLevel;
+  
+  private             boolean             prevBlank = true;
+  private             boolean             inFence = false;
+  private             char                fenceChar = ' ';
+  private             int                 fenceLength = 0;
+  private             boolean             inComment = false;
+  private             boolean             inHtmlBlock = false;
+  private             String              rawEndTag = null;
+  
+  /** 
+   The lines of the current paragraph, joined by single spaces, which may 
+   turn out to be the text of a Setext heading. 
+  */
+  private             StringBuilder       paragraph = new StringBuilder();
+  private             boolean             paragraphOpen = false;
+  private             int                 paragraphLines = 0;
+  
+  /** 
+   Is the current text within a list item or block quote? If so, an 
+   underline is a thematic break, not a Setext heading. 
+  */
+  private             boolean             inContainer = false;
+  
+  /** Where to find the text of the heading most recently found. */
+  private             CharSequence        headingSource = null;
+  private             int                 headingStart = 0;
+  private             int                 headingEnd = 0;
+  private             boolean             setext = false;
+  
+  /**
+   Prepare to scan for headings at every level. 
+  */
+  public HeadingScanner () {
+    this(TransformOptions.MIN_HEADING_LEVEL, TransformOptions.MAX_HEADING_LEVEL);
+  }
+  
+  /**
+   Prepare to scan for headings within a range of levels. 
+  
+   @param startLevel The lowest heading level to be reported. 
+   @param endLevel   The highest heading level to be reported. 
+  */
+  public HeadingScanner (int startLevel, int endLevel) {
+    this.startLevel = startLevel;
+    this.endLevel = endLevel;
+  }
+  
+  /**
+   Get ready to scan a new document. 
+  */
+  public void reset() {
+    prevBlank = true;
+    inFence = false;
+    inComment = false;
+    inHtmlBlock = false;
+    rawEndTag = null;
+    paragraphOpen = false;
+    inContainer = false;
+    headingSource = null;
+  }
+  
+  /**
+   Is the scanner at a point where scanning could restart from scratch, 
+   with the same results? This is true at the start of a line following 
+   a blank line, outside of any code block, comment or raw HTML element. 
+  
+   @return True if the scanner is in its initial state. 
+  */
+  public boolean isAtBoundary() {
+    return prevBlank && (! inFence) && (! inComment) && rawEndTag == null;
+  }
+  
+  /**
+   Examine the next line of the document. 
+  
+   @param line The line, without its line terminator. 
+   @return The level of the heading completed by this line, if it is 
+           within the requested range, otherwise zero. 
+  */
+  public int scanLine(CharSequence line) {
+    return scanLine(line, 0, line.length());
+  }
+  
+  /**
+   Examine the next line of the document. 
+  
+   @param source A sequence containing the line. 
+   @param start  The index of the start of the line. 
+   @param end    The index of the end of the line, not counting its 
+                 line terminator (a trailing carriage return is ignored). 
+   @return The level of the heading completed by this line, if it is 
+           within the requested range, otherwise zero. A Setext heading is 
+           completed by its underline, in which case the heading's text 
+           comes from the paragraph above. 
+  */
+  public int scanLine(CharSequence source, int start, int end) {
+    
+    if (end > start && source.charAt(end - 1) == '\r') {
+      end--;
+    }
+    
+    // Measure the indentation
+    int indent = 0;
+    int i = start;
+    while (i < end && (source.charAt(i) == ' ' || source.charAt(i) == '\t')) {
+      if (source.charAt(i) == '\t') {
+        indent = indent + 4 - (indent % 4);
+      } else {
+        indent++;
+      }
+      i++;
+    }
+    boolean blank = i >= end;
+    
+    if (inFence) {
+      int run = runLength(source, i, end, fenceChar);
+      if (indent <= 3 && run >= fenceLength 
+          && isBlank(source, i + run, end)) {
+        inFence = false;
+      }
+      prevBlank = false;
+      return 0;
+    }
+    
+    if (inComment) {
+      if (indexOf(source, i, end, "-->") >= 0) {
+        inComment = false;
+      }
+      prevBlank = false;
+      return 0;
+    }
+    
+    if (rawEndTag != null) {
+      if (indexOfIgnoreCase(source, i, end, rawEndTag) >= 0) {
+        rawEndTag = null;
+      }
+      prevBlank = blank;
+      return 0;
+    }
+    
+    if (blank) {
+      prevBlank = true;
+      inHtmlBlock = false;
+      paragraphOpen = false;
+      inContainer = false;
+      return 0;
+    }
+    
+    prevBlank = false;
+    
+    if (inHtmlBlock) {
+      return 0;
+    }
+    
+    if (indent >= 4 && (! paragraphOpen)) {
+      // Indented code
+      return 0;
+    }
+    
+    if (indent <= 3) {
+      char c = source.charAt(i);
+      if ((c == '`' || c == '~') && runLength(source, i, end, c) >= 3) {
+        inFence = true;
+        fenceChar = c;
+        fenceLength = runLength(source, i, end, c);
+        paragraphOpen = false;
+        inContainer = false;
+        return 0;
+      }
+      
+      if (c == '<' && startHtml(source, i, end)) {
+        paragraphOpen = false;
+        inContainer = false;
+        return 0;
+      }
+      
+      if (c == '#') {
+        int level = atxLevel(source, i, end);
+        if (level > 0) {
+          paragraphOpen = false;
+          inContainer = false;
+          if (level < startLevel || level > endLevel) {
+            return 0;
+          }
+          atxText(source, i + level, end);
+          return level;
+        }
+      }
+      
+      if (paragraphOpen && (! inContainer) && (c == '=' || c == '-')) {
+        int level = setextLevel(source, i, end);
+        if (level > 0) {
+          paragraphOpen = false;
+          if (level < startLevel || level > endLevel) {
+            return 0;
+          }
+          headingSource = paragraph;
+          headingStart = 0;
+          headingEnd = paragraph.length();
+          setext = true;
+          return level;
+        }
+      }
+      
+      if ((c == '-' || c == '*' || c == '_') 
+          && isThematicBreak(source, i, end, c)) {
+        paragraphOpen = false;
+        inContainer = false;
+        return 0;
+      }
+      
+      if (startsContainer(source, i, end)) {
+        // A list item or block quote: any text following belongs to it
+        paragraphOpen = false;
+        inContainer = true;
+        return 0;
+      }
+    } // end if not indented
+    
+    if (inContainer) {
+      // A lazy continuation of the text within a list item or block quote
+      return 0;
+    }
+    
+    // Paragraph text, which might turn out to be a Setext heading
+    int e = end;
+    while (e > i && (source.charAt(e - 1) == ' ' || source.charAt(e - 1) == '\t')) {
+      e--;
+    }
+    if (paragraphOpen) {
+      paragraph.append(' ');
+      paragraphLines++;
+    } else {
+      paragraph.setLength(0);
+      paragraphLines = 1;
+    }
+    paragraph.append(source, i, e);
+    paragraphOpen = true;
+    return 0;
+  }
+  
+  /**
+   See if a line is a thematic break: three or more hyphens, asterisks or 
+   underscores, all the same, with nothing else but spaces and tabs. 
+  
+   @return True for a thematic break. 
+  */
+  private static boolean isThematicBreak(CharSequence source, int start, 
+      int end, char c) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      char d = source.charAt(i);
+      if (d == c) {
+        count++;
+      }
+      else
+      if (d != ' ' && d != '\t') {
+        return false;
+      }
+    }
+    return count >= 3;
+  }
+  
+  /**
+   See if a line starts a list item or a block quote. Only a bullet list 
+   item with some text, or an ordered list starting from 1, may interrupt 
+   a paragraph. 
+  
+   @return True if the line opens a list item or block quote. 
+  */
+  private boolean startsContainer(CharSequence source, int start, int end) {
+    char c = source.charAt(start);
+    if (c == '>') {
+      return true;
+    }
+    if (c == '-' || c == '+' || c == '*') {
+      int after = start + 1;
+      if (after >= end) {
+        return ! paragraphOpen;
+      }
+      char next = source.charAt(after);
+      return (next == ' ' || next == '\t')
+          && ! (paragraphOpen && isBlank(source, after, end));
+    }
+    int digits = 0;
+    long number = 0;
+    while (start + digits < end && digits < 10 
+        && source.charAt(start + digits) >= '0' 
+        && source.charAt(start + digits) <= '9') {
+      number = (number * 10) + (source.charAt(start + digits) - '0');
+      digits++;
+    }
+    if (digits < 1 || digits > 9 || start + digits >= end) {
+      return false;
+    }
+    char delimiter = source.charAt(start + digits);
+    if (delimiter != '.' && delimiter != ')') {
+      return false;
+    }
+    int after = start + digits + 1;
+    if (after < end
+        && source.charAt(after) != ' '
+        && source.charAt(after) != '\t') {
+      return false;
+    }
+    if (paragraphOpen) {
+      return number == 1 && ! isBlank(source, after, end);
+    }
+    return true;
+  }
+  
+  /**
+   Get the text of the heading most recently found, with any leading and 
+   trailing white space and closing hashes removed. This must be called 
+   before the next line is scanned, since the line may be a view that is 
+   about to be reused. 
+  
+   @return The text of the heading. 
+  */
+  public String getHeadingText() {
+    if (headingSource == null) {
+      return "";
+    }
+    int s = headingStart;
+    int e = headingEnd;
+    while (s < e && headingSource.charAt(s) <= ' ') {
+      s++;
+    }
+    while (e > s && headingSource.charAt(e - 1) <= ' ') {
+      e--;
+    }
+    return headingSource.subSequence(s, e).toString();
+  }
+  
+  /**
+   Was the heading most recently found a Setext heading, whose text came 
+   from the paragraph before the line that completed it? 
+  
+   @return True for a Setext heading, false for an ATX heading. 
+  */
+  public boolean isSetext() {
+    return setext;
+  }
+  
+  /**
+   Is the line just scanned part of a paragraph that an underline could 
+   still turn into a Setext heading? A caller copying the document must 
+   hold such lines back until the paragraph ends, or is found to be a 
+   heading. 
+  
+   @return True if the line was paragraph text. 
+  */
+  public boolean isInParagraph() {
+    return paragraphOpen;
+  }
+  
+  /**
+   Get the number of lines in the current paragraph, or, just after a 
+   Setext heading has been found, in the paragraph forming its text. A 
+   result of one, following a line in a paragraph, means that the line 
+   started the paragraph. 
+  
+   @return The number of lines. 
+  */
+  public int getParagraphLines() {
+    return paragraphLines;
+  }
+  
+  /**
+   See if a line starting with an angle bracket opens an HTML block or 
+   comment, and if so note that we are within one. 
+  
+   @return True if an HTML block or comment has been started. 
+  */
+  private boolean startHtml(CharSequence source, int start, int end) {
+    if (startsWith(source, start, end, "<!--")) {
+      if (indexOf(source, start + 4, end, "-->") < 0) {
+        inComment = true;
+      }
+      return true;
+    }
+    int nameStart = start + 1;
+    boolean closing = false;
+    if (nameStart < end && source.charAt(nameStart) == '/') {
+      nameStart++;
+      closing = true;
+    }
+    int nameEnd = nameStart;
+    while (nameEnd < end && Character.isLetterOrDigit(source.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    if (nameEnd == nameStart) {
+      return false;
+    }
+    if (nameEnd < end) {
+      char after = source.charAt(nameEnd);
+      if (after != ' ' && after != '\t' && after != '>' && after != '/') {
+        return false;
+      }
+    }
+    if (! closing) {
+      for (String tag : RAW_TAGS) {
+        if (regionMatches(source, nameStart, nameEnd, tag)) {
+          String endTag = "</" + tag + ">";
+          if (indexOfIgnoreCase(source, nameEnd, end, endTag) < 0) {
+            rawEndTag = endTag;
+          }
+          return true;
+        }
+      }
+    }
+    if (paragraphOpen) {
+      // Only raw elements and comments may interrupt a paragraph
+      return false;
+    }
+    for (String tag : BLOCK_TAGS) {
+      if (regionMatches(source, nameStart, nameEnd, tag)) {
+        inHtmlBlock = true;
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   Return the level of an ATX heading (one starting with hashes).
+
+   @return The number of leading hashes, or zero if not a heading.
+  */
+  private static int atxLevel(CharSequence source, int start, int end) {
+    int hashes = runLength(source, start, end, '#');
+    if (hashes < 1 || hashes > 6) {
+      return 0;
+    }
+    int after = start + hashes;
+    if (after < end
+        && source.charAt(after) != ' '
+        && source.charAt(after) != '\t') {
+      return 0;
+    }
+    return hashes;
+  }
+
+  /**
+   Note where the text of an ATX heading lies, without any closing hashes.
+  */
+  private void atxText(CharSequence source, int start, int end) {
+    int e = end;
+    while (e > start && (source.charAt(e - 1) == ' ' || source.charAt(e - 1) == '\t')) {
+      e--;
+    }
+    int closing = e;
+    while (closing > start && source.charAt(closing - 1) == '#') {
+      closing--;
+    }
+    if (closing == start
+        || source.charAt(closing - 1) == ' '
+        || source.charAt(closing - 1) == '\t') {
+      e = closing;
+    }
+    headingSource = source;
+    headingStart = start;
+    headingEnd = Math.max(start, e);
+    setext = false;
+  }
+
+  /**
+   Return the level of a Setext underline.
+
+   @return 1 for equals signs, 2 for hyphens, or zero if not an underline.
+  */
+  private static int setextLevel(CharSequence source, int start, int end) {
+    char c = source.charAt(start);
+    if (! isBlank(source, start + runLength(source, start, end, c), end)) {
+      return 0;
+    }
+    if (c == '=') {
+      return 1;
+    } else {
+      return 2;
+    }
+  }
+  
+  private static int runLength(CharSequence source, int start, int end, char c) {
+    int i = start;
+    while (i < end && source.charAt(i) == c) {
+      i++;
+    }
+    return i - start;
+  }
+
+  private static boolean isBlank(CharSequence source, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (source.charAt(i) != ' ' && source.charAt(i) != '\t') {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static boolean startsWith(CharSequence source, int start, int end, 
+      String prefix) {
+    if (end - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (source.charAt(start + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static int indexOf(CharSequence source, int start, int end, 
+      String target) {
+    for (int i = start; i <= end - target.length(); i++) {
+      if (startsWith(source, i, end, target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+  
+  private static int indexOfIgnoreCase(CharSequence source, int start, int end, 
+      String target) {
+    for (int i = start; i <= end - target.length(); i++) {
+      if (regionMatches(source, i, i + target.length(), target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   Does the given region match the target, ignoring case? 
+  */
+  private static boolean regionMatches(CharSequence source, int start, int end, 
+      String target) {
+    if (end - start != target.length()) {
+      return false;
+    }
+    for (int i = 0; i < target.length(); i++) {
+      if (Character.toLowerCase(source.charAt(start + i)) != target.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
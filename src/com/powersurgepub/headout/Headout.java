@@ -26,6 +26,7 @@ package com.powersurgepub.headout;
   import java.io.*;
   import java.net.*;
   import java.text.*;
+  import java.util.*;
 
   import javafx.application.*;
   import javafx.collections.*;
@@ -74,6 +75,9 @@ public class Headout
   private             LogWindow           logWindow;
   private             Logger              logger     = Logger.getShared();
   private             LogOutput           logOutput;
+  private             StartupLogOutput    startupLog = null;
+
+  private             StartupTimer        startupTimer;
 
   private             Stage               primaryStage;
   private             VBox                primaryLayout;
@@ -103,6 +107,9 @@ public class Headout
 
   private             GridPane            centerGrid;
   private             Button              transformNowButton;
+  private             Button              cancelButton;
+  private             ProgressBar         progressBar;
+  private             Label               statusLabel;
   private             ComboBox<String>    transformTypeComboBox;
 
   private             int                 transformTypeIndex = 0;
@@ -114,15 +121,25 @@ public class Headout
   private             TextFileSelector    outputSelector;
   
   private             HeadOutTransformer  transformer = null;
+  private             MeasuredTransformer measuredTransformer = null;
+  private             TransformTask       transformTask = null;
 
   @Override
   public void start(Stage primaryStage) {
 
+    startupTimer = new StartupTimer();
     this.primaryStage = primaryStage;
     primaryStage.setTitle("Headout");
     primaryLayout = new VBox();
     fxUtils = FXUtils.getShared();
 
+    // Hold log messages until the log window is built
+    logger = Logger.getShared();
+    startupLog = new StartupLogOutput();
+    logger.setLogOutput (startupLog);
+    logger.setLogAllData (false);
+    logger.setLogThreshold (LogEvent.NORMAL);
+
     appster = new Appster
         (this, "powersurgepub", "com",
             PROGRAM_NAME, PROGRAM_VERSION,
@@ -134,53 +151,23 @@ public class Headout
     Trouble.getShared().setParent(primaryStage);
 
     programVersion = ProgramVersion.getShared ();
+    startupTimer.mark("environment");
 
     // Build most of the UI elements and init the Window Menu Manager
     buildMenuBar();
 
     windowMenuManager = WindowMenuManager.getShared(windowMenu);
+    startupTimer.mark("menus");
 
     buildContent();
 
     primaryScene = new Scene(primaryLayout, 600, 400);
-
-    // Let's set up Logging
-    logger = Logger.getShared();
-    logWindow = new LogWindow (primaryStage);
-    logger.setLogOutput (logWindow);
-    logger.setLogAllData (false);
-    logger.setLogThreshold (LogEvent.NORMAL);
-    windowMenuManager.add(logWindow);
-
-    // About Window
-    aboutWindow = new AboutWindow(
-        primaryStage,
-        false, // Load about window from disk?
-        false, // Using JXL?
-        false, // Using PegDown?
-        false, // Using Xerces?
-        false, // Using SAXON?
-        "2013" // Starting Copyright Year
-    );
-    int aboutIndex = windowMenuManager.add(aboutWindow);
+    startupTimer.mark("content");
 
     logger.recordEvent(LogEvent.NORMAL,
         PROGRAM_NAME + " " + PROGRAM_VERSION + " starting up",
         false);
 
-    windowMenuManager.makeVisible(logWindow);
-
-    aboutWindow = new AboutWindow(
-        primaryStage,
-        false,   // loadFromDisk,
-        true,    // jxlUsed,
-        true,    // Markdown converter Used,
-        true,    // xerces used
-        true,    // saxon used
-        "2009"); // copyRightYearFrom
-
-    home.setHelpMenu(primaryStage, helpMenu, aboutWindow);
-
     // Get App Folder
     appFolder = home.getAppFolder();
     if (appFolder == null) {
@@ -211,12 +198,6 @@ public class Headout
           "Mac Runtime for Java = " + System.getProperty("mrj.version"),
           false);
     }
-    Runtime runtime = Runtime.getRuntime();
-    runtime.gc();
-    NumberFormat numberFormat = NumberFormat.getInstance();
-    Logger.getShared().recordEvent (LogEvent.NORMAL,
-        "Available Memory = " + numberFormat.format (Runtime.getRuntime().freeMemory()),
-        false);
 
     // Now let's bring the curtains up
     primaryStage.setScene(primaryScene);
@@ -229,8 +210,49 @@ public class Headout
     primaryStage.setY
         (prefs.getPrefAsDouble (UserPrefs.TOP,  100));
     primaryStage.show();
+    startupTimer.mark("first window");
+
+    // Anything not needed to show the first window can wait until it's up
+    Platform.runLater(() -> finishStartup());
+  }
+
+  /**
+   Build the auxiliary windows, once the main window is showing.
+   */
+  private void finishStartup() {
+
+    // Let's set up Logging, without ever making a worker thread wait
+    logWindow = new LogWindow (primaryStage);
+    logOutput = new AsyncLogOutput(logWindow, true);
+    startupLog.replayTo(logOutput);
+    logger.setLogOutput (logOutput);
+    startupLog = null;
+    windowMenuManager.add(logWindow);
+
+    // About Window
+    aboutWindow = new AboutWindow(
+        primaryStage,
+        false,   // loadFromDisk,
+        true,    // jxlUsed,
+        true,    // Markdown converter Used,
+        true,    // xerces used
+        true,    // saxon used
+        "2009"); // copyRightYearFrom
+    windowMenuManager.add(aboutWindow);
+
+    home.setHelpMenu(primaryStage, helpMenu, aboutWindow);
+    startupTimer.mark("auxiliary windows");
 
-    WindowMenuManager.getShared().hide(logWindow);
+    // No need to force a garbage collection just to report this
+    Runtime runtime = Runtime.getRuntime();
+    NumberFormat numberFormat = NumberFormat.getInstance();
+    Logger.getShared().recordEvent (LogEvent.NORMAL,
+        "Available Memory = " + numberFormat.format (runtime.freeMemory())
+            + " of " + numberFormat.format (runtime.totalMemory()),
+        false);
+    Logger.getShared().recordEvent (LogEvent.NORMAL,
+        startupTimer.toString(),
+        false);
   }
 
   /**
@@ -282,12 +304,14 @@ public class Headout
     Label typeLabel = new Label("Specify type of Transformation");
     centerGrid.add(typeLabel, 0, 0, 1, 1);
     ObservableList<String> typeList = FXCollections.<String>observableArrayList(
-    "Create Markdown ToC from Markdown",
-      "Create HTML ToC from Markdown",
-      "Add ToC to Markdown",
-      "Create Markdown from OPML");
+        TransformerRegistry.getShared().getTitles());
     transformTypeComboBox = new ComboBox<>(typeList);
-    transformTypeComboBox.getSelectionModel().select(prefs.getPrefAsInt(TRANSFORM_TYPE, 0));
+    int savedType = prefs.getPrefAsInt(TRANSFORM_TYPE, 0);
+    if (savedType < 0 || savedType >= typeList.size()) {
+      // A transform type that is no longer installed
+      savedType = 0;
+    }
+    transformTypeComboBox.getSelectionModel().select(savedType);
     transformTypeComboBox.setOnAction( e -> transformTypeSelected());
     transformTypeComboBox.setMinWidth(150);
     centerGrid.add(transformTypeComboBox, 0, 1, 1, 1);
@@ -300,6 +324,21 @@ public class Headout
     centerGrid.add(transformNowButton, 0, 4, 1, 1);
     GridPane.setHgrow(transformNowButton, Priority.ALWAYS);
 
+    cancelButton = new Button("Cancel");
+    cancelButton.setOnAction(e -> cancelTransform());
+    cancelButton.setDisable(true);
+    centerGrid.add(cancelButton, 0, 5, 1, 1);
+
+    progressBar = new ProgressBar(0);
+    progressBar.setMaxWidth(Double.MAX_VALUE);
+    centerGrid.add(progressBar, 0, 6, 1, 1);
+    GridPane.setHgrow(progressBar, Priority.ALWAYS);
+
+    statusLabel = new Label(" ");
+    statusLabel.setWrapText(true);
+    centerGrid.add(statusLabel, 0, 7, 1, 1);
+    GridPane.setHgrow(statusLabel, Priority.ALWAYS);
+
     mainGrid.add(centerGrid, 1, 0, 1, 5);
     GridPane.setHgrow(centerGrid, Priority.ALWAYS);
     GridPane.setVgrow(centerGrid, Priority.ALWAYS);
@@ -312,7 +351,9 @@ public class Headout
      Standard way to respond to an About Menu Item Selection on a Mac.
    */
   public void handleAbout() {
-    displayAuxiliaryWindow(aboutWindow);
+    if (aboutWindow != null) {
+      displayAuxiliaryWindow(aboutWindow);
+    }
   }
   
   public void displayAuxiliaryWindow(WindowToManage window) {
@@ -388,6 +429,8 @@ public class Headout
 
   /**
    Adjust the transformation parms based on the transform type selected.
+   Each type's transformer is kept once built, along with any changes
+   made to its parms.
    */
   private void transformTypeSelected() {
     
@@ -398,60 +441,146 @@ public class Headout
     transformTypeIndex = transformTypeComboBox.getSelectionModel().getSelectedIndex();
     transformTypeStr = (String)transformTypeComboBox.getSelectionModel().getSelectedItem();
 
-    switch (transformTypeIndex) {
-
-      case 0:
-        transformer = new GenTocFromMarkdown (
-            transformTypeIndex,
-            transformTypeStr);
-        parmsGrid = transformer.getGrid();
-        break;
-        
-      case 1:
-        transformer = new GenTocFromMarkdown (
-            transformTypeIndex,
-            transformTypeStr);
-        parmsGrid = transformer.getGrid();
-        break;
-        
-      case 2:
-        transformer = new GenTocFromMarkdown (
-            transformTypeIndex,
-            transformTypeStr);
-        parmsGrid = transformer.getGrid();
-        break;
-        
-      case 3:
-        transformer = new OPMLtoMarkdown (
-            transformTypeIndex,
-            transformTypeStr);
-        parmsGrid = transformer.getGrid();
-        break;
-            
-    }
+    // Each transformer, and its controls, are built only when first needed
+    transformer = TransformerRegistry.getShared()
+        .getInteractiveTransformer(transformTypeIndex);
+    parmsGrid = transformer.getGrid();
 
-    centerGrid.add(parmsGrid, 0, 2, 1, 2);
-    GridPane.setHgrow(parmsGrid, Priority.ALWAYS);
-    GridPane.setVgrow(parmsGrid, Priority.ALWAYS);
+    if (parmsGrid != null) {
+      centerGrid.add(parmsGrid, 0, 2, 1, 2);
+      GridPane.setHgrow(parmsGrid, Priority.ALWAYS);
+      GridPane.setVgrow(parmsGrid, Priority.ALWAYS);
+    }
     
   }
 
   /**
    Transform the input to the output using the specified Transform method.
+   The work is done on a background thread, so that the window remains 
+   responsive and the transformation may be cancelled. 
    */
   private void transformNow() {
     logger.recordEvent(LogEvent.NORMAL, "Starting Text Transformation", false);
     logger.recordEvent(LogEvent.NORMAL, "Transform Type = " + transformTypeStr, false);
-    try {
-      transformer.transformNow(inputSelector.getReader(), outputSelector.getWriter());
-    } catch (TransformException e) {
-      Alert alert = new Alert(AlertType.ERROR);
-      alert.initOwner(primaryStage);
-      alert.setTitle("Transform error");
-      alert.setHeaderText(null);
+    long totalChars = -1;
+    if (inputSelector.getFile() != null) {
+      totalChars = inputSelector.getFile().length();
+    }
+    // Measure with the transformer's own options, so that the heading 
+    // levels reported are those chosen with its controls
+    TransformOptions options = transformer.getOptions();
+    if (options == null) {
+      options = new TransformOptions(transformTypeIndex, transformTypeStr);
+    }
+    // The GUI always measures, and logs the metrics once the task is done
+    options.setMeasuring(true);
+    measuredTransformer = new MeasuredTransformer(transformer, options);
+    measuredTransformer.setLogging(false);
+    transformTask = new TransformTask(
+        measuredTransformer, 
+        inputSelector.getReader(), 
+        outputSelector.getWriter(), 
+        totalChars);
+    progressBar.progressProperty().bind(transformTask.progressProperty());
+    statusLabel.textProperty().bind(transformTask.messageProperty());
+    transformTask.setOnSucceeded(e -> transformSucceeded());
+    transformTask.setOnFailed(e -> transformFailed());
+    transformTask.setOnCancelled(e -> transformEnded());
+    setTransforming(true);
+    Thread transformThread = new Thread(transformTask, "HeadOut Transform");
+    transformThread.setDaemon(true);
+    transformThread.start();
+  }
+  
+  /**
+   Ask the running transformation to stop. 
+   */
+  private void cancelTransform() {
+    if (transformTask != null) {
+      transformTask.cancel();
+    }
+  }
+  
+  private void transformSucceeded() {
+    String summary = transformTask.getSummary();
+    transformEnded();
+    transformer.savePrefs();
+    statusLabel.setText(summary);
+    logger.recordEvent(LogEvent.NORMAL, "Transformed " + summary, false);
+    if (measuredTransformer.getLastMetrics() != null) {
+      for (String line : measuredTransformer.getLastMetrics().toLogLines()) {
+        logger.recordEvent(LogEvent.NORMAL, line, false);
+      }
+    }
+  }
+  
+  private void transformFailed() {
+    Throwable e = transformTask.getException();
+    transformEnded();
+    progressBar.setProgress(0);
+    statusLabel.setText("Transform failed");
+    Alert alert = new Alert(AlertType.ERROR);
+    alert.initOwner(primaryStage);
+    alert.setTitle("Transform error");
+    alert.setHeaderText(null);
+    if (e == null) {
+      alert.setContentText("Unknown error");
+    } else if (e instanceof TransformException) {
       alert.setContentText(e.getMessage());
-      alert.showAndWait();
+    } else {
+      alert.setContentText(e.toString());
     }
+    alert.showAndWait();
+  }
+  
+  /**
+   Restore the controls once a transformation has ended, one way or another. 
+   */
+  private void transformEnded() {
+    progressBar.progressProperty().unbind();
+    statusLabel.textProperty().unbind();
+    if (transformTask != null && transformTask.isCancelled()) {
+      progressBar.setProgress(0);
+      statusLabel.setText("Cancelled: no output written");
+    }
+    setTransforming(false);
+  }
+  
+  /**
+   Enable or disable controls depending on whether a transformation 
+   is under way. 
+  
+   @param transforming True if a transformation is running.
+   */
+  private void setTransforming(boolean transforming) {
+    transformNowButton.setDisable(transforming);
+    transformTypeComboBox.setDisable(transforming);
+    if (parmsGrid != null) {
+      parmsGrid.setDisable(transforming);
+    }
+    cancelButton.setDisable(! transforming);
+  }
+
+  /**
+   Holds log messages written while starting up, before the log window
+   exists, and passes them along once it does.
+   */
+  static class StartupLogOutput
+      extends LogOutput {
+
+    private             List<String>        lines = new ArrayList<>();
+
+    public void writeLine(String line) {
+      lines.add(line);
+    }
+
+    void replayTo(LogOutput output) {
+      for (String line : lines) {
+        output.writeLine(line);
+      }
+      lines.clear();
+    }
+
   }
 
   /**
@@ -0,0 +1,873 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.io.*;
+  import java.net.*;
+  import java.nio.file.*;
+  import java.util.*;
+
+/**
+ Runs a HeadOut transformation from the command line, without starting
+ JavaFX or opening any windows. Input and output may be files, or standard
+ input and output, so that HeadOut can be used within build scripts and
+ pipes. A whole directory tree may also be transformed in one run, using
+ all available processors. <p>
+
+ Usage: <br>
+ <code>java com.powersurgepub.headout.HeadoutCommandLine
+   [-t type[,type...]] [-s level] [-e level] [-o output] [-v] [input]</code> <br>
+ <code>java com.powersurgepub.headout.HeadoutCommandLine
+   [-s level] [-e level] --fan-out type=output[,type=output...] [input]</code> <br>
+ <code>java com.powersurgepub.headout.HeadoutCommandLine
+   [-t type] [-s level] [-e level] -b dir [-g glob] [-d dir] [-j threads]</code> <br>
+ <code>java com.powersurgepub.headout.HeadoutCommandLine
+   [-t type] [-s level] [-e level] [-o output] --site dir|list [-j threads]</code> <br>
+ <code>java com.powersurgepub.headout.HeadoutCommandLine
+   --serve port [--serve-root dir] [-j threads] [--queue n] [--max-bytes n]</code> <br>
+ Add <code>-w</code> to either of the first two forms to keep running, and
+ transform again whenever a source file changes.
+
+ @author Herb Bowie
+ */
+public class HeadoutCommandLine {
+
+  public static final String  STANDARD_IO   = "-";
+
+  public static final int     EXIT_OK       = 0;
+  public static final int     EXIT_FAILED   = 1;
+  public static final int     EXIT_USAGE    = 2;
+
+  private             TransformOptions    options
+      = new TransformOptions(TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN);
+  private             String              inputName = STANDARD_IO;
+  private             String              outputName = STANDARD_IO;
+  private             boolean             outputNamed = false;
+  private             boolean             verbose = false;
+  private             String              logFileName = null;
+  private             LogOutput           logOutput = null;
+  private             boolean             streaming = false;
+  private             boolean             pullParsing = false;
+  private             boolean             compact = false;
+  private             boolean             indexing = false;
+  private             String              sectionPath = "";
+  private             boolean             watching = false;
+
+  private             boolean             measuring = false;
+  private             String              metricsFileName = null;
+
+  private             String              siteName = null;
+  private             String              siteHtmlName = null;
+
+  private             List<Integer>       fanOutTypes = null;
+  private             List<String>        fanOutNames = null;
+
+  private             String              batchDirName = null;
+  private             String              batchGlob = null;
+  private             String              batchOutputDirName = null;
+  private             int                 threads = 0;
+
+  private             int                 servePort = -1;
+  private             String              serveRootName = null;
+  private             int                 queueDepth
+      = TransformServer.DEFAULT_QUEUE_DEPTH;
+  private             long                maxBytes
+      = TransformServer.DEFAULT_MAX_BYTES;
+
+  private             String              message = "";
+
+  public HeadoutCommandLine() {
+
+  }
+
+  /**
+   Interpret the command line arguments.
+
+   @param args The command line arguments.
+   @return True if the arguments were all understood.
+  */
+  public boolean parseArgs(String[] args) {
+    int start = TransformOptions.MIN_HEADING_LEVEL;
+    int end = TransformOptions.MAX_HEADING_LEVEL;
+    int typeIndex = TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN;
+    int[] followingTypes = new int[0];
+    boolean inputFound = false;
+    int i = 0;
+    while (i < args.length) {
+      String arg = args[i];
+      if (arg.equals("-t") || arg.equals("--type")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing transform type";
+          return false;
+        }
+        String[] types = args[i].split(",");
+        typeIndex = TransformOptions.lookupTransformType(types[0].trim());
+        followingTypes = new int[types.length - 1];
+        for (int j = 0; j < types.length && typeIndex >= 0; j++) {
+          int type = TransformOptions.lookupTransformType(types[j].trim());
+          if (type < 0) {
+            typeIndex = -1;
+          }
+          else
+          if (j > 0) {
+            followingTypes[j - 1] = type;
+          }
+        }
+        if (typeIndex < 0) {
+          message = "Unknown transform type: " + args[i];
+          return false;
+        }
+      }
+      else
+      if (arg.equals("-s") || arg.equals("--start")) {
+        i++;
+        start = parseLevel(args, i);
+        if (start < 0) {
+          return false;
+        }
+      }
+      else
+      if (arg.equals("-e") || arg.equals("--end")) {
+        i++;
+        end = parseLevel(args, i);
+        if (end < 0) {
+          return false;
+        }
+      }
+      else
+      if (arg.equals("-o") || arg.equals("--output")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing output file";
+          return false;
+        }
+        outputName = args[i];
+        outputNamed = true;
+      }
+      else
+      if (arg.equals("--fan-out")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing fan-out outputs";
+          return false;
+        }
+        if (! parseFanOut(args[i])) {
+          return false;
+        }
+      }
+      else
+      if (arg.equals("-b") || arg.equals("--batch")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing batch directory";
+          return false;
+        }
+        batchDirName = args[i];
+      }
+      else
+      if (arg.equals("--site")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing site directory or page list";
+          return false;
+        }
+        siteName = args[i];
+      }
+      else
+      if (arg.equals("--site-html")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing site HTML output file";
+          return false;
+        }
+        siteHtmlName = args[i];
+      }
+      else
+      if (arg.equals("-g") || arg.equals("--glob")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing glob pattern";
+          return false;
+        }
+        batchGlob = args[i];
+      }
+      else
+      if (arg.equals("-d") || arg.equals("--output-dir")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing output directory";
+          return false;
+        }
+        batchOutputDirName = args[i];
+      }
+      else
+      if (arg.equals("-j") || arg.equals("--threads")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing value for " + arg;
+          return false;
+        }
+        try {
+          threads = Integer.parseInt(args[i]);
+        } catch (NumberFormatException e) {
+          message = "Number of threads must be a number";
+          return false;
+        }
+      }
+      else
+      if (arg.equals("-w") || arg.equals("--watch")) {
+        watching = true;
+      }
+      else
+      if (arg.equals("--stream")) {
+        streaming = true;
+      }
+      else
+      if (arg.equals("--pull")) {
+        pullParsing = true;
+      }
+      else
+      if (arg.equals("--compact")) {
+        compact = true;
+      }
+      else
+      if (arg.equals("-x") || arg.equals("--index")) {
+        indexing = true;
+      }
+      else
+      if (arg.equals("--section")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing section ID";
+          return false;
+        }
+        sectionPath = args[i];
+      }
+      else
+      if (arg.equals("--metrics")) {
+        measuring = true;
+      }
+      else
+      if (arg.equals("--metrics-file")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing metrics file";
+          return false;
+        }
+        metricsFileName = args[i];
+      }
+      else
+      if (arg.equals("--serve")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing value for " + arg;
+          return false;
+        }
+        try {
+          servePort = Integer.parseInt(args[i]);
+        } catch (NumberFormatException e) {
+          servePort = -1;
+        }
+        if (servePort < 0 || servePort > 65535) {
+          message = "Port to serve must be a number from 0 to 65535";
+          return false;
+        }
+      }
+      else
+      if (arg.equals("--serve-root")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing directory to serve";
+          return false;
+        }
+        serveRootName = args[i];
+      }
+      else
+      if (arg.equals("--queue")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing value for " + arg;
+          return false;
+        }
+        try {
+          queueDepth = Integer.parseInt(args[i]);
+        } catch (NumberFormatException e) {
+          message = "Queue depth must be a number";
+          return false;
+        }
+      }
+      else
+      if (arg.equals("--max-bytes")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing value for " + arg;
+          return false;
+        }
+        try {
+          maxBytes = Long.parseLong(args[i]);
+        } catch (NumberFormatException e) {
+          message = "Maximum bytes must be a number";
+          return false;
+        }
+      }
+      else
+      if (arg.equals("--log-file")) {
+        i++;
+        if (i >= args.length) {
+          message = "Missing log file";
+          return false;
+        }
+        logFileName = args[i];
+      }
+      else
+      if (arg.equals("-v") || arg.equals("--verbose")) {
+        verbose = true;
+      }
+      else
+      if (arg.equals("-h") || arg.equals("--help")) {
+        message = "";
+        return false;
+      }
+      else
+      if (arg.startsWith("-") && arg.length() > 1) {
+        message = "Unknown option: " + arg;
+        return false;
+      }
+      else
+      if (! inputFound) {
+        inputName = arg;
+        inputFound = true;
+      } else {
+        message = "Only one input may be specified";
+        return false;
+      }
+      i++;
+    } // end while more arguments
+
+    if (start > end) {
+      message = "Start heading level " + String.valueOf(start)
+          + " is greater than end heading level " + String.valueOf(end);
+      return false;
+    }
+    if (batchDirName != null && inputFound) {
+      message = "Specify either a batch directory or an input file, not both";
+      return false;
+    }
+    if (siteName != null
+        && (inputFound || batchDirName != null || watching)) {
+      message = "A site ToC cannot be combined with an input file, batch or watch";
+      return false;
+    }
+    if (siteName != null
+        && typeIndex != TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN
+        && typeIndex != TransformOptions.HTML_TOC_FROM_MARKDOWN) {
+      message = "A site ToC must be of type md-toc or html-toc";
+      return false;
+    }
+    if (siteName != null && followingTypes.length > 0) {
+      message = "A site ToC cannot be chained with other transform types";
+      return false;
+    }
+    if (servePort >= 0
+        && (inputFound || batchDirName != null || siteName != null || watching)) {
+      message = "Serve mode cannot be combined with an input file, batch, site or watch";
+      return false;
+    }
+    if (serveRootName != null && servePort < 0) {
+      message = "--serve-root requires --serve";
+      return false;
+    }
+    if (siteHtmlName != null && siteName == null) {
+      message = "--site-html requires --site";
+      return false;
+    }
+    if (fanOutTypes != null
+        && (batchDirName != null || siteName != null || servePort >= 0 
+          || watching || followingTypes.length > 0)) {
+      message = "A fan-out cannot be combined with a chain, batch, site, serve or watch";
+      return false;
+    }
+    if (fanOutTypes != null && outputNamed) {
+      message = "A fan-out names its own outputs, and cannot be combined with -o";
+      return false;
+    }
+    if (fanOutTypes != null) {
+      typeIndex = fanOutTypes.get(0);
+    }
+    if (watching && batchDirName == null && inputName.equals(STANDARD_IO)) {
+      message = "Watch mode requires an input file or a batch directory";
+      return false;
+    }
+
+    options = new TransformOptions(typeIndex);
+    options.setFollowingTypes(followingTypes);
+    options.setStartHeadingLevel(start);
+    options.setEndHeadingLevel(end);
+    options.setStreaming(streaming);
+    options.setPullParsing(pullParsing);
+    options.setCompact(compact);
+    options.setIndexing(indexing);
+    options.setSectionPath(sectionPath);
+    options.setMeasuring(measuring);
+    if (metricsFileName != null) {
+      options.setMetricsFile(new File(metricsFileName));
+    }
+    return true;
+  }
+
+  /**
+   Interpret the list of fan-out outputs, each a transform type and an 
+   output file, joined by an equals sign, separated by commas. 
+
+   @param list The list of outputs. 
+   @return True if every output was understood. 
+  */
+  private boolean parseFanOut(String list) {
+    fanOutTypes = new ArrayList<>();
+    fanOutNames = new ArrayList<>();
+    for (String output : list.split(",")) {
+      int equals = output.indexOf('=');
+      if (equals <= 0 || equals >= output.length() - 1) {
+        message = "Fan-out outputs must be given as type=file: " + output;
+        return false;
+      }
+      String type = output.substring(0, equals).trim();
+      int index = TransformOptions.lookupTransformType(type);
+      if (! FanOutTransformer.canFanOut(index)) {
+        message = "Fan-out outputs must be md-toc, html-toc or add-toc: " 
+            + type;
+        return false;
+      }
+      String name = output.substring(equals + 1).trim();
+      if (name.equals(STANDARD_IO) && fanOutNames.contains(STANDARD_IO)) {
+        message = "Only one fan-out output may be written to standard output";
+        return false;
+      }
+      fanOutTypes.add(index);
+      fanOutNames.add(name);
+    }
+    return true;
+  }
+
+  private int parseLevel(String[] args, int i) {
+    if (i >= args.length) {
+      message = "Missing heading level";
+      return -1;
+    }
+    try {
+      int level = Integer.parseInt(args[i]);
+      if (level >= TransformOptions.MIN_HEADING_LEVEL
+          && level <= TransformOptions.MAX_HEADING_LEVEL) {
+        return level;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the error below
+    }
+    message = "Heading level must be from "
+        + String.valueOf(TransformOptions.MIN_HEADING_LEVEL) + " to "
+        + String.valueOf(TransformOptions.MAX_HEADING_LEVEL) + ": " + args[i];
+    return -1;
+  }
+
+  /**
+   Send log messages to standard error, so that they never get mixed
+   in with output sent to standard output, or else to a log file. Messages
+   logged by the server's worker threads, or bound for a file, are passed
+   along by a background thread, so that logging never holds up a
+   transformation.
+  */
+  private void setupLogging() {
+    Logger logger = Logger.getShared();
+    if (logFileName != null) {
+      logOutput = new AsyncLogOutput(
+          new RollingFileLogOutput(new File(logFileName)), false);
+    } else {
+      logOutput = new LogOutput() {
+        public void writeLine(String line) {
+          System.err.println(line);
+        }
+      };
+      if (servePort >= 0) {
+        logOutput = new AsyncLogOutput(logOutput, false);
+      }
+    }
+    logger.setLogOutput(logOutput);
+    logger.setLogAllData(false);
+    if (verbose || options.isMeasuring()) {
+      logger.setLogThreshold(LogEvent.NORMAL);
+    } else {
+      logger.setLogThreshold(LogEvent.MEDIUM);
+    }
+  }
+
+  /**
+   Perform the requested transformation.
+
+   @return An exit code: zero if everything went ok.
+  */
+  public int run() {
+    setupLogging();
+    try {
+      return runRequested();
+    } finally {
+      closeLogging();
+    }
+  }
+
+  /**
+   Pass along any log messages still waiting.
+  */
+  private void closeLogging() {
+    if (logOutput instanceof AsyncLogOutput) {
+      ((AsyncLogOutput)logOutput).close();
+    }
+  }
+
+  private int runRequested() {
+    if (servePort >= 0) {
+      return runServer();
+    }
+    Logger.getShared().recordEvent(LogEvent.NORMAL,
+        "Transform Type = " + options.toString(), false);
+    if (watching) {
+      return runWatch();
+    }
+    if (batchDirName != null) {
+      return runBatch();
+    }
+    if (siteName != null) {
+      return runSite();
+    }
+    if (fanOutTypes != null) {
+      return runFanOut();
+    }
+    HeadOutTransformer transformer = createTransformer(options);
+    try {
+      transformer.transformNow(getReader(inputName), getWriter(outputName));
+    } catch (TransformException e) {
+      message = e.getMessage();
+      return EXIT_FAILED;
+    }
+    return EXIT_OK;
+  }
+
+  /**
+   Write every fan-out output from a single reading of the input,
+   measured as a single transformation if that was requested.
+
+   @return An exit code: zero if every output was written.
+  */
+  private int runFanOut() {
+    FanOutTransformer fanOut = new FanOutTransformer(options);
+    for (int i = 0; i < fanOutTypes.size(); i++) {
+      fanOut.addOutput(fanOutTypes.get(i), getWriter(fanOutNames.get(i)));
+    }
+    try {
+      new MeasuredTransformer(fanOut, options).fanOutNow(getReader(inputName));
+    } catch (TransformException e) {
+      message = e.getMessage();
+      return EXIT_FAILED;
+    }
+    return EXIT_OK;
+  }
+
+  /**
+   Keep running, performing transformations requested by local clients,
+   until killed.
+
+   @return An exit code, if the server could not be started.
+  */
+  private int runServer() {
+    Path serveRoot = null;
+    if (serveRootName != null) {
+      serveRoot = Paths.get(serveRootName);
+      if (! Files.isDirectory(serveRoot)) {
+        message = "Directory to serve not found: " + serveRootName;
+        return EXIT_FAILED;
+      }
+    }
+    TransformServer server = new TransformServer(
+        servePort, threads, queueDepth, maxBytes, serveRoot);
+    try {
+      int port = server.open();
+      System.err.println(Headout.PROGRAM_NAME + " serving on "
+          + InetAddress.getLoopbackAddress().getHostAddress()
+          + ":" + String.valueOf(port));
+    } catch (IOException e) {
+      message = "Could not start server: " + e.getMessage();
+      return EXIT_FAILED;
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.close();
+      Logger.getShared().recordEvent(LogEvent.MEDIUM,
+          Headout.PROGRAM_NAME + " server stopped: " + server.getSummary(),
+          false);
+      closeLogging();
+    }));
+    server.serve();
+    return EXIT_OK;
+  }
+
+  /**
+   Transform every matching file within the batch directory.
+
+   @return An exit code: zero if every file was transformed.
+  */
+  private int runBatch() {
+    Path batchDir = Paths.get(batchDirName);
+    if (! Files.isDirectory(batchDir)) {
+      message = "Batch directory not found: " + batchDirName;
+      return EXIT_FAILED;
+    }
+    Path batchOutputDir = null;
+    if (batchOutputDirName != null) {
+      batchOutputDir = Paths.get(batchOutputDirName);
+    }
+    BatchTransformer batch = new BatchTransformer(
+        options, batchDir, batchGlob, batchOutputDir, threads);
+    try {
+      int failures = batch.run();
+      if (failures > 0) {
+        message = String.valueOf(failures) + " file(s) could not be transformed";
+        return EXIT_FAILED;
+      }
+    } catch (IOException e) {
+      message = "Trouble reading batch directory: " + e.getMessage();
+      return EXIT_FAILED;
+    }
+    return EXIT_OK;
+  }
+
+  /**
+   Build one Table of Contents for every page of a site, found either 
+   within a directory tree or in a list of pages. 
+
+   @return An exit code: zero if every page could be read.
+  */
+  private int runSite() {
+    Path site = Paths.get(siteName);
+    Path siteDir;
+    List<Path> pages;
+    try {
+      if (Files.isDirectory(site)) {
+        siteDir = site;
+        Set<Path> outputs = new HashSet<>();
+        for (String name : new String[] {outputName, siteHtmlName}) {
+          if (name != null && ! name.equals(STANDARD_IO)) {
+            outputs.add(Paths.get(name).toAbsolutePath().normalize());
+          }
+        }
+        pages = new ArrayList<>();
+        BatchTransformer batch = new BatchTransformer(
+            options, siteDir, batchGlob, null, threads);
+        for (Path page : batch.findFiles()) {
+          if (! outputs.contains(page.toAbsolutePath().normalize())) {
+            pages.add(page);
+          }
+        }
+      }
+      else
+      if (Files.isRegularFile(site)) {
+        siteDir = site.toAbsolutePath().getParent();
+        pages = SiteToc.readFileList(site);
+      } else {
+        message = "Site directory or page list not found: " + siteName;
+        return EXIT_FAILED;
+      }
+    } catch (IOException e) {
+      message = "Trouble finding site pages: " + e.getMessage();
+      return EXIT_FAILED;
+    }
+
+    SiteToc siteToc = new SiteToc(options, siteDir, pages, threads);
+    try {
+      siteToc.scan();
+    } catch (IOException e) {
+      message = e.getMessage();
+      return EXIT_FAILED;
+    }
+    int markupFormat = MarkupWriter.MARKDOWN_FORMAT;
+    if (options.getTransformTypeIndex()
+        == TransformOptions.HTML_TOC_FROM_MARKDOWN) {
+      markupFormat = MarkupWriter.HTML_FRAGMENT_FORMAT;
+    }
+    siteToc.writeToc(getWriter(outputName), markupFormat);
+    if (siteHtmlName != null) {
+      siteToc.writeToc(getWriter(siteHtmlName), 
+          MarkupWriter.HTML_FRAGMENT_FORMAT);
+    }
+    return EXIT_OK;
+  }
+
+  /**
+   Keep transforming the input file, or the files in the batch directory,
+   whenever they change.
+
+   @return An exit code, once watching stops.
+  */
+  private int runWatch() {
+    WatchTransformer watchTransformer;
+    if (batchDirName == null) {
+      watchTransformer = new WatchTransformer(
+          options, Paths.get(inputName), outputName);
+    } else {
+      Path batchDir = Paths.get(batchDirName);
+      if (! Files.isDirectory(batchDir)) {
+        message = "Batch directory not found: " + batchDirName;
+        return EXIT_FAILED;
+      }
+      Path batchOutputDir = null;
+      if (batchOutputDirName != null) {
+        batchOutputDir = Paths.get(batchOutputDirName);
+      }
+      watchTransformer = new WatchTransformer(options, new BatchTransformer(
+          options, batchDir, batchGlob, batchOutputDir, threads));
+    }
+    try {
+      watchTransformer.watch();
+    } catch (IOException e) {
+      message = "Trouble watching for changes: " + e.getMessage();
+      return EXIT_FAILED;
+    }
+    return EXIT_OK;
+  }
+
+  /**
+   Create a transformer, without any user interface, for the given options,
+   wrapped so as to measure each transformation if that was requested, and
+   to report it to any flight recording under way. If further transform
+   types follow, a pipeline is created, with each stage wrapped in turn.
+
+   @param options The options to be used.
+   @return The appropriate transformer.
+  */
+  public static HeadOutTransformer createTransformer(TransformOptions options) {
+    if (options.isPipeline()) {
+      return new TransformPipeline(options);
+    }
+    return new MeasuredTransformer(
+        TransformerRegistry.getShared().createTransformer(options), options);
+  }
+
+  /**
+   Get a line reader for the named input.
+
+   @param name A file path, or a hyphen for standard input.
+   @return A line reader.
+  */
+  public static TextLineReader getReader(String name) {
+    if (name.equals(STANDARD_IO)) {
+      return new StreamLineReader(System.in, "standard input");
+    } else {
+      return MappedLineReader.getReader(new File(name));
+    }
+  }
+
+  /**
+   Get a line writer for the named output.
+
+   @param name A file path, or a hyphen for standard output.
+   @return A line writer.
+  */
+  public static TextLineWriter getWriter(String name) {
+    if (name.equals(STANDARD_IO)) {
+      return new StreamLineWriter(System.out, "standard output");
+    } else {
+      return new FileMaker(new File(name));
+    }
+  }
+
+  public TransformOptions getOptions() {
+    return options;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   Print brief instructions to standard error.
+  */
+  public static void printUsage() {
+    PrintStream err = System.err;
+    err.println("Usage: " + HeadoutCommandLine.class.getName()
+        + " [options] [input]");
+    err.println("  input              file to be transformed, or - for standard input (the default)");
+    err.println("  -t, --type type    transform type, by number or name, or a comma-separated");
+    err.println("                     list of types to chain, each fed the output of the last:");
+    TransformerRegistry registry = TransformerRegistry.getShared();
+    for (int i = 0; i < registry.size(); i++) {
+      err.println("                       " + String.valueOf(i) + "  "
+          + registry.getName(i) + "  ("
+          + registry.getTitle(i) + ")");
+    }
+    err.println("  -s, --start level  lowest heading level to include (default 1)");
+    err.println("  -e, --end level    highest heading level to include (default 6)");
+    err.println("  -o, --output file  output file, or - for standard output (the default)");
+    err.println("  --fan-out t=f,...  read the input once, writing each md-toc, html-toc or");
+    err.println("                     add-toc output t to its own file f, or - for standard output");
+    err.println("  --stream           convert OPML in a single pass, spooling to a temporary file");
+    err.println("  --pull             read OPML with the StAX pull parser instead of SAX");
+    err.println("  --compact          write HTML or OPML without indentation");
+    err.println("  -x, --index        build a table of contents from a saved heading index");
+    err.println("  --section id/path  heading ID, or slash-separated path of IDs, to extract");
+    err.println("  --site dir|list    build one table of contents for every page of a site");
+    err.println("  --site-html file   also write the site table of contents as HTML");
+    err.println("  -b, --batch dir    transform every matching file within a directory tree");
+    err.println("  -g, --glob glob    batch file pattern (default **.{md,markdown}, or **.opml)");
+    err.println("  -d, --output-dir   batch output directory (default alongside each source)");
+    err.println("  -j, --threads n    batch, site or server threads (default one per processor)");
+    err.println("  -w, --watch        keep running, and transform again whenever the input changes");
+    err.println("  --serve port       keep running, transforming requests sent to a loopback port");
+    err.println("  --serve-root dir   directory whose files may be named in served requests");
+    err.println("  --queue n          served requests allowed to wait for a thread (default 64)");
+    err.println("  --max-bytes n      largest input or output of a served request (default 16 MB)");
+    err.println("  --metrics          log time, CPU, allocation and counts for each transform");
+    err.println("  --metrics-file f   also append metrics to f, as JSON (.json, .jsonl) or CSV");
+    err.println("  --log-file f       log to f, starting a new file as each reaches 10 MB");
+    err.println("  -v, --verbose      log progress to standard error");
+    err.println("  -h, --help         show this message");
+  }
+
+  /**
+   The main method for command line use.
+
+   @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    HeadoutCommandLine commandLine = new HeadoutCommandLine();
+    int exitCode;
+    if (commandLine.parseArgs(args)) {
+      exitCode = commandLine.run();
+    } else {
+      exitCode = EXIT_USAGE;
+      if (commandLine.getMessage().length() == 0) {
+        exitCode = EXIT_OK;
+      }
+      printUsage();
+    }
+    if (commandLine.getMessage().length() > 0) {
+      System.err.println(Headout.PROGRAM_NAME + ": " + commandLine.getMessage());
+    }
+    System.exit(exitCode);
+  }
+
+}
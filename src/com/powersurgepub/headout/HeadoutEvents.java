@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import jdk.jfr.*;
+
+/**
+ Java Flight Recorder events emitted by HeadOut, so that a standard 
+ recording shows which document, and which stage of its transformation, 
+ is taking the time. Each event is created, begun and committed around 
+ the work it describes; when no recording is under way, an event's 
+ fields are never filled in, and committing it does nothing. <p>
+
+ All of the events are in the 'HeadOut' category. 
+
+ @author Herb Bowie
+ */
+public class HeadoutEvents {
+  
+  private HeadoutEvents() {
+    
+  }
+  
+  /**
+   One transformation of one input. 
+  */
+  @Name("com.powersurgepub.headout.Transform")
+  @Label("HeadOut Transform")
+  @Category("HeadOut")
+  @Description("One transformation of one input")
+  @StackTrace(false)
+  public static class Transform 
+      extends Event {
+    
+    @Label("Transform Type")
+    public String   transformType;
+    
+    @Label("Start Heading Level")
+    public int      startLevel;
+    
+    @Label("End Heading Level")
+    public int      endLevel;
+    
+    @Label("Source")
+    public String   source;
+    
+    @Label("Input Size")
+    @DataAmount
+    public long     inputSize;
+    
+    @Label("Lines In")
+    public long     linesIn;
+    
+    @Label("Lines Out")
+    public long     linesOut;
+    
+    @Label("Succeeded")
+    public boolean  ok;
+  }
+  
+  /**
+   One file of a batch, including the time spent waiting to write it. 
+  */
+  @Name("com.powersurgepub.headout.BatchFile")
+  @Label("HeadOut Batch File")
+  @Category("HeadOut")
+  @Description("The transformation of one file within a batch")
+  @StackTrace(false)
+  public static class BatchFile 
+      extends Event {
+    
+    @Label("Transform Type")
+    public String   transformType;
+    
+    @Label("Source")
+    public String   source;
+    
+    @Label("Bytes In")
+    @DataAmount
+    public long     bytesIn;
+    
+    @Label("Bytes Out")
+    @DataAmount
+    public long     bytesOut;
+    
+    @Label("Lines In")
+    public long     linesIn;
+    
+    @Label("Succeeded")
+    public boolean  ok;
+    
+    @Label("Message")
+    public String   message;
+  }
+  
+  /**
+   One stage of a transformation, such as parsing OPML, or assembling 
+   a Table of Contents. 
+  */
+  @Name("com.powersurgepub.headout.Stage")
+  @Label("HeadOut Stage")
+  @Category("HeadOut")
+  @Description("One stage of a transformation, such as an OPML parse or ToC assembly")
+  @StackTrace(false)
+  public static class Stage 
+      extends Event {
+    
+    @Label("Stage")
+    public String   stage;
+    
+    @Label("Transform Type")
+    public String   transformType;
+    
+    @Label("Source")
+    public String   source;
+  }
+  
+  /**
+   Output being flushed and closed, or committed to its destination. 
+  */
+  @Name("com.powersurgepub.headout.Flush")
+  @Label("HeadOut Output Flush")
+  @Category("HeadOut")
+  @Description("Output being flushed to its destination")
+  @StackTrace(false)
+  public static class Flush 
+      extends Event {
+    
+    @Label("Destination")
+    public String   destination;
+    
+    @Label("Characters")
+    public long     chars;
+  }
+
+}
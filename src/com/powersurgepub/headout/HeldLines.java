@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ The lines of a paragraph, held back while a document is copied, since 
+ a following underline may turn them into the text of a Setext heading. 
+ The lines are copied into one reusable buffer, and handed back through 
+ one reusable view, so that nothing is allocated once the buffer has 
+ grown to the length of the longest paragraph. 
+
+ @author Herb Bowie
+ */
+public class HeldLines {
+  
+  private             char[]              buffer = new char[256];
+  private             int                 length = 0;
+  private             int[]               ends = new int[16];
+  private             int                 count = 0;
+  
+  private             LineView            view = new LineView();
+  
+  /**
+   Hold one more line. 
+  
+   @param line The line, which need not remain unchanged afterwards. 
+  */
+  public void add(CharSequence line) {
+    int n = line.length();
+    if (length + n > buffer.length) {
+      char[] larger = new char[Math.max(length + n, buffer.length * 2)];
+      System.arraycopy(buffer, 0, larger, 0, length);
+      buffer = larger;
+    }
+    if (line instanceof String) {
+      ((String)line).getChars(0, n, buffer, length);
+    } else {
+      for (int i = 0; i < n; i++) {
+        buffer[length + i] = line.charAt(i);
+      }
+    }
+    length = length + n;
+    if (count >= ends.length) {
+      int[] larger = new int[ends.length * 2];
+      System.arraycopy(ends, 0, larger, 0, count);
+      ends = larger;
+    }
+    ends[count++] = length;
+  }
+  
+  /**
+   Get the number of lines held. 
+  
+   @return The number of lines. 
+  */
+  public int size() {
+    return count;
+  }
+  
+  /**
+   Get one of the lines held. The view returned is reused by the next 
+   call, so it must be used, or copied, before then. 
+  
+   @param i The index of the line, starting from zero. 
+   @return The line. 
+  */
+  public CharSequence get(int i) {
+    int start = 0;
+    if (i > 0) {
+      start = ends[i - 1];
+    }
+    view.start = start;
+    view.end = ends[i];
+    return view;
+  }
+  
+  /**
+   Let go of every line. 
+  */
+  public void clear() {
+    length = 0;
+    count = 0;
+  }
+  
+  /**
+   A view of part of the buffer. 
+  */
+  class LineView 
+      implements CharSequence {
+    
+    int start = 0;
+    int end = 0;
+    
+    public int length() {
+      return end - start;
+    }
+    
+    public char charAt(int index) {
+      return buffer[start + index];
+    }
+    
+    public CharSequence subSequence(int s, int e) {
+      return new String(buffer, start + s, e - s);
+    }
+    
+    public String toString() {
+      return new String(buffer, start, end - start);
+    }
+  }
+
+}
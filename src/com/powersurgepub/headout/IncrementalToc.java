@@ -0,0 +1,345 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.mkdown.*;
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.util.*;
+
+/**
+ Keeps the headings of a Markdown document up to date as the document is
+ edited, reparsing only the region that changed. <p>
+
+ Along with the headings, the previous run's safe block boundaries are
+ kept: the starts of lines that follow a blank line outside of any fenced
+ code block or HTML comment. Parsing can always restart cleanly at such a boundary. When a
+ new version of the document arrives, the changed range is found by
+ comparing it with the previous version from both ends. Parsing restarts
+ at the last boundary before the change, and stops at the first boundary
+ after the change that was also a boundary last time, since from there on
+ the parse is bound to come out the same. The new headings are then
+ spliced in between the unchanged headings on either side. The lines
+ themselves are examined by a HeadingScanner.
+
+ @author Herb Bowie
+ */
+public class IncrementalToc {
+
+  private             String              text = null;
+  private             List<Heading>       headings = new ArrayList<>();
+
+  private             int[]               boundaryOffsets = new int[64];
+  private             int[]               boundaryLines = new int[64];
+  private             int                 boundaryCount = 0;
+
+  private             int                 reparsedChars = 0;
+
+  // Scratch lists filled by a scan
+  private             List<Heading>       scanned = new ArrayList<>();
+  private             int[]               scannedOffsets = new int[64];
+  private             int[]               scannedLines = new int[64];
+  private             int                 scannedCount = 0;
+  private             int                 stopLine = 0;
+
+  private             HeadingScanner      scanner = new HeadingScanner();
+
+  public IncrementalToc() {
+
+  }
+
+  /**
+   Bring the headings up to date with a new version of the document.
+
+   @param newText The complete text of the new version.
+   @return The headings found in the new version.
+  */
+  public List<Heading> update(String newText) {
+
+    if (text == null || boundaryCount == 0) {
+      scan(newText, 0, 1, Integer.MAX_VALUE, 0);
+      headings = new ArrayList<>(scanned);
+      boundaryOffsets = Arrays.copyOf(scannedOffsets, scannedCount);
+      boundaryLines = Arrays.copyOf(scannedLines, scannedCount);
+      boundaryCount = scannedCount;
+      reparsedChars = newText.length();
+      text = newText;
+      return headings;
+    }
+
+    int oldLength = text.length();
+    int newLength = newText.length();
+    int limit = Math.min(oldLength, newLength);
+    int prefix = 0;
+    while (prefix < limit && text.charAt(prefix) == newText.charAt(prefix)) {
+      prefix++;
+    }
+    if (prefix == oldLength && prefix == newLength) {
+      reparsedChars = 0;
+      return headings;
+    }
+    int suffix = 0;
+    while (suffix < limit - prefix
+        && text.charAt(oldLength - 1 - suffix)
+          == newText.charAt(newLength - 1 - suffix)) {
+      suffix++;
+    }
+    int newChangeEnd = newLength - suffix;
+    int delta = newLength - oldLength;
+
+    // Restart at the last safe boundary at or before the change
+    int restart = findBoundary(prefix);
+    int restartOffset = boundaryOffsets[restart];
+    int restartLine = boundaryLines[restart];
+
+    int stop = scan(newText, restartOffset, restartLine, newChangeEnd, delta);
+    reparsedChars = stop - restartOffset;
+
+    // Splice the headings
+    List<Heading> spliced = new ArrayList<>(headings.size() + scanned.size());
+    int i = 0;
+    while (i < headings.size() && headings.get(i).getOffset() < restartOffset) {
+      spliced.add(headings.get(i));
+      i++;
+    }
+    spliced.addAll(scanned);
+    int oldBoundary = -1;
+    if (stop < newLength) {
+      oldBoundary = boundaryIndex(stop - delta);
+      int lineDelta = stopLine - boundaryLines[oldBoundary];
+      while (i < headings.size() && headings.get(i).getOffset() < stop - delta) {
+        i++;
+      }
+      while (i < headings.size()) {
+        spliced.add(headings.get(i).shift(delta, lineDelta));
+        i++;
+      }
+    }
+
+    // Splice the boundaries
+    int tail = 0;
+    if (oldBoundary >= 0) {
+      tail = boundaryCount - oldBoundary;
+    }
+    int[] offsets = new int[restart + scannedCount + tail];
+    int[] lines = new int[offsets.length];
+    System.arraycopy(boundaryOffsets, 0, offsets, 0, restart);
+    System.arraycopy(boundaryLines, 0, lines, 0, restart);
+    System.arraycopy(scannedOffsets, 0, offsets, restart, scannedCount);
+    System.arraycopy(scannedLines, 0, lines, restart, scannedCount);
+    if (oldBoundary >= 0) {
+      int lineDelta = stopLine - boundaryLines[oldBoundary];
+      for (int j = 0; j < tail; j++) {
+        offsets[restart + scannedCount + j] = boundaryOffsets[oldBoundary + j] + delta;
+        lines[restart + scannedCount + j] = boundaryLines[oldBoundary + j] + lineDelta;
+      }
+    }
+    boundaryOffsets = offsets;
+    boundaryLines = lines;
+    boundaryCount = offsets.length;
+
+    headings = spliced;
+    text = newText;
+    return headings;
+  }
+
+  /**
+   Find the last boundary at or before the given offset.
+
+   @param offset An offset within the previous version.
+   @return The index of the boundary.
+  */
+  private int findBoundary(int offset) {
+    int low = 0;
+    int high = boundaryCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (boundaryOffsets[mid] <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   Find a boundary at exactly the given offset.
+
+   @param offset An offset within the previous version.
+   @return The index of the boundary, or -1 if there is none.
+  */
+  private int boundaryIndex(int offset) {
+    int index = Arrays.binarySearch(boundaryOffsets, 0, boundaryCount, offset);
+    if (index < 0) {
+      return -1;
+    } else {
+      return index;
+    }
+  }
+
+  /**
+   Scan text for headings and boundaries, starting at a boundary.
+
+   @param source      The text to be scanned.
+   @param start       The offset at which to start; must be a boundary.
+   @param startLine   The line number at the start.
+   @param resyncAfter Once this offset is reached, stop at the first
+                      boundary that was also a boundary in the previous
+                      version.
+   @param delta       The difference in length between this version
+                      and the previous one.
+   @return The offset at which scanning stopped.
+  */
+  private int scan(String source, int start, int startLine,
+      int resyncAfter, int delta) {
+
+    scanned.clear();
+    scannedCount = 0;
+    scanner.reset();
+
+    int length = source.length();
+    int pos = start;
+    int lineNumber = startLine;
+    int paragraphOffset = start;
+    int paragraphLine = startLine;
+
+    while (pos < length) {
+      int lineEnd = source.indexOf('\n', pos);
+      int next;
+      if (lineEnd < 0) {
+        lineEnd = length;
+        next = length;
+      } else {
+        next = lineEnd + 1;
+      }
+
+      if (scanner.isAtBoundary()) {
+        if (pos > start
+            && pos >= resyncAfter
+            && boundaryIndex(pos - delta) >= 0) {
+          stopLine = lineNumber;
+          return pos;
+        }
+        addScannedBoundary(pos, lineNumber);
+      }
+
+      int level = scanner.scanLine(source, pos, lineEnd);
+      if (level > 0) {
+        if (scanner.isSetext()) {
+          // The heading's text was in the paragraph above its underline
+          addScannedHeading(level, scanner.getHeadingText(),
+              paragraphOffset, paragraphLine);
+        } else {
+          addScannedHeading(level, scanner.getHeadingText(),
+              pos, lineNumber);
+        }
+      }
+      else
+      if (scanner.isInParagraph() && scanner.getParagraphLines() == 1) {
+        // A Setext heading starts with the first line of its paragraph
+        paragraphOffset = pos;
+        paragraphLine = lineNumber;
+      }
+
+      pos = next;
+      lineNumber++;
+    } // end while more lines
+
+    stopLine = lineNumber;
+    return length;
+  }
+
+  private void addScannedBoundary(int offset, int lineNumber) {
+    if (scannedCount >= scannedOffsets.length) {
+      scannedOffsets = Arrays.copyOf(scannedOffsets, scannedCount * 2);
+      scannedLines = Arrays.copyOf(scannedLines, scannedCount * 2);
+    }
+    scannedOffsets[scannedCount] = offset;
+    scannedLines[scannedCount] = lineNumber;
+    scannedCount++;
+  }
+
+  private void addScannedHeading(int level, String rawText,
+      int offset, int lineNumber) {
+    MarkdownLine mdLine = HeadingIDs.parseHeading(level, rawText);
+    if (mdLine != null) {
+      scanned.add(new Heading(level, mdLine.getID(), mdLine.getLineContent(),
+          offset, lineNumber));
+    }
+  }
+
+  /**
+   Write a Table of Contents from the current headings.
+
+   @param lineWriter The output.
+   @param options    The transform type and heading levels.
+  */
+  public void writeToc(TextLineWriter lineWriter, TransformOptions options) {
+    int markupFormat = MarkupWriter.MARKDOWN_FORMAT;
+    if (options.getTransformTypeIndex() 
+        == TransformOptions.HTML_TOC_FROM_MARKDOWN) {
+      markupFormat = MarkupWriter.HTML_FRAGMENT_FORMAT;
+    }
+    lineWriter.openForOutput();
+    TocWriter tocWriter = new TocWriter(lineWriter, markupFormat);
+    tocWriter.setCompact(options.isCompact());
+    tocWriter.start();
+    HeadingIDs ids = new HeadingIDs();
+    for (Heading heading : headings) {
+      heading = ids.assign(heading);
+      if (options.inRange(heading.getLevel())
+          && TocWriter.isTocEntry(heading.getID())) {
+        tocWriter.addHeading(heading);
+      }
+    }
+    tocWriter.finish();
+    lineWriter.close();
+  }
+
+  /**
+   Get the headings found in the latest version.
+
+   @return The headings, in document order.
+  */
+  public List<Heading> getHeadings() {
+    return headings;
+  }
+
+  /**
+   Get the number of characters reparsed by the latest update.
+
+   @return The number of characters scanned.
+  */
+  public int getReparsedChars() {
+    return reparsedChars;
+  }
+
+  /**
+   Get the length of the latest version.
+
+   @return The number of characters in the document.
+  */
+  public int getLength() {
+    if (text == null) {
+      return 0;
+    } else {
+      return text.length();
+    }
+  }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ A bounded queue of lines connecting one transformation's output to the 
+ next transformation's input, with each running on its own thread. Lines 
+ are passed across in chunks, to keep the cost of handing them between 
+ threads low, and only a fixed number of chunks may be waiting at any one 
+ time: a writer that gets too far ahead simply waits for the reader to 
+ catch up. The whole document is therefore never held in memory. <p>
+
+ Either side may abandon the queue, if its transformation fails or has 
+ no need of further lines, so that the other side is never left waiting 
+ forever. 
+
+ @author Herb Bowie
+ */
+public class LineQueue {
+  
+  /** The default number of lines passed across at a time. */
+  public static final int   DEFAULT_CHUNK_LINES = 256;
+  
+  /** The default number of chunks that may be waiting. */
+  public static final int   DEFAULT_CAPACITY = 16;
+  
+  /** How often a waiting writer checks whether the queue was abandoned. */
+  private static final long WAIT_MILLIS = 100;
+  
+  /** Marks the end of the lines. */
+  private static final String[] END = new String[0];
+  
+  private             BlockingQueue<String[]> chunks;
+  private             int                 chunkLines;
+  private             String              name;
+  
+  private volatile    boolean             abandoned = false;
+  
+  private             QueueWriter         writer;
+  private             QueueReader         reader;
+  
+  /**
+   Construct a queue with the default chunk size and capacity. 
+  
+   @param name A name for the queue, used as the destination of the 
+               writer and the identity of the reader. 
+  */
+  public LineQueue (String name) {
+    this(name, DEFAULT_CHUNK_LINES, DEFAULT_CAPACITY);
+  }
+  
+  /**
+   Construct a queue. 
+  
+   @param name       A name for the queue. 
+   @param chunkLines The number of lines to be passed across at a time. 
+   @param capacity   The number of chunks that may be waiting. 
+  */
+  public LineQueue (String name, int chunkLines, int capacity) {
+    this.name = name;
+    this.chunkLines = Math.max(chunkLines, 1);
+    chunks = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    writer = new QueueWriter();
+    reader = new QueueReader();
+  }
+  
+  /**
+   Get the side of the queue to which lines are written. 
+  
+   @return The writer feeding the queue. 
+  */
+  public QueueWriter getWriter() {
+    return writer;
+  }
+  
+  /**
+   Get the side of the queue from which lines are read. 
+  
+   @return The reader draining the queue. 
+  */
+  public QueueReader getReader() {
+    return reader;
+  }
+  
+  /**
+   Give up on the queue. Anything waiting is thrown away, the reader will 
+   see the end of its input, and the writer will quietly discard anything 
+   more that is written to it. Safe to call from either side, or from 
+   any other thread. 
+  */
+  public void abandon() {
+    abandoned = true;
+    chunks.clear();
+    // Wake a reader waiting for input; if the queue has refilled in the
+    // meantime, the reader will notice the abandonment after its next chunk
+    chunks.offer(END);
+  }
+  
+  public boolean isAbandoned() {
+    return abandoned;
+  }
+  
+  public String toString() {
+    return name;
+  }
+  
+  /**
+   The writing side of the queue. Text written without a line ending is 
+   held until the line is complete. 
+  */
+  public class QueueWriter
+      implements 
+        TextLineWriter,
+        CharLineWriter {
+    
+    private             String[]            lines = new String[chunkLines];
+    private             int                 count = 0;
+    private             StringBuilder       partial = new StringBuilder();
+    private             boolean             closed = false;
+    
+    public boolean openForOutput() {
+      return isOK();
+    }
+    
+    public boolean newLine() {
+      return addLine(takePartial());
+    }
+    
+    public boolean writeLine(String s) {
+      if (partial.length() > 0) {
+        partial.append(s);
+        return addLine(takePartial());
+      } else {
+        return addLine(s);
+      }
+    }
+    
+    public boolean write(String s) {
+      partial.append(s);
+      return isOK();
+    }
+    
+    public boolean write(char[] chars, int offset, int length) {
+      partial.append(chars, offset, length);
+      return isOK();
+    }
+    
+    private String takePartial() {
+      String line = partial.toString();
+      partial.setLength(0);
+      return line;
+    }
+    
+    private boolean addLine(String line) {
+      if (abandoned) {
+        return false;
+      }
+      lines[count] = line;
+      count++;
+      if (count >= lines.length) {
+        return sendChunk();
+      }
+      return true;
+    }
+    
+    /**
+     Pass the lines collected so far across to the reader. 
+    
+     @return True if the queue is still in use. 
+    */
+    private boolean sendChunk() {
+      if (count == 0) {
+        return isOK();
+      }
+      String[] chunk = lines;
+      if (count < lines.length) {
+        chunk = Arrays.copyOf(lines, count);
+      } else {
+        lines = new String[chunkLines];
+      }
+      count = 0;
+      return put(chunk);
+    }
+    
+    /**
+     Add a chunk to the queue, waiting for room if necessary. 
+    
+     @param chunk The chunk to be added. 
+     @return True if the chunk was added, false if the queue was abandoned.
+    */
+    private boolean put(String[] chunk) {
+      try {
+        while (! abandoned) {
+          if (chunks.offer(chunk, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        } // end while waiting for room
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abandon();
+      }
+      return false;
+    }
+    
+    /**
+     Anything written so far is passed to the reader by close, at the 
+     latest: there is no need to hurry it along, and it is cheaper not to. 
+    
+     @return True if the queue is still in use. 
+    */
+    public boolean flush() {
+      return isOK();
+    }
+    
+    /**
+     Pass along any remaining lines, including a final line without an 
+     ending, and then tell the reader that there are no more. 
+    
+     @return True if the queue is still in use. 
+    */
+    public boolean close() {
+      if (closed) {
+        return isOK();
+      }
+      closed = true;
+      boolean ok = true;
+      if (partial.length() > 0) {
+        ok = addLine(takePartial());
+      }
+      if (ok) {
+        ok = sendChunk();
+      }
+      if (ok) {
+        ok = put(END);
+      }
+      return ok;
+    }
+    
+    public boolean isOK() {
+      return ! abandoned;
+    }
+    
+    public String getDestination() {
+      return name;
+    }
+    
+    public String toString() {
+      return name;
+    }
+    
+  }
+  
+  /**
+   The reading side of the queue. 
+  */
+  public class QueueReader
+      implements TextLineReader {
+    
+    private             String[]            lines = null;
+    private             int                 next = 0;
+    private             boolean             atEnd = false;
+    
+    public boolean open() {
+      return isOK();
+    }
+    
+    /**
+     Get the next line, waiting for the writer if none is ready. 
+    
+     @return The next line, or null once the writer has closed the queue, 
+             or the queue has been abandoned. 
+    */
+    public String readLine() {
+      if (isAtEnd()) {
+        return null;
+      }
+      String line = lines[next];
+      lines[next] = null;
+      next++;
+      return line;
+    }
+    
+    /**
+     Are there any more lines? Waits for the writer if it cannot yet tell. 
+    
+     @return True if there are no more lines. 
+    */
+    public boolean isAtEnd() {
+      while (! atEnd && (lines == null || next >= lines.length)) {
+        if (abandoned) {
+          atEnd = true;
+        } else {
+          try {
+            lines = chunks.take();
+            next = 0;
+            if (lines == END) {
+              atEnd = true;
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon();
+            atEnd = true;
+          }
+        }
+      } // end while waiting for more lines
+      return atEnd;
+    }
+    
+    /**
+     Closing the reader before the end of the input tells the writer that 
+     nothing more is wanted. 
+    
+     @return True. 
+    */
+    public boolean close() {
+      if (! atEnd) {
+        abandon();
+        atEnd = true;
+      }
+      return true;
+    }
+    
+    public boolean isOK() {
+      return ! abandoned || atEnd;
+    }
+    
+    public String toString() {
+      return name;
+    }
+    
+  }
+
+}
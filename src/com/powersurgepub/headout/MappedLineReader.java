@@ -0,0 +1,428 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.channels.*;
+  import java.nio.charset.*;
+
+/**
+ Reads the lines of a local UTF-8 text file through a memory mapping,
+ finding line boundaries directly in the mapped bytes. Each line may be
+ obtained as a lightweight CharSequence view, through readLineSequence,
+ with a String only being created if readLine is called, or if the
+ consumer asks the view for one. Lines made up entirely of ASCII
+ characters (the usual case for Markdown and OPML) are never copied at
+ all; other lines are decoded into a single reusable buffer.
+
+ The file is mapped in windows, so that files of any size may be read.
+ Lines may end with a line feed, a carriage return, or both, as with
+ FileLineReader.
+
+ @author Herb Bowie
+ */
+public class MappedLineReader
+    implements TextLineReader {
+
+  /** Files at least this large are worth mapping. */
+  public static final long  MAPPING_THRESHOLD = 256 * 1024;
+
+  /** The default size of each mapped window. */
+  public static final int   DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private static final byte LINE_FEED = 0x0A;
+  private static final byte CARRIAGE_RETURN = 0x0D;
+
+  private             File                file;
+  private             int                 windowSize;
+
+  private             FileChannel         channel = null;
+
+  /** The size of the file, or the end of the range being read. */
+  private             long                fileSize = 0;
+  private             MappedByteBuffer    window = null;
+  private             long                windowStart = 0;
+  private             int                 windowLength = 0;
+
+  /** Absolute offset of the start of the next line. */
+  private             long                position = 0;
+
+  /** Absolute offset of the start of the line most recently read. */
+  private             long                lineOffset = 0;
+
+  private             boolean             ok = false;
+  private             boolean             atEnd = true;
+
+  private             LineView            line = new LineView();
+
+  private             CharsetDecoder      decoder = null;
+  private             CharBuffer          decoded = null;
+
+  /**
+   Prepare to read a file, using the default window size.
+
+   @param file The file to be read.
+  */
+  public MappedLineReader (File file) {
+    this(file, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   Prepare to read a file.
+
+   @param file       The file to be read.
+   @param windowSize The number of bytes to be mapped at any one time.
+                     A longer line will be mapped in its entirety.
+  */
+  public MappedLineReader (File file, int windowSize) {
+    this.file = file;
+    this.windowSize = Math.max(windowSize, 16);
+  }
+
+  /**
+   Get a reader suited to the size of the given file: a mapped reader for
+   large files, and an ordinary buffered reader for small ones, where the
+   cost of setting up a mapping would outweigh any savings.
+
+   @param file The file to be read.
+   @return A line reader for the file.
+  */
+  public static TextLineReader getReader(File file) {
+    if (file.isFile() && file.length() >= MAPPING_THRESHOLD) {
+      return new MappedLineReader(file);
+    } else {
+      return new FileLineReader(file);
+    }
+  }
+
+  /**
+   Read the next line from any line reader: as a view, if the reader (or
+   the reader it wraps) is a mapped reader, or else as a String.
+
+   @param reader The reader supplying the lines.
+   @return The next line, or null at the end of the input.
+  */
+  public static CharSequence readLineFrom(TextLineReader reader) {
+    if (reader instanceof MappedLineReader) {
+      return ((MappedLineReader)reader).readLineSequence();
+    }
+    else
+    if (reader instanceof CountingLineReader) {
+      return ((CountingLineReader)reader).readLineSequence();
+    } else {
+      return reader.readLine();
+    }
+  }
+
+  public boolean open() {
+    close();
+    try {
+      channel = new RandomAccessFile(file, "r").getChannel();
+      fileSize = channel.size();
+      windowStart = 0;
+      windowLength = 0;
+      window = null;
+      position = 0;
+      ok = true;
+      atEnd = false;
+      if (fileSize >= 3 && map(0, 3)) {
+        // Skip any UTF-8 byte order mark
+        if ((window.get(0) & 0xFF) == 0xEF
+            && (window.get(1) & 0xFF) == 0xBB
+            && (window.get(2) & 0xFF) == 0xBF) {
+          position = 3;
+        }
+      }
+      atEnd = position >= fileSize;
+    } catch (IOException e) {
+      ok = false;
+      atEnd = true;
+    }
+    return ok;
+  }
+
+  /**
+   Open the file, but read only the lines within a range of byte offsets.
+   Nothing before the start of the range is touched, so the cost depends
+   only on the size of the range.
+
+   @param start The offset of the first line to be read, which should be
+                the start of a line.
+   @param end   The offset at which to stop reading.
+   @return True if the file was opened.
+  */
+  public boolean open(long start, long end) {
+    if (! open()) {
+      return false;
+    }
+    position = Math.max(position, start);
+    fileSize = Math.min(fileSize, Math.max(end, position));
+    atEnd = position >= fileSize;
+    window = null;
+    windowLength = 0;
+    windowStart = position;
+    return ok;
+  }
+
+  /**
+   Read the next line as a String.
+
+   @return The next line, or null at the end of the file.
+  */
+  public String readLine() {
+    CharSequence next = readLineSequence();
+    if (next == null) {
+      return null;
+    } else {
+      return next.toString();
+    }
+  }
+
+  /**
+   Read the next line as a view onto the mapped file. The view is only
+   valid until the next line is read; call toString on it to keep it.
+
+   @return The next line, or null at the end of the file.
+  */
+  public CharSequence readLineSequence() {
+    if (atEnd || (! ok)) {
+      atEnd = true;
+      return null;
+    }
+
+    // Find the end of the line, remapping if it runs past the window
+    int start = (int)(position - windowStart);
+    if (window == null || start >= windowLength) {
+      if (! map(position, windowSize)) {
+        return null;
+      }
+      start = 0;
+    }
+    int end = start;
+    boolean ascii = true;
+    byte b = 0;
+    while (true) {
+      while (end < windowLength) {
+        b = window.get(end);
+        if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+          break;
+        }
+        if (b < 0) {
+          ascii = false;
+        }
+        end++;
+      }
+      boolean lookAheadNeeded = end >= windowLength - 1;
+      if ((! lookAheadNeeded)
+          || windowStart + windowLength >= fileSize
+          || (windowStart == position && windowLength == Integer.MAX_VALUE)) {
+        break;
+      }
+      // The line, or its terminator, may continue beyond the window
+      long length = windowStart + end - position;
+      if (! map(position, (int)Math.min(Integer.MAX_VALUE,
+          Math.max((long)windowSize, length * 2 + 2)))) {
+        return null;
+      }
+      start = 0;
+      end = (int)length;
+    } // end while looking for the end of the line
+
+    // Note where this line and the next one start
+    lineOffset = windowStart + start;
+    int next = end;
+    if (end < windowLength) {
+      next++;
+      if (b == CARRIAGE_RETURN
+          && next < windowLength
+          && window.get(next) == LINE_FEED) {
+        next++;
+      }
+    }
+    position = windowStart + next;
+    atEnd = position >= fileSize;
+
+    if (ascii) {
+      line.setBytes(start, end - start);
+    } else {
+      decode(start, end);
+    }
+    return line;
+  }
+
+  /**
+   Decode a line containing non-ASCII characters into the reusable buffer.
+
+   @param start The starting index within the window.
+   @param end   The ending index (exclusive) within the window.
+  */
+  private void decode(int start, int end) {
+    if (decoder == null) {
+      decoder = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    int bytes = end - start;
+    if (decoded == null || decoded.capacity() < bytes) {
+      decoded = CharBuffer.allocate(Math.max(bytes, 256));
+    }
+    ByteBuffer in = window.duplicate();
+    in.limit(end);
+    in.position(start);
+    decoded.clear();
+    decoder.reset();
+    decoder.decode(in, decoded, true);
+    decoder.flush(decoded);
+    line.setChars(decoded.array(), decoded.position());
+  }
+
+  /**
+   Map a window of the file.
+
+   @param from   The absolute offset at which the window should start.
+   @param length The desired length of the window.
+   @return True if the mapping succeeded.
+  */
+  private boolean map(long from, int length) {
+    try {
+      windowStart = from;
+      windowLength = (int)Math.min((long)length, fileSize - from);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, from, windowLength);
+      return true;
+    } catch (IOException e) {
+      ok = false;
+      atEnd = true;
+      return false;
+    }
+  }
+
+  /**
+   Close the file. The mapping itself is released once it is no longer
+   referenced.
+
+   @return True if the file was closed without problems.
+  */
+  public boolean close() {
+    window = null;
+    windowLength = 0;
+    atEnd = true;
+    boolean closed = true;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        closed = false;
+      }
+      channel = null;
+    }
+    return closed;
+  }
+
+  public boolean isOK() {
+    return ok;
+  }
+
+  public boolean isAtEnd() {
+    return atEnd;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   Get the byte offset within the file of the line most recently read.
+
+   @return The offset of the start of the line.
+  */
+  public long getLineOffset() {
+    return lineOffset;
+  }
+
+  /**
+   Identify the input by its path, as FileLineReader does.
+
+   @return The path of the file being read.
+  */
+  public String toString() {
+    return file.toString();
+  }
+
+  /**
+   A view of the current line, either as ASCII bytes within the mapped
+   window, or as characters within the decoding buffer.
+  */
+  class LineView
+      implements CharSequence {
+
+    private             boolean             bytes = true;
+    private             int                 offset = 0;
+    private             int                 length = 0;
+    private             char[]              chars = null;
+    private             byte[]              scratch = new byte[256];
+
+    void setBytes(int offset, int length) {
+      this.bytes = true;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    void setChars(char[] chars, int length) {
+      this.bytes = false;
+      this.chars = chars;
+      this.offset = 0;
+      this.length = length;
+    }
+
+    public int length() {
+      return length;
+    }
+
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      if (bytes) {
+        return (char)window.get(offset + index);
+      } else {
+        return chars[offset + index];
+      }
+    }
+
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    public String toString() {
+      if (bytes) {
+        if (scratch.length < length) {
+          scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+          scratch[i] = window.get(offset + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+      } else {
+        return new String(chars, offset, length);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.env.*;
+  import com.powersurgepub.psutils2.mkdown.*;
+  import com.powersurgepub.psutils2.textio.*;
+
+  import javafx.scene.layout.*;
+
+  import java.io.*;
+
+/**
+ Generate an OPML outline from Markdown source. Each heading within the 
+ requested range of levels becomes an outline element, nested beneath 
+ the nearest preceding heading at a lower level, and the text between 
+ one heading and the next becomes the element's note. <p>
+
+ The conversion is made in a single streaming pass: only the levels of 
+ the headings currently open, and the last line read, are held in memory, 
+ so the heap needed does not grow with the size of the document. Any text 
+ preceding the first heading is placed in an untitled outline element of 
+ its own. 
+
+ @author Herb Bowie
+ */
+public class MarkdowntoOPML 
+    implements HeadOutTransformer {
+  
+  private     static  final String HEADING_LEVEL_START = "md-opml-heading-level-start";
+  private     static  final String HEADING_LEVEL_END   = "md-opml-heading-level-end";
+  
+  private             UserPrefs           prefs = null;
+  
+  private             TransformOptions    options;
+
+  private             HeadingLevelGrid    headingLevelGrid = null;
+  
+  private             TextLineReader      reader;
+  private             OutlineWriter       outlineWriter;
+  
+  /** The levels of the headings whose outline elements are still open. */
+  private             int[]               openLevels 
+      = new int[TransformOptions.MAX_HEADING_LEVEL + 1];
+  private             int                 depth = 0;
+  
+  /** 
+   The lines of the current paragraph, held back in case the next line 
+   turns them into a Setext heading. 
+  */
+  private             HeldLines           heldLines = new HeldLines();
+  
+  /**
+   Construct a transformer for use within the user interface, with 
+   heading levels initialized from the user's preferences. 
+  
+   @param transformTypeIndex Which transformation was requested?
+   @param transformTypeString What did we call it? 
+  */
+  public MarkdowntoOPML (
+      int transformTypeIndex, 
+      String transformTypeString) {
+
+    this(new TransformOptions(transformTypeIndex, transformTypeString));
+    
+    prefs = UserPrefs.getShared();
+    options.setStartHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_START, 1));
+    options.setEndHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_END, 6));
+  }
+  
+  /**
+   Construct a transformer driven solely by the passed options, without 
+   touching user preferences or any JavaFX controls. 
+  
+   @param options The transform type and heading levels to be used. 
+  */
+  public MarkdowntoOPML (TransformOptions options) {
+    this.options = options;
+  }
+
+  /**
+   Get the GridPane containing the controls for this transformer.
+
+   @return the grid pane containing the controls for this type of transformation.
+   */
+  public GridPane getGrid() {
+    if (headingLevelGrid == null) {
+      headingLevelGrid = new HeadingLevelGrid(options);
+    }
+    return headingLevelGrid.getGrid();
+  }
+  
+  /**
+   Get the options governing this transformer. 
+  
+   @return The transform type and heading levels. 
+  */
+  public TransformOptions getOptions() {
+    return options;
+  }
+  
+  /**
+   Convert the Markdown source to an OPML outline. 
+  
+   @param reader The line reader to be used to access the input.
+   @param lineWriter The line writer to be used to create the output. 
+   @throws TransformException If an error occurs. 
+  */
+  public void transformNow(TextLineReader reader, TextLineWriter lineWriter) 
+      throws TransformException {
+    
+    this.reader = reader;
+    TransformMetrics.startStage("convert");
+    reader.open();
+    HeadingScanner scanner = new HeadingScanner(
+        options.getStartHeadingLevel(), options.getEndHeadingLevel());
+    depth = 0;
+    heldLines.clear();
+    
+    lineWriter.openForOutput();
+    outlineWriter = new OutlineWriter(lineWriter);
+    outlineWriter.setCompact(options.isCompact());
+    outlineWriter.start(getTitle(reader));
+    
+    CharSequence line = nextLine();
+    while (line != null) {
+      int level = scanner.scanLine(line);
+      if (level > 0) {
+        String text = getHeadingText(level, scanner.getHeadingText());
+        if (scanner.isSetext()) {
+          // A Setext heading's text was the paragraph held back, so drop it
+          heldLines.clear();
+        } else {
+          addHeldLines();
+        }
+        while (depth > 0 && openLevels[depth - 1] >= level) {
+          outlineWriter.endOutline();
+          depth--;
+        }
+        outlineWriter.startOutline(text);
+        openLevels[depth++] = level;
+      }
+      else
+      if (scanner.isInParagraph()) {
+        heldLines.add(line);
+      } else {
+        addHeldLines();
+        addNoteLine(line);
+      }
+      line = nextLine();
+    } // end while more markdown lines to process
+    
+    addHeldLines();
+    outlineWriter.finish();
+    TransformMetrics.addHeadings(outlineWriter.getOutlines());
+    
+    reader.close();
+    lineWriter.close();
+    this.reader = null;
+    outlineWriter = null;
+  }
+  
+  /**
+   Add the lines held back to the note of the current outline element. 
+  */
+  private void addHeldLines() {
+    for (int i = 0; i < heldLines.size(); i++) {
+      addNoteLine(heldLines.get(i));
+    }
+    heldLines.clear();
+  }
+  
+  /**
+   Add a line of body text to the note of the current outline element, 
+   starting an untitled element for any text found before the first 
+   heading. 
+  
+   @param line A line of body text. 
+  */
+  private void addNoteLine(CharSequence line) {
+    if (depth == 0) {
+      if (line.toString().trim().length() == 0) {
+        return;
+      }
+      // Recorded at the deepest level, so that the first heading ends it
+      outlineWriter.startOutline("");
+      openLevels[depth++] = TransformOptions.MAX_HEADING_LEVEL;
+    }
+    outlineWriter.addNoteLine(line);
+  }
+  
+  /**
+   Get the text to be shown for a heading, without any ID attribute. 
+  
+   @param level The heading level. 
+   @param text  The raw heading text. 
+   @return The heading's content. 
+  */
+  private static String getHeadingText(int level, String text) {
+    MarkdownLine mdLine = HeadingIDs.parseHeading(level, text);
+    if (mdLine == null || mdLine.getLineContent() == null) {
+      return text;
+    } else {
+      return mdLine.getLineContent();
+    }
+  }
+  
+  /**
+   Title the outline after the source file, if there is one. 
+  
+   @param reader The line reader supplying the input. 
+   @return The file name without its extension, or an empty string. 
+  */
+  private static String getTitle(TextLineReader reader) {
+    File source = GenTocFromMarkdown.getSourceFile(reader);
+    if (source == null) {
+      return "";
+    }
+    String name = source.getName();
+    int dot = name.lastIndexOf('.');
+    if (dot > 0) {
+      return name.substring(0, dot);
+    } else {
+      return name;
+    }
+  }
+  
+  /**
+   Obtains the next line of raw markdown source. When reading a mapped 
+   file, even through a counting reader, the line is a view onto the 
+   file, and no String is created. 
+  
+   @return The next markdown input line, or null when no more input is available.
+   */
+  private CharSequence nextLine() {
+    if (reader.isAtEnd() || (! reader.isOK())) {
+      return null;
+    } else {
+      return MappedLineReader.readLineFrom(reader);
+    }
+  }
+  
+  /**
+   Save user options as preferences. 
+  */
+  public void savePrefs() {
+
+    if (prefs != null) {
+      prefs.setPref(HEADING_LEVEL_START, options.getStartHeadingLevel());
+      prefs.setPref(HEADING_LEVEL_END, options.getEndHeadingLevel());
+    }
+
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ Replaces the characters that have a meaning in HTML markup with 
+ character references, so that text may be written as element content or 
+ as a quoted attribute value. Text needing no change is returned as is, 
+ so that nothing is allocated in the usual case. 
+
+ @author Herb Bowie
+ */
+public class MarkupEscaper {
+  
+  private MarkupEscaper() {
+    
+  }
+  
+  /**
+   Escape plain text, such as the text of an outline element, in which 
+   every ampersand stands for itself. 
+  
+   @param s The text to be escaped. 
+   @return The escaped text. 
+  */
+  public static String escape(CharSequence s) {
+    return escape(s, false);
+  }
+  
+  /**
+   Escape text for use within HTML. 
+  
+   @param s            The text to be escaped. 
+   @param keepEntities True if the text came from Markdown, in which an 
+                       ampersand starting an entity or character reference 
+                       is to be left alone, as the Markdown parser does; 
+                       false to escape every ampersand. 
+   @return The escaped text. 
+  */
+  public static String escape(CharSequence s, boolean keepEntities) {
+    int n = s.length();
+    int i = 0;
+    while (i < n && replacementFor(s, i, keepEntities) == null) {
+      i++;
+    }
+    if (i >= n) {
+      return s.toString();
+    }
+    StringBuilder escaped = new StringBuilder(n + 16);
+    escaped.append(s, 0, i);
+    while (i < n) {
+      String replacement = replacementFor(s, i, keepEntities);
+      if (replacement == null) {
+        escaped.append(s.charAt(i));
+      } else {
+        escaped.append(replacement);
+      }
+      i++;
+    } // end for each character
+    return escaped.toString();
+  }
+  
+  /**
+   Find what should be written in place of one character. 
+  
+   @param s            The text being escaped. 
+   @param i            The position of the character. 
+   @param keepEntities True if an ampersand starting an entity or 
+                       character reference is to be left alone. 
+   @return The character reference to be written instead, or null if the 
+           character may be written as is. 
+  */
+  public static String replacementFor(CharSequence s, int i, 
+      boolean keepEntities) {
+    switch (s.charAt(i)) {
+      case '&':
+        if (keepEntities && isReference(s, i)) {
+          return null;
+        } else {
+          return "&amp;";
+        }
+      case '<':
+        return "&lt;";
+      case '>':
+        return "&gt;";
+      case '"':
+        return "&quot;";
+      default:
+        return null;
+    }
+  }
+  
+  /**
+   Does an entity or character reference start at the given position? 
+  
+   @param s The text. 
+   @param i The position of an ampersand. 
+   @return True if the ampersand is followed by a name or number and a 
+           semicolon, as in &amp;amp; or &amp;#38; or &amp;#x26;. 
+  */
+  static boolean isReference(CharSequence s, int i) {
+    int n = s.length();
+    int j = i + 1;
+    boolean numeric = j < n && s.charAt(j) == '#';
+    boolean hex = false;
+    if (numeric) {
+      j++;
+      if (j < n && (s.charAt(j) == 'x' || s.charAt(j) == 'X')) {
+        hex = true;
+        j++;
+      }
+    }
+    int start = j;
+    while (j < n && j - start < 32) {
+      char c = s.charAt(j);
+      boolean ok;
+      if (hex) {
+        ok = Character.digit(c, 16) >= 0;
+      }
+      else
+      if (numeric) {
+        ok = c >= '0' && c <= '9';
+      } else {
+        ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') 
+            || (j > start && c >= '0' && c <= '9');
+      }
+      if (! ok) {
+        break;
+      }
+      j++;
+    }
+    return j > start && j < n && s.charAt(j) == ';';
+  }
+
+}
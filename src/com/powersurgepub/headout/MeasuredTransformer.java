@@ -0,0 +1,437 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+  import com.powersurgepub.psutils2.textio.*;
+
+  import javafx.scene.layout.*;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ Wraps another transformer, measuring each transformation it performs. 
+ Lines and characters are counted on the way in and out, the time spent 
+ reading and writing is totalled, and the wrapped transformer may record 
+ stages of its own through TransformMetrics. When the transformation is 
+ done, the results are logged, and optionally appended to a metrics file. <p>
+
+ Whether or not measurement was requested, each transformation, each of 
+ its stages, and the final flush of its output are reported as flight 
+ recorder events (see HeadoutEvents) while a recording is under way. If 
+ there is neither measuring nor recording to be done, the wrapped 
+ transformer is simply called directly. <p>
+
+ A fan-out may be measured in the same way, as a single transformation, 
+ with its input counted once, and the lines and characters written to 
+ all of its outputs counted together. 
+
+ @author Herb Bowie
+ */
+public class MeasuredTransformer 
+    implements HeadOutTransformer {
+  
+  private             HeadOutTransformer  transformer = null;
+  private             FanOutTransformer   fanOut = null;
+  private             TransformOptions    options;
+  private             String              name;
+  
+  private             boolean             logging = true;
+  
+  private             TransformMetrics    lastMetrics = null;
+  
+  /**
+   Wrap a transformer. 
+  
+   @param transformer The transformer to be measured. 
+   @param options     The options it was built with, naming the 
+                      transformation, and any file to receive the metrics. 
+  */
+  public MeasuredTransformer (
+      HeadOutTransformer transformer, 
+      TransformOptions options) {
+    
+    this.transformer = transformer;
+    this.options = options;
+    name = options.getTransformTypeString();
+  }
+  
+  /**
+   Wrap a fan-out. 
+  
+   @param fanOut  The fan-out to be measured, with its outputs added. 
+   @param options The options it was built with, naming any file to 
+                  receive the metrics. 
+  */
+  public MeasuredTransformer (
+      FanOutTransformer fanOut, 
+      TransformOptions options) {
+    
+    this.fanOut = fanOut;
+    this.options = options;
+    name = "fan-out " + fanOut.getName();
+  }
+  
+  /**
+   Should the metrics be logged as soon as each transformation is done? 
+   Turn this off when logging from the transforming thread is not safe, 
+   and log getLastMetrics later instead. 
+  
+   @param logging True to log the metrics from the transforming thread. 
+  */
+  public void setLogging(boolean logging) {
+    this.logging = logging;
+  }
+  
+  public GridPane getGrid() {
+    if (transformer == null) {
+      return null;
+    } else {
+      return transformer.getGrid();
+    }
+  }
+  
+  /**
+   Perform the wrapped transformation, measuring it along the way. 
+  
+   @param reader The input.
+   @param writer The output.
+   @throws TransformException If the wrapped transformation fails. 
+  */
+  public void transformNow(TextLineReader reader, TextLineWriter writer)
+      throws TransformException {
+    
+    if (transformer == null) {
+      throw new TransformException("A fan-out writes to its own outputs");
+    }
+    measure(reader, Collections.singletonList(writer));
+  }
+  
+  /**
+   Perform the wrapped fan-out, writing to the outputs it was given, and 
+   measuring it along the way. 
+  
+   @param reader The input.
+   @throws TransformException If the fan-out fails. 
+  */
+  public void fanOutNow(TextLineReader reader)
+      throws TransformException {
+    
+    if (fanOut == null) {
+      throw new TransformException("No fan-out to be performed");
+    }
+    measure(reader, fanOut.getWriters());
+  }
+  
+  /**
+   Perform the wrapped transformation or fan-out. 
+  
+   @param reader  The input.
+   @param writers The outputs: just one, unless this is a fan-out. 
+   @throws TransformException If the wrapped transformation fails. 
+  */
+  private void measure(TextLineReader reader, List<TextLineWriter> writers)
+      throws TransformException {
+    
+    HeadoutEvents.Transform event = new HeadoutEvents.Transform();
+    boolean recording = event.isEnabled();
+    boolean measuring = options.isMeasuring();
+    if (! (recording || measuring)) {
+      perform(reader, writers);
+      return;
+    }
+    
+    TransformMetrics metrics = new TransformMetrics(name, reader.toString());
+    metrics.setRecording(recording);
+    MeasuredReader measuredReader 
+        = new MeasuredReader(reader, metrics, measuring);
+    List<TextLineWriter> measuredWriters = new ArrayList<>();
+    for (TextLineWriter writer : writers) {
+      measuredWriters.add(new MeasuredWriter(writer, metrics, measuring));
+    }
+    boolean ok = false;
+    event.begin();
+    metrics.begin();
+    try {
+      perform(measuredReader, measuredWriters);
+      ok = true;
+    } finally {
+      long linesOut = 0;
+      long charsOut = 0;
+      for (int i = 0; i < writers.size(); i++) {
+        if (writers.get(i) instanceof DeferredLineWriter) {
+          TransformMetrics.noteBufferSize(
+              ((DeferredLineWriter)writers.get(i)).getPendingLength());
+        }
+        MeasuredWriter measuredWriter = (MeasuredWriter)measuredWriters.get(i);
+        linesOut = linesOut + measuredWriter.lines;
+        charsOut = charsOut + measuredWriter.chars;
+      }
+      metrics.end(ok);
+      metrics.setInput(measuredReader.getLines(), measuredReader.getChars());
+      metrics.setOutput(linesOut, charsOut);
+      event.end();
+      if (event.shouldCommit()) {
+        event.transformType = name;
+        event.startLevel = options.getStartHeadingLevel();
+        event.endLevel = options.getEndHeadingLevel();
+        event.source = reader.toString();
+        File source = GenTocFromMarkdown.getSourceFile(reader);
+        if (source == null) {
+          event.inputSize = measuredReader.getChars();
+        } else {
+          event.inputSize = source.length();
+        }
+        event.linesIn = measuredReader.getLines();
+        event.linesOut = linesOut;
+        event.ok = ok;
+        event.commit();
+      }
+      if (measuring) {
+        lastMetrics = metrics;
+        report(metrics);
+      }
+    }
+  }
+  
+  private void perform(TextLineReader reader, List<TextLineWriter> writers)
+      throws TransformException {
+    if (fanOut == null) {
+      transformer.transformNow(reader, writers.get(0));
+    } else {
+      fanOut.transformNow(reader, writers);
+    }
+  }
+  
+  /**
+   Log the metrics, and append them to the metrics file, if any. 
+  
+   @param metrics The metrics for a completed transformation. 
+  */
+  private void report(TransformMetrics metrics) {
+    Logger logger = Logger.getShared();
+    if (logging) {
+      for (String line : metrics.toLogLines()) {
+        logger.recordEvent(LogEvent.NORMAL, line, false);
+      }
+    }
+    File metricsFile = options.getMetricsFile();
+    if (metricsFile != null) {
+      try {
+        metrics.appendTo(metricsFile);
+      } catch (IOException e) {
+        logger.recordEvent(LogEvent.MINOR, 
+            "Could not write metrics to " + metricsFile.toString() 
+            + ": " + e.getMessage(), 
+            false);
+      }
+    }
+  }
+  
+  /**
+   Get the metrics for the most recent transformation. 
+  
+   @return The most recent metrics, or null if nothing has been transformed. 
+  */
+  public TransformMetrics getLastMetrics() {
+    return lastMetrics;
+  }
+  
+  public HeadOutTransformer getTransformer() {
+    return transformer;
+  }
+  
+  public TransformOptions getOptions() {
+    return options;
+  }
+  
+  public void savePrefs() {
+    if (transformer != null) {
+      transformer.savePrefs();
+    }
+  }
+  
+  /**
+   A counting reader that may also total the time spent waiting for lines. 
+  */
+  static class MeasuredReader
+      extends CountingLineReader {
+    
+    private             TransformMetrics    metrics;
+    private             boolean             timing;
+    
+    MeasuredReader(TextLineReader reader, TransformMetrics metrics, 
+        boolean timing) {
+      super(reader);
+      this.metrics = metrics;
+      this.timing = timing;
+    }
+    
+    public String readLine() {
+      if (! timing) {
+        return super.readLine();
+      }
+      long start = System.nanoTime();
+      String line = super.readLine();
+      metrics.addReadNanos(System.nanoTime() - start);
+      return line;
+    }
+    
+    public CharSequence readLineSequence() {
+      if (! timing) {
+        return super.readLineSequence();
+      }
+      long start = System.nanoTime();
+      CharSequence line = super.readLineSequence();
+      metrics.addReadNanos(System.nanoTime() - start);
+      return line;
+    }
+    
+  }
+  
+  /**
+   A line writer that counts what passes through it, and may also total 
+   the time spent writing. 
+  */
+  static class MeasuredWriter
+      implements 
+        TextLineWriter,
+        CharLineWriter {
+    
+    private             TextLineWriter      target;
+    private             CharLineWriter      charTarget = null;
+    private             TransformMetrics    metrics;
+    private             boolean             timing;
+    
+    private             long                lines = 0;
+    private             long                chars = 0;
+    
+    /** When timing, the time the current call started. */
+    private             long                start = 0;
+    
+    MeasuredWriter(TextLineWriter target, TransformMetrics metrics, 
+        boolean timing) {
+      this.target = target;
+      if (target instanceof CharLineWriter) {
+        charTarget = (CharLineWriter)target;
+      }
+      this.metrics = metrics;
+      this.timing = timing;
+    }
+    
+    private void startTiming() {
+      if (timing) {
+        start = System.nanoTime();
+      }
+    }
+    
+    private void stopTiming() {
+      if (timing) {
+        metrics.addWriteNanos(System.nanoTime() - start);
+      }
+    }
+    
+    public boolean openForOutput() {
+      startTiming();
+      boolean ok = target.openForOutput();
+      stopTiming();
+      return ok;
+    }
+    
+    public boolean newLine() {
+      startTiming();
+      boolean ok = target.newLine();
+      lines++;
+      chars++;
+      stopTiming();
+      return ok;
+    }
+    
+    public boolean writeLine(String s) {
+      startTiming();
+      boolean ok = target.writeLine(s);
+      lines++;
+      chars = chars + s.length() + 1;
+      stopTiming();
+      return ok;
+    }
+    
+    public boolean write(String s) {
+      startTiming();
+      boolean ok = target.write(s);
+      chars = chars + s.length();
+      stopTiming();
+      return ok;
+    }
+    
+    public boolean write(char[] buffer, int offset, int length) {
+      startTiming();
+      boolean ok;
+      if (charTarget != null) {
+        ok = charTarget.write(buffer, offset, length);
+      } else {
+        ok = target.write(new String(buffer, offset, length));
+      }
+      chars = chars + length;
+      stopTiming();
+      return ok;
+    }
+    
+    public boolean flush() {
+      startTiming();
+      boolean ok = target.flush();
+      stopTiming();
+      return ok;
+    }
+    
+    /**
+     Close the output, recording a flush event. Output held for a later 
+     commit is not flushed here, and so is left for its own event. 
+    */
+    public boolean close() {
+      if (target instanceof DeferredLineWriter) {
+        return target.close();
+      }
+      HeadoutEvents.Flush event = new HeadoutEvents.Flush();
+      event.begin();
+      startTiming();
+      boolean ok = target.close();
+      stopTiming();
+      event.end();
+      if (event.shouldCommit()) {
+        event.destination = target.getDestination();
+        event.chars = chars;
+        event.commit();
+      }
+      return ok;
+    }
+    
+    public boolean isOK() {
+      return target.isOK();
+    }
+    
+    public String getDestination() {
+      return target.getDestination();
+    }
+    
+    public String toString() {
+      return target.toString();
+    }
+    
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ A line writer that collects its output in memory, like StringMaker, but 
+ that also accepts characters straight from an array, so that text may 
+ be copied in without a String being created for each line. Lines end 
+ with a line feed. 
+
+ @author Herb Bowie
+ */
+public class MemoryLineWriter
+    implements 
+      TextLineWriter,
+      CharLineWriter {
+  
+  private             StringBuilder       text;
+  
+  /**
+   Construct a writer with room for a modest amount of text. 
+  */
+  public MemoryLineWriter () {
+    this(8192);
+  }
+  
+  /**
+   Construct a writer with room for a given amount of text, which will 
+   grow as needed. 
+  
+   @param capacity The number of characters to allow for at first. 
+  */
+  public MemoryLineWriter (int capacity) {
+    text = new StringBuilder(capacity);
+  }
+  
+  public boolean openForOutput() {
+    text.setLength(0);
+    return true;
+  }
+  
+  public boolean newLine() {
+    text.append('\n');
+    return true;
+  }
+  
+  public boolean writeLine(String s) {
+    text.append(s);
+    text.append('\n');
+    return true;
+  }
+  
+  public boolean write(String s) {
+    text.append(s);
+    return true;
+  }
+  
+  public boolean write(char[] chars, int offset, int length) {
+    text.append(chars, offset, length);
+    return true;
+  }
+  
+  public boolean flush() {
+    return true;
+  }
+  
+  public boolean close() {
+    return true;
+  }
+  
+  public boolean isOK() {
+    return true;
+  }
+  
+  public String getDestination() {
+    return "memory";
+  }
+  
+  /**
+   Get the number of characters written so far. 
+  
+   @return The length of the text. 
+  */
+  public int length() {
+    return text.length();
+  }
+  
+  /**
+   Get everything written so far. 
+  
+   @return The text written. 
+  */
+  public String toString() {
+    return text.toString();
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ A line writer that passes everything it is given straight through to 
+ another, in order, while keeping track of whether the last thing 
+ written finished a line. A MarkupWriter may be given one of these to 
+ write to, so that the note text of an outline can be copied to the very 
+ same writer as ranges of characters, without a String for every line, 
+ and without ever landing in the middle of a line the MarkupWriter has 
+ started. 
+
+ @author Herb Bowie
+ */
+public class NoteLineWriter
+    implements 
+      TextLineWriter,
+      CharLineWriter {
+  
+  private             TextLineWriter      target;
+  private             CharLineWriter      charTarget = null;
+  
+  private             boolean             lineOpen = false;
+  
+  /**
+   Construct a writer passing its output along to the given target. 
+  
+   @param target The real destination for the output. 
+  */
+  public NoteLineWriter (TextLineWriter target) {
+    this.target = target;
+    if (target instanceof CharLineWriter) {
+      charTarget = (CharLineWriter)target;
+    }
+  }
+  
+  public boolean openForOutput() {
+    lineOpen = false;
+    return target.openForOutput();
+  }
+  
+  public boolean newLine() {
+    lineOpen = false;
+    return target.newLine();
+  }
+  
+  public boolean writeLine(String s) {
+    lineOpen = false;
+    return target.writeLine(s);
+  }
+  
+  public boolean write(String s) {
+    if (s.length() > 0) {
+      lineOpen = true;
+    }
+    return target.write(s);
+  }
+  
+  /**
+   Write characters from an array, passing them along as a range if the 
+   target accepts one, or else as a String. 
+  
+   @param chars  The characters to be written. 
+   @param offset The index of the first character to be written. 
+   @param length The number of characters to be written. 
+   @return True if everything is ok. 
+  */
+  public boolean write(char[] chars, int offset, int length) {
+    if (length > 0) {
+      lineOpen = true;
+    }
+    if (charTarget != null) {
+      return charTarget.write(chars, offset, length);
+    } else {
+      return target.write(new String(chars, offset, length));
+    }
+  }
+  
+  /**
+   Has something been written since the last line was ended? 
+  
+   @return True if a line has been started, but not yet ended. 
+  */
+  public boolean isLineOpen() {
+    return lineOpen;
+  }
+  
+  public boolean flush() {
+    return target.flush();
+  }
+  
+  public boolean close() {
+    return target.close();
+  }
+  
+  public boolean isOK() {
+    return target.isOK();
+  }
+  
+  public String getDestination() {
+    return target.getDestination();
+  }
+  
+  public String toString() {
+    return target.toString();
+  }
+
+}
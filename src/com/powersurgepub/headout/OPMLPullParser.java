@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+
+  import javax.xml.stream.*;
+
+/**
+ Reads an OPML document with a StAX pull parser, passing each outline 
+ element on to an outline handler. The parser factory is created and 
+ configured only once, and shared by every instance, so that little setup 
+ remains to be done for each document; attributes are looked up directly 
+ by name. OPML may be read from a file, from any input stream or 
+ character stream, or from a line reader. 
+
+ @author Herb Bowie
+ */
+public class OPMLPullParser {
+  
+  public      static  final String        OUTLINE = "outline";
+  public      static  final String        TEXT    = "text";
+  public      static  final String        NOTE    = "_note";
+  
+  private     static  final XMLInputFactory FACTORY = createFactory();
+  
+  private             OutlineHandler      handler;
+  
+  private             int                 outlines = 0;
+  
+  /**
+   Prepare to parse OPML. 
+  
+   @param handler The handler to receive the outline elements. 
+  */
+  public OPMLPullParser (OutlineHandler handler) {
+    this.handler = handler;
+  }
+  
+  /**
+   Create the shared factory. DTDs and external entities are not needed 
+   for OPML, and are turned off for both speed and safety. 
+  
+   @return The configured factory. 
+  */
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, 
+        Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    return factory;
+  }
+  
+  /**
+   Parse an OPML file. 
+  
+   @param file The file to be read. 
+   @throws IOException If the file cannot be read. 
+   @throws XMLStreamException If the file is not well-formed XML. 
+  */
+  public void parse(File file) 
+      throws IOException, XMLStreamException {
+    try (InputStream in = new BufferedInputStream(
+        new FileInputStream(file), 64 * 1024)) {
+      parse(in, file.toURI().toString());
+    }
+  }
+  
+  /**
+   Parse OPML from a byte stream, allowing the parser to work out the 
+   encoding from the XML declaration. The stream is left open. 
+  
+   @param in       The stream to be read. 
+   @param systemID Identifies the source in error messages; may be null. 
+   @throws XMLStreamException If the input is not well-formed XML. 
+  */
+  public void parse(InputStream in, String systemID) 
+      throws XMLStreamException {
+    XMLStreamReader xml;
+    if (systemID == null) {
+      xml = FACTORY.createXMLStreamReader(in);
+    } else {
+      xml = FACTORY.createXMLStreamReader(systemID, in);
+    }
+    parse(xml);
+  }
+  
+  /**
+   Parse OPML from a character stream. The stream is left open. 
+  
+   @param in The stream to be read. 
+   @throws XMLStreamException If the input is not well-formed XML. 
+  */
+  public void parse(Reader in) 
+      throws XMLStreamException {
+    parse(FACTORY.createXMLStreamReader(in));
+  }
+  
+  /**
+   Parse OPML supplied by a line reader, opening and closing the reader. 
+   If the reader is reading a local file, even through a counting reader, 
+   then the file is parsed directly, honoring its XML encoding declaration. 
+  
+   @param reader The line reader supplying the OPML. 
+   @throws IOException If the input cannot be read. 
+   @throws XMLStreamException If the input is not well-formed XML. 
+  */
+  public void parse(TextLineReader reader) 
+      throws IOException, XMLStreamException {
+    File source = GenTocFromMarkdown.getSourceFile(reader);
+    if (source != null) {
+      parse(source);
+    } else {
+      if (! reader.open()) {
+        throw new IOException("Could not open " + reader.toString());
+      }
+      try {
+        parse(new TextLineReaderInput(reader));
+      } finally {
+        reader.close();
+      }
+    }
+  }
+  
+  /**
+   Pull events from the parser, passing outline elements to the handler. 
+  
+   @param xml The parser, positioned at the start of the document. 
+   @throws XMLStreamException If the input is not well-formed XML. 
+  */
+  private void parse(XMLStreamReader xml) 
+      throws XMLStreamException {
+    outlines = 0;
+    try {
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (OUTLINE.equals(xml.getLocalName())) {
+            outlines++;
+            handler.startOutline(
+                xml.getAttributeValue(null, TEXT), 
+                xml.getAttributeValue(null, NOTE));
+          }
+        }
+        else
+        if (event == XMLStreamConstants.END_ELEMENT) {
+          if (OUTLINE.equals(xml.getLocalName())) {
+            handler.endOutline();
+          }
+        }
+      } // end while more events
+    } finally {
+      xml.close();
+    }
+  }
+  
+  /**
+   Get the number of outline elements found by the last parse. 
+  
+   @return The number of outline elements. 
+  */
+  public int getOutlines() {
+    return outlines;
+  }
+
+}
@@ -20,12 +20,13 @@ package com.powersurgepub.headout;
   import com.powersurgepub.psutils2.logging.*;
   import com.powersurgepub.psutils2.textio.*;
   import com.powersurgepub.psutils2.txbio.*;
-  import com.powersurgepub.psutils2.ui.*;
 
-  import javafx.scene.control.*;
   import javafx.scene.layout.*;
 
   import java.io.*;
+  import java.util.*;
+
+  import javax.xml.stream.*;
 
   import org.xml.sax.*;
   import org.xml.sax.helpers.*;
@@ -38,7 +39,8 @@ package com.powersurgepub.headout;
 public class OPMLtoMarkdown 
       extends DefaultHandler 
       implements 
-        HeadOutTransformer {
+        HeadOutTransformer,
+        OutlineHandler {
   
   private     static  final String OUTLINE = "outline";
   private     static  final String TEXT = "text";
@@ -49,25 +51,18 @@ public class OPMLtoMarkdown
   private     static  final String INPUT_FILE          = "opml-input-file";
   private     static  final String OUTPUT_FILE         = "opml-output-file";
   
-  private             UserPrefs           prefs;
+  /** 
+   Marks the spot in the spool file where the Table of Contents belongs. 
+   XML cannot contain a null character, so this can never collide with 
+   text from the outline. 
+  */
+  private     static  final String TOC_SLOT            = "\u0000toc\u0000";
   
-  private             FXUtils             fxUtils;
-  private             GridPane            grid;
+  private             UserPrefs           prefs = null;
   
-  private             int                 transformTypeIndex = 0;
-  private             String              transformTypeString = "";
+  private             TransformOptions    options;
   
-  private             Menu fileMenu;
-  private             Button genTOCButton;
-  private             Label headingLevelEndLabel;
-  private             Slider headingLevelEndSlider;
-  private             Label headingLevelStartLabel;
-  private             Slider headingLevelStartSlider;
-  private             MenuBar menuBar;
-  private             Label messageLabel;
-  private             ComboBox outputFormatComboBox;
-  private             javax.swing.ButtonGroup outputFormatGroup;
-  private             Label outputFormatLabel;
+  private             HeadingLevelGrid    headingLevelGrid = null;
   
   private             TextLineReader      reader;
   private             TextLineWriter      interimLineWriter;
@@ -76,6 +71,10 @@ public class OPMLtoMarkdown
   
   private             XMLReader           parser;
   private             MarkupWriter        mdWriter = null;
+
+  /** The writer beneath mdWriter, to which notes may be copied directly. */
+  private             NoteLineWriter      noteWriter = null;
+  private             char[]              noteChars = new char[0];
   
   private             boolean             ok = true;
   
@@ -83,9 +82,6 @@ public class OPMLtoMarkdown
   
   private             File                xmlSourceAsFile;
   
-  private             int                 startHeadingLevel = 1;
-  private             int                 endHeadingLevel = 6;
-  
   private             int                 firstHeadingLevel = 0;
   private             int                 lastHeadingLevel = 1;
   
@@ -93,8 +89,14 @@ public class OPMLtoMarkdown
   private             int                 listLevel = -1;
   private             int                 indents = 0;
   
+  private             File                spoolFile = null;
+  private             List<Heading>       headings = null;
+  private             HeadingIDs          headingIDs = null;
+  private             boolean             tocSlotPending = false;
+  
   /**
-   Construct a new OPML to MD transformer. 
+   Construct a new OPML to MD transformer for use within the user interface, 
+   with heading levels initialized from the user's preferences. 
    
    @param transformTypeIndex WHich transformation was requested?
    @param transformTypeString What did we call it? 
@@ -103,43 +105,21 @@ public class OPMLtoMarkdown
       int transformTypeIndex, 
       String transformTypeString) {
 
-    this.transformTypeIndex = transformTypeIndex;
-    this.transformTypeString = transformTypeString;
+    this(new TransformOptions(transformTypeIndex, transformTypeString));
     
     prefs = UserPrefs.getShared();
-
-    fxUtils = FXUtils.getShared();
-    grid = new GridPane();
-    fxUtils.applyStyle(grid);
-    
-    headingLevelStartLabel = new Label();
-    headingLevelStartLabel.setText("Lowest Heading Level");
-    grid.add(headingLevelStartLabel, 0, 0, 1, 1);
-
-    headingLevelStartSlider = new Slider(1, 6, 1);
-    headingLevelStartSlider.setSnapToTicks(true);
-    headingLevelStartSlider.setShowTickLabels(true);
-    headingLevelStartSlider.setShowTickMarks(true);
-    headingLevelStartSlider.setMajorTickUnit(1.0);
-    headingLevelStartSlider.setMinorTickCount(0);
-    headingLevelStartSlider.setValue(prefs.getPrefAsInt(HEADING_LEVEL_START, 1));
-    grid.add(headingLevelStartSlider, 0, 1, 1, 1);
-    GridPane.setHgrow(headingLevelStartSlider, Priority.ALWAYS);
-    
-    headingLevelEndLabel = new Label();
-    headingLevelEndLabel.setText("Highest Heading Level");
-    grid.add(headingLevelEndLabel, 0, 2, 1, 1);
-
-    headingLevelEndSlider = new Slider(1, 6, 6);
-    headingLevelEndSlider.setSnapToTicks(true);
-    headingLevelEndSlider.setSnapToTicks(true);
-    headingLevelEndSlider.setShowTickLabels(true);
-    headingLevelEndSlider.setMajorTickUnit(1.0);
-    headingLevelEndSlider.setMinorTickCount(0);
-    headingLevelEndSlider.setValue(prefs.getPrefAsInt(HEADING_LEVEL_END, 6));
-    grid.add(headingLevelEndSlider, 0, 3, 1, 1);
-    GridPane.setHgrow(headingLevelEndSlider, Priority.ALWAYS);
-    
+    options.setStartHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_START, 1));
+    options.setEndHeadingLevel(prefs.getPrefAsInt(HEADING_LEVEL_END, 6));
+  }
+  
+  /**
+   Construct a new OPML to MD transformer driven solely by the passed options, 
+   without touching user preferences or any JavaFX controls. 
+  
+   @param options The transform type and heading levels to be used. 
+  */
+  public OPMLtoMarkdown (TransformOptions options) {
+    this.options = options;
   }
   
   /**
@@ -148,12 +128,29 @@ public class OPMLtoMarkdown
    @return the grid pane containing the controls for this type of transformation.
    */
   public GridPane getGrid() {
-    return grid;
+    if (headingLevelGrid == null) {
+      headingLevelGrid = new HeadingLevelGrid(options);
+    }
+    return headingLevelGrid.getGrid();
+  }
+  
+  /**
+   Get the options governing this transformer. 
+  
+   @return The transform type and heading levels. 
+  */
+  public TransformOptions getOptions() {
+    return options;
   }
   
   /**
    Reads an outline defined in OPML and generates a Markdown file using 
-   headings to represent each outline level. 
+   headings to represent each outline level. If streaming was requested, 
+   the Markdown is spooled to a temporary file while the headings are 
+   collected, and the Table of Contents is written into its reserved slot 
+   as the spool is copied to the output; otherwise the Markdown is built 
+   up in memory and then given its Table of Contents, just as by Add ToC 
+   to Markdown. 
   
    @param reader The line reader to be used to access the input.
    @param lineWriter The line mdWriter to be used to create the output. 
@@ -164,25 +161,80 @@ public class OPMLtoMarkdown
     
     this.reader = reader;
     finalLineWriter = lineWriter;
-    interimLineWriter = new StringMaker();
+    if (options.isStreaming()) {
+      try {
+        spoolFile = File.createTempFile("headout", ".md");
+        spoolFile.deleteOnExit();
+      } catch (IOException e) {
+        throw new TransformException("Could not create spool file");
+      }
+      try {
+        interimLineWriter = new StreamLineWriter(
+            new FileOutputStream(spoolFile), spoolFile.toString());
+      } catch (IOException e) {
+        deleteSpool();
+        throw new TransformException("Could not open spool file");
+      }
+      headings = new ArrayList<>();
+      headingIDs = new HeadingIDs();
+      tocSlotPending = true;
+    } else {
+      interimLineWriter = new MemoryLineWriter();
+    }
     
     // First transform the OPML input to an interim string containing Markdown
     
     ok = true;
     message = "";
-    xmlSourceAsFile = new File (reader.toString());
-
-    Double startHeadingLevelDouble = new Double(headingLevelStartSlider.getValue());
-    startHeadingLevel = startHeadingLevelDouble.intValue();
-    Double endHeadingLevelDouble = new Double(headingLevelEndSlider.getValue());
-    endHeadingLevel = endHeadingLevelDouble.intValue();
     
     // Open Output File
-    int markupFormat = MarkupWriter.MARKDOWN_FORMAT;
-    mdWriter = new MarkupWriter(interimLineWriter, markupFormat);
-    mdWriter.setIndenting(true);
-    mdWriter.setIndentPerLevel(4);
-    mdWriter.openForOutput();
+    TransformMetrics.startStage("parse");
+    openMarkdownWriter(interimLineWriter);
+    
+    if (options.isPullParsing()) {
+      pullOPML();
+    } else {
+      setUpSAXParser();
+      if (ok) {
+        parseOPML();
+      }
+    }
+    
+    noteChars = new char[0];
+    if (! ok) {
+      mdWriter.close();
+      deleteSpool();
+      throw new TransformException(message);
+    }
+    
+    mdWriter.close();
+    
+    if (options.isStreaming()) {
+      TransformMetrics.startStage("copy-spool");
+      TransformMetrics.addHeadings(headings.size());
+      copySpool();
+      return;
+    }
+    
+    // Now let's add a Table of Contents to the Markdown file
+    String interim = interimLineWriter.toString();
+    TransformMetrics.noteBufferSize(interim.length());
+    interimLineReader = new StringLineReader(interim);
+    interimLineWriter = null;
+    GenTocFromMarkdown.addToC(interimLineReader, finalLineWriter, options);
+  }
+  
+  /**
+   Create a SAX parser, and check that the input file, if any, can be read. 
+   The file is found beneath any counting reader wrapped around it, such 
+   as one measuring the transformation or reporting its progress, so that 
+   the parser reads the file itself, honoring its XML encoding 
+   declaration; only when there is no local file is the OPML taken from 
+   the lines already read. 
+  */
+  private void setUpSAXParser() {
+    
+    xmlSourceAsFile = GenTocFromMarkdown.getSourceFile(reader);
     
     // Set up XML Parser to read the OPML input
     try {
@@ -204,6 +256,8 @@ public class OPMLtoMarkdown
     }
     if (ok) {
       parser.setContentHandler (this);
+    }
+    if (ok && xmlSourceAsFile != null) {
       if (! xmlSourceAsFile.exists()) {
         ok = false;
         Logger.getShared().recordEvent (LogEvent.MEDIUM, 
@@ -213,6 +267,7 @@ public class OPMLtoMarkdown
       }
     }
     if (ok
+        && xmlSourceAsFile != null
         && ! xmlSourceAsFile.isFile()) {
       ok = false;
       Logger.getShared().recordEvent (LogEvent.MEDIUM, 
@@ -220,7 +275,7 @@ public class OPMLtoMarkdown
             false); 
         message = "Input source is not a file";
     }
-    if (ok) {
+    if (ok && xmlSourceAsFile != null) {
       if (! xmlSourceAsFile.canRead()) {
         ok = false;
         Logger.getShared().recordEvent (LogEvent.MEDIUM, 
@@ -229,26 +284,170 @@ public class OPMLtoMarkdown
         message = "Input file cannot be read";
       }
     }
+  }
+  
+  /**
+   Open the writer that receives Markdown from the SAX callbacks, and 
+   reset the outline levels. 
+  
+   @param lineWriter Where the Markdown should go. 
+  */
+  void openMarkdownWriter(TextLineWriter lineWriter) {
+    int markupFormat = MarkupWriter.MARKDOWN_FORMAT;
+    noteWriter = new NoteLineWriter(lineWriter);
+    mdWriter = new MarkupWriter(noteWriter, markupFormat);
+    mdWriter.setIndenting(true);
+    mdWriter.setIndentPerLevel(4);
+    mdWriter.openForOutput();
+    headingLevel = 0;
+    listLevel = -1;
+    indents = 0;
+  }
+  
+  /**
+   Copy the spooled Markdown to the final output, writing the Table of 
+   Contents when its slot is reached. 
+  
+   @throws TransformException If the spool file cannot be read. 
+  */
+  private void copySpool() 
+      throws TransformException {
     
-    if (ok) {
-      parseOPML();
+    TextLineReader spoolReader;
+    try {
+      spoolReader = new StreamLineReader(
+          new FileInputStream(spoolFile), spoolFile.toString());
+    } catch (IOException e) {
+      deleteSpool();
+      throw new TransformException("Could not read spool file");
     }
-    
-    if (! ok) {
-      throw new TransformException(message);
+    if (! spoolReader.open()) {
+      deleteSpool();
+      throw new TransformException("Could not read spool file");
     }
+    finalLineWriter.openForOutput();
+    while (spoolReader.isOK() && ! spoolReader.isAtEnd()) {
+      String line = spoolReader.readLine();
+      if (line == null) {
+        break;
+      }
+      if (isTocSlot(line)) {
+        TocWriter tocWriter = new TocWriter(finalLineWriter, 
+            MarkupWriter.HTML_FRAGMENT_FORMAT);
+        tocWriter.setCompact(options.isCompact());
+        tocWriter.start();
+        for (Heading heading : headings) {
+          tocWriter.addHeading(heading);
+        }
+        tocWriter.finish();
+      } else {
+        finalLineWriter.writeLine(line);
+      }
+    } // end while more spooled lines
+    spoolReader.close();
+    finalLineWriter.close();
+    headings = null;
+    headingIDs = null;
+    deleteSpool();
+  }
+  
+  /**
+   Is this spooled line the slot reserved for the Table of Contents? The 
+   slot may have been indented, but trim cannot be used to find it, since 
+   that would also remove the null characters marking it. 
+  
+   @param line A spooled line. 
+   @return True if the line holds nothing but the slot. 
+  */
+  private static boolean isTocSlot(String line) {
+    int start = line.length() - TOC_SLOT.length();
+    if (start < 0 || ! line.startsWith(TOC_SLOT, start)) {
+      return false;
+    }
+    for (int i = 0; i < start; i++) {
+      if (line.charAt(i) != ' ' && line.charAt(i) != '\t') {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private void deleteSpool() {
+    if (spoolFile != null) {
+      spoolFile.delete();
+      spoolFile = null;
+    }
+  }
+  
+  /**
+   Write a heading as HTML, with an ID unique within the document, noting 
+   it for the Table of Contents. The outline text is escaped just as it 
+   is when it becomes a Markdown heading, with any entity or character 
+   references already present kept as they are, so that streaming 
+   writes the same heading as the default path. 
+   Used only when streaming. 
+  
+   @param level The heading level. 
+   @param text  The heading text. 
+  */
+  private void writeStreamingHeading(int level, String text) {
+    String id = headingIDs.assign(level, text);
+    if (id == null) {
+      id = "";
+    }
+    String h = "h" + String.valueOf(level);
+    mdWriter.newLine();
+    String content = MarkupEscaper.escape(text, true);
+    mdWriter.writeLine("<" + h 
+        + " id=\"" + MarkupEscaper.escape(id, true) + "\">" 
+        + content + "</" + h + ">");
+    mdWriter.newLine();
+    if (tocSlotPending && TocWriter.isTocHeading(id)) {
+      mdWriter.writeLine(TOC_SLOT);
+      tocSlotPending = false;
+    } 
+    else
+    if (options.inRange(level) && TocWriter.isTocEntry(id)) {
+      headings.add(new Heading(level, id, content));
+    }
+  }
+  
+  /**
+   Read the OPML with the StAX pull parser, which calls back to 
+   startOutline and endOutline. 
+  */
+  private void pullOPML() {
     
-    mdWriter.close();
-    
-    // Now let's add a Table of Contents to the Markdown file
-    interimLineReader = new StringLineReader(interimLineWriter.toString());
-    interimLineWriter = null;
-    AddToCtoMarkdown addToC = new AddToCtoMarkdown();
-    addToC.transformNow(interimLineReader, finalLineWriter, 
-        startHeadingLevel, endHeadingLevel);
+    headingLevel = 0;
+    listLevel = -1;
+    indents = 0;
     
-    // Let's save our user's preferences before exiting
-    savePrefs();
+    try {
+      new OPMLPullParser(this).parse(reader);
+    }
+    catch (XMLStreamException xmle) {
+      Logger.getShared().recordEvent (LogEvent.MEDIUM, 
+          "Encountered XML error while reading XML file " + reader.toString() 
+          + xmle.toString(),
+          false);  
+      ok = false;
+      message = "XML error while reading OPML file";
+    }
+    catch (FileNotFoundException fnfe) {
+      Logger.getShared().recordEvent (LogEvent.MEDIUM, 
+          "XML File " + reader.toString() + " cannot be opened",
+          false);
+      ok = false;
+      message = "Input file cannot be read";
+    }
+    catch (IOException ioe) {
+      Logger.getShared().recordEvent (LogEvent.MEDIUM, 
+          "Encountered I/O error while reading XML file " + reader.toString() 
+          + ioe.toString(),
+          false);   
+      ok = false;
+      message = "I/O Error reading OPML file";
+    }
   }
   
   private void parseOPML() {
@@ -258,7 +457,14 @@ public class OPMLtoMarkdown
     indents = 0;
     
     try {
-      parser.parse (xmlSourceAsFile.toURI().toString());
+      if (xmlSourceAsFile == null) {
+        // Not a local file, so pull the OPML through the line reader
+        reader.open();
+        parser.parse (new InputSource(new TextLineReaderInput(reader)));
+        reader.close();
+      } else {
+        parser.parse (xmlSourceAsFile.toURI().toString());
+      }
     } 
     catch (SAXException saxe) {
       Logger.getShared().recordEvent (LogEvent.MEDIUM, 
@@ -299,51 +505,11 @@ public class OPMLtoMarkdown
         String name = attributes.getLocalName (i);
         String value = attributes.getValue (i);
         if (name.equalsIgnoreCase(TEXT)) {
-          if (headingLevel <= endHeadingLevel) {
-            endOpenLists();
-            mdWriter.writeHeading(headingLevel, value, "");
-          } else {
-            if (listLevel < endHeadingLevel) {
-              listLevel = endHeadingLevel;
-            }
-            endOpenLists();
-            while (listLevel < headingLevel) {
-              mdWriter.startUnorderedList("");
-              listLevel++;
-            }
-            mdWriter.startListItem("");
-            mdWriter.write("* ");
-            mdWriter.write(value);
-            mdWriter.endListItem();
-            moreIndent();
-          } // End of content generation condition
+          writeOutlineText(value);
         }
         else
         if (name.equalsIgnoreCase(NOTE)) {
-          int j = 0;
-          int k = 0;
-          int l = 0;
-          while (j < value.length()) {
-            int lfs = 0;
-            k = value.indexOf(GlobalConstants.LINE_FEED, j);
-            if (k < 0) {
-              k = value.length();
-            }
-            l = k;
-            while (l < value.length()
-                && (value.charAt(l) == GlobalConstants.LINE_FEED
-                  || value.charAt(l) == GlobalConstants.CARRIAGE_RETURN)) {
-              if (value.charAt(l) == GlobalConstants.LINE_FEED) {
-                lfs++;
-              }
-              l++;
-            }
-            mdWriter.writeLine(value.substring(j, k));
-            if (lfs > 1) {
-              mdWriter.newLine();
-            }
-            j = l;
-          }
+          writeNote(value);
         } // end if it was a note
       } // End for each attribute of the Outline element
     } // End if it is an Outline element
@@ -360,8 +526,152 @@ public class OPMLtoMarkdown
     endOpenLists();
   } // end method
   
+  /**
+   An outline element has been found by the pull parser. 
+  
+   @param text The element's text, or null. 
+   @param note The element's note, or null. 
+  */
+  public void startOutline(String text, String note) {
+    headingLevel++;
+    if (text != null) {
+      writeOutlineText(text);
+    }
+    if (note != null) {
+      writeNote(note);
+    }
+  }
+  
+  public void endOutline() {
+    headingLevel--;
+    endOpenLists();
+  }
+  
+  /**
+   Write an outline element's text, as either a heading or a list item, 
+   depending on its level. 
+  
+   @param value The text of the outline element. 
+  */
+  private void writeOutlineText(String value) {
+    if (headingLevel <= options.getEndHeadingLevel()) {
+      endOpenLists();
+      if (options.isStreaming()) {
+        writeStreamingHeading(headingLevel, value);
+      } else {
+        mdWriter.writeHeading(headingLevel, value, "");
+      }
+    } else {
+      if (listLevel < options.getEndHeadingLevel()) {
+        listLevel = options.getEndHeadingLevel();
+      }
+      endOpenLists();
+      while (listLevel < headingLevel) {
+        mdWriter.startUnorderedList("");
+        listLevel++;
+      }
+      mdWriter.startListItem("");
+      mdWriter.write("* ");
+      mdWriter.write(value);
+      mdWriter.endListItem();
+      moreIndent();
+    } // End of content generation condition
+  }
+  
+  /**
+   Write an outline element's note, one line at a time, preserving blank 
+   lines between paragraphs. A note beneath a heading, needing no 
+   indentation, is copied a line at a time straight from a reusable 
+   buffer to the NoteLineWriter beneath the MarkupWriter, as long as the 
+   MarkupWriter has left no line unfinished there; otherwise the 
+   MarkupWriter writes the note, taking care of any indentation. 
+  
+   @param value The text of the note. 
+  */
+  private void writeNote(String value) {
+    if (indents == 0 && ! noteWriter.isLineOpen()) {
+      copyNote(value);
+    } else {
+      writeNoteLines(value);
+    }
+  }
+  
+  /**
+   Write a note through the MarkupWriter, a line at a time. 
+  
+   @param value The text of the note. 
+  */
+  private void writeNoteLines(String value) {
+    int j = 0;
+    int k = 0;
+    int l = 0;
+    while (j < value.length()) {
+      int lfs = 0;
+      k = value.indexOf(GlobalConstants.LINE_FEED, j);
+      if (k < 0) {
+        k = value.length();
+      }
+      l = k;
+      while (l < value.length()
+          && (value.charAt(l) == GlobalConstants.LINE_FEED
+            || value.charAt(l) == GlobalConstants.CARRIAGE_RETURN)) {
+        if (value.charAt(l) == GlobalConstants.LINE_FEED) {
+          lfs++;
+        }
+        l++;
+      }
+      mdWriter.writeLine(value.substring(j, k));
+      if (lfs > 1) {
+        mdWriter.newLine();
+      }
+      j = l;
+    }
+  }
+  
+  /**
+   Copy a note to the output as ranges of characters, without creating a 
+   String for each line. Line breaks are handled just as by 
+   writeNoteLines: each line ends at a line feed, and a run of line 
+   breaks holding more than one line feed becomes a single blank line. 
+  
+   @param value The text of the note. 
+  */
+  private void copyNote(String value) {
+    int length = value.length();
+    if (noteChars.length < length) {
+      noteChars = new char[Math.max(length, noteChars.length * 2)];
+    }
+    value.getChars(0, length, noteChars, 0);
+    char[] chars = noteChars;
+    int j = 0;
+    while (j < length) {
+      int k = j;
+      while (k < length && chars[k] != GlobalConstants.LINE_FEED) {
+        k++;
+      }
+      int l = k;
+      int lfs = 0;
+      while (l < length
+          && (chars[l] == GlobalConstants.LINE_FEED
+            || chars[l] == GlobalConstants.CARRIAGE_RETURN)) {
+        if (chars[l] == GlobalConstants.LINE_FEED) {
+          lfs++;
+        }
+        l++;
+      }
+      if (k > j) {
+        noteWriter.write(chars, j, k - j);
+      }
+      noteWriter.newLine();
+      if (lfs > 1) {
+        noteWriter.newLine();
+      }
+      j = l;
+    } // end while more lines in the note
+  }
+  
   private void endOpenLists() {
-    while (listLevel > headingLevel && listLevel > endHeadingLevel) {
+    while (listLevel > headingLevel && listLevel > options.getEndHeadingLevel()) {
       mdWriter.endUnorderedList();
       listLevel--;
     }
@@ -374,7 +684,7 @@ public class OPMLtoMarkdown
   }
   
   private void adjustIndent() {
-    while (indents > (listLevel - endHeadingLevel)
+    while (indents > (listLevel - options.getEndHeadingLevel())
         && indents > 0) {
       mdWriter.lessIndent();
       indents--;
@@ -386,8 +696,10 @@ public class OPMLtoMarkdown
   */
   public void savePrefs() {
 
-    prefs.setPref(HEADING_LEVEL_START, headingLevelStartSlider.getValue());
-    prefs.setPref(HEADING_LEVEL_END, headingLevelEndSlider.getValue());
+    if (prefs != null) {
+      prefs.setPref(HEADING_LEVEL_START, options.getStartHeadingLevel());
+      prefs.setPref(HEADING_LEVEL_END, options.getEndHeadingLevel());
+    }
 
   }
 
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ Receives the outline elements of an OPML document, in document order, 
+ from whichever parser is reading it. 
+
+ @author Herb Bowie
+ */
+public interface OutlineHandler {
+  
+  /**
+   An outline element has been opened. 
+  
+   @param text The element's text attribute, or null if it has none. 
+   @param note The element's _note attribute, or null if it has none. 
+  */
+  public void startOutline(String text, String note);
+  
+  /**
+   The most recently opened outline element has been closed. 
+  */
+  public void endOutline();
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+/**
+ Writes an OPML document one outline element at a time, holding nothing 
+ in memory but the current nesting depth and a reusable character buffer. 
+ The caller is responsible for opening and closing the line writer. <p>
+
+ An element's note may be supplied a line at a time, after its text, 
+ and is written out as it arrives: the element's start tag is left open 
+ until its first child, or its end, is reached. Line breaks within the 
+ note are written as character references, so that they survive being 
+ read back as an attribute value; blank lines at the end of a note are 
+ dropped. Elements are indented by two spaces per level, unless compact 
+ output is requested. <p>
+
+ Since this class implements OutlineHandler, it may also be driven 
+ directly by OPMLPullParser. 
+
+ @author Herb Bowie
+ */
+public class OutlineWriter 
+    implements OutlineHandler {
+  
+  private     static  final int           INDENT_PER_LEVEL = 2;
+  
+  /** Partial lines are passed along once the buffer holds this many chars. */
+  private     static  final int           FLUSH_THRESHOLD = 8192;
+  
+  private             TextLineWriter      lineWriter;
+  private             CharLineWriter      charWriter = null;
+  private             boolean             compact = false;
+  
+  private             char[]              buffer = new char[256];
+  private             int                 length = 0;
+  
+  /** The number of outline elements currently open. */
+  private             int                 depth = 0;
+  
+  /** Is the most recent outline's start tag still waiting to be closed? */
+  private             boolean             startTagOpen = false;
+  
+  /** Has the most recent outline's note attribute been started? */
+  private             boolean             noteStarted = false;
+  
+  /** Blank note lines not yet written, since they may be trailing. */
+  private             int                 pendingBreaks = 0;
+  
+  private             int                 outlines = 0;
+  
+  /**
+   Prepare to write an OPML document. 
+  
+   @param lineWriter The line writer to receive the output, already 
+                     opened by the caller. 
+  */
+  public OutlineWriter (TextLineWriter lineWriter) {
+    this.lineWriter = lineWriter;
+    if (lineWriter instanceof CharLineWriter) {
+      charWriter = (CharLineWriter)lineWriter;
+    }
+  }
+  
+  /**
+   Request compact output, without any indentation. 
+  
+   @param compact True for compact output. 
+  */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+  
+  /**
+   Start the document, writing everything up to the start of its body. 
+  
+   @param title The title of the document, or null for none. 
+  */
+  public void start(String title) {
+    depth = 0;
+    length = 0;
+    outlines = 0;
+    startTagOpen = false;
+    append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    endLine();
+    append("<opml version=\"2.0\">");
+    endLine();
+    indent(1);
+    append("<head>");
+    endLine();
+    indent(2);
+    append("<title>");
+    if (title != null) {
+      appendEscaped(title);
+    }
+    append("</title>");
+    endLine();
+    indent(1);
+    append("</head>");
+    endLine();
+    indent(1);
+    append("<body>");
+    endLine();
+  }
+  
+  /**
+   Start an outline element, nested within any that are still open. 
+  
+   @param text The element's text. 
+  */
+  public void startOutline(CharSequence text) {
+    closeStartTag(false);
+    indent(depth + 2);
+    append("<outline text=\"");
+    appendEscaped(text);
+    append('"');
+    startTagOpen = true;
+    noteStarted = false;
+    pendingBreaks = 0;
+    depth++;
+    outlines++;
+  }
+  
+  /**
+   Start an outline element, with its complete note. 
+  
+   @param text The element's text, or null. 
+   @param note The element's note, or null. 
+  */
+  public void startOutline(String text, String note) {
+    if (text == null) {
+      startOutline("");
+    } else {
+      startOutline(text);
+    }
+    if (note != null) {
+      int j = 0;
+      while (j <= note.length()) {
+        int k = note.indexOf('\n', j);
+        if (k < 0) {
+          k = note.length();
+        }
+        int end = k;
+        if (end > j && note.charAt(end - 1) == '\r') {
+          end--;
+        }
+        addNoteLine(note.subSequence(j, end));
+        j = k + 1;
+      } // end while more lines in the note
+    }
+  }
+  
+  /**
+   Add a line to the note of the outline element most recently started. 
+   This must be called before any child element is started. 
+  
+   @param line One line of the note, without any line terminator. 
+  */
+  public void addNoteLine(CharSequence line) {
+    if (! startTagOpen) {
+      return;
+    }
+    if (isBlank(line)) {
+      if (noteStarted) {
+        pendingBreaks++;
+      }
+      return;
+    }
+    if (noteStarted) {
+      append("&#10;");
+      while (pendingBreaks > 0) {
+        append("&#10;");
+        pendingBreaks--;
+      }
+    } else {
+      append(" _note=\"");
+      noteStarted = true;
+    }
+    appendEscaped(line);
+    if (length >= FLUSH_THRESHOLD) {
+      flushPartialLine();
+    }
+  }
+  
+  /**
+   End the outline element most recently started and not yet ended. 
+  */
+  public void endOutline() {
+    if (depth <= 0) {
+      return;
+    }
+    depth--;
+    if (startTagOpen) {
+      closeStartTag(true);
+    } else {
+      indent(depth + 2);
+      append("</outline>");
+      endLine();
+    }
+  }
+  
+  /**
+   Finish the document, ending any outline elements still open. 
+  */
+  public void finish() {
+    while (depth > 0) {
+      endOutline();
+    }
+    indent(1);
+    append("</body>");
+    endLine();
+    append("</opml>");
+    endLine();
+  }
+  
+  /**
+   Get the number of outline elements written. 
+  
+   @return The number of outline elements started since the start. 
+  */
+  public int getOutlines() {
+    return outlines;
+  }
+  
+  public int getDepth() {
+    return depth;
+  }
+  
+  /**
+   Finish the start tag of the most recent outline element, if still open. 
+  
+   @param empty True if the element has no children, and so is complete. 
+  */
+  private void closeStartTag(boolean empty) {
+    if (! startTagOpen) {
+      return;
+    }
+    if (noteStarted) {
+      append('"');
+    }
+    if (empty) {
+      append("/>");
+    } else {
+      append('>');
+    }
+    endLine();
+    startTagOpen = false;
+    noteStarted = false;
+    pendingBreaks = 0;
+  }
+  
+  private static boolean isBlank(CharSequence line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private void indent(int level) {
+    if (! compact) {
+      int spaces = level * INDENT_PER_LEVEL;
+      for (int i = 0; i < spaces; i++) {
+        append(' ');
+      }
+    }
+  }
+  
+  /**
+   Append text to be used as character data or an attribute value, 
+   replacing markup characters with entities, and leaving out any 
+   control characters that XML does not allow. 
+  
+   @param s The text to be appended. 
+  */
+  private void appendEscaped(CharSequence s) {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '&':
+          append("&amp;");
+          break;
+        case '<':
+          append("&lt;");
+          break;
+        case '>':
+          append("&gt;");
+          break;
+        case '"':
+          append("&quot;");
+          break;
+        case '\t':
+          append("&#9;");
+          break;
+        default:
+          if (c >= ' ') {
+            append(c);
+          }
+      }
+    } // end for each character
+  }
+  
+  private void append(char c) {
+    if (length >= buffer.length) {
+      grow(length + 1);
+    }
+    buffer[length++] = c;
+  }
+  
+  private void append(String s) {
+    int n = s.length();
+    if (length + n > buffer.length) {
+      grow(length + n);
+    }
+    s.getChars(0, n, buffer, length);
+    length = length + n;
+  }
+  
+  private void grow(int needed) {
+    char[] larger = new char[Math.max(needed, buffer.length * 2)];
+    System.arraycopy(buffer, 0, larger, 0, length);
+    buffer = larger;
+  }
+  
+  /**
+   Pass the contents of the buffer to the line writer without ending the 
+   line, so that a long note need never be held in memory. A surrogate 
+   pair is never split. 
+  */
+  private void flushPartialLine() {
+    int n = length;
+    if (Character.isHighSurrogate(buffer[n - 1])) {
+      n--;
+    }
+    if (charWriter != null) {
+      charWriter.write(buffer, 0, n);
+    } else {
+      lineWriter.write(new String(buffer, 0, n));
+    }
+    System.arraycopy(buffer, n, buffer, 0, length - n);
+    length = length - n;
+  }
+  
+  /**
+   Pass the line in the buffer to the line writer, and empty the buffer. 
+  */
+  private void endLine() {
+    if (charWriter != null) {
+      charWriter.write(buffer, 0, length);
+      lineWriter.newLine();
+    } else {
+      lineWriter.writeLine(new String(buffer, 0, length));
+    }
+    length = 0;
+  }
+
+}
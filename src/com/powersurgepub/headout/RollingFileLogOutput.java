@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+/**
+ Writes log lines to a file, starting a new one whenever the file grows 
+ beyond a given size. The file being replaced is renamed with '.1' added 
+ to its name, any earlier '.1' file becomes '.2', and so on, up to a 
+ given number of old files. Lines are buffered until flush is called, so 
+ this is best used behind an AsyncLogOutput, which flushes after each 
+ batch. 
+
+ @author Herb Bowie
+ */
+public class RollingFileLogOutput 
+    extends LogOutput {
+  
+  public static final long  DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+  public static final int   DEFAULT_OLD_FILES = 3;
+  
+  private             File                file;
+  private             long                maxBytes;
+  private             int                 oldFiles;
+  
+  private             Writer              writer = null;
+  private             long                bytes = 0;
+  private             boolean             ok = true;
+  
+  /**
+   Construct an output with the default limits. 
+  
+   @param file The log file. 
+  */
+  public RollingFileLogOutput (File file) {
+    this(file, DEFAULT_MAX_BYTES, DEFAULT_OLD_FILES);
+  }
+  
+  /**
+   Construct an output. 
+  
+   @param file     The log file. 
+   @param maxBytes The size beyond which a new file is started. 
+   @param oldFiles The number of old files to be kept. 
+  */
+  public RollingFileLogOutput (File file, long maxBytes, int oldFiles) {
+    this.file = file;
+    this.maxBytes = Math.max(maxBytes, 1024);
+    this.oldFiles = Math.max(oldFiles, 0);
+  }
+  
+  public void writeLine(String line) {
+    if (writer == null && ! open()) {
+      return;
+    }
+    try {
+      writer.write(line);
+      writer.write('\n');
+      // Close enough: most log lines are ASCII
+      bytes = bytes + line.length() + 1;
+      if (bytes > maxBytes) {
+        roll();
+      }
+    } catch (IOException e) {
+      ok = false;
+    }
+  }
+  
+  private boolean open() {
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      bytes = file.length();
+      writer = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(file, true), StandardCharsets.UTF_8));
+      ok = true;
+    } catch (IOException e) {
+      ok = false;
+      writer = null;
+    }
+    return ok;
+  }
+  
+  /**
+   Start a new file, shifting the old ones along. 
+  */
+  private void roll() 
+      throws IOException {
+    
+    writer.close();
+    writer = null;
+    if (oldFiles == 0) {
+      file.delete();
+    } else {
+      oldFile(oldFiles).delete();
+      for (int i = oldFiles - 1; i >= 1; i--) {
+        File older = oldFile(i);
+        if (older.exists()) {
+          older.renameTo(oldFile(i + 1));
+        }
+      }
+      file.renameTo(oldFile(1));
+    }
+    open();
+  }
+  
+  private File oldFile(int number) {
+    return new File(file.getPath() + "." + String.valueOf(number));
+  }
+  
+  /**
+   Write any buffered lines to the file. 
+  */
+  public void flush() {
+    if (writer != null) {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+  }
+  
+  public void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        ok = false;
+      }
+      writer = null;
+    }
+  }
+  
+  public boolean isOK() {
+    return ok;
+  }
+  
+  public File getFile() {
+    return file;
+  }
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.env.*;
+  import com.powersurgepub.psutils2.mkdown.*;
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.ui.*;
+
+  import java.io.*;
+  import java.util.*;
+
+  import javafx.scene.control.*;
+  import javafx.scene.layout.*;
+
+/**
+ Extracts a single section from a Markdown document: the heading with the 
+ requested ID, along with everything beneath it, up to the next heading 
+ at the same or a higher level. <p>
+
+ The section may be identified by its heading's ID alone, or by a path of 
+ IDs separated by slashes, such as 'user-guide/installation', to pick out 
+ one of several headings with the same ID. Each ID in a path must belong 
+ to an enclosing heading of the one following it, though not necessarily 
+ its immediate parent. <p>
+
+ If a heading index is requested, and the input is a local file, then the 
+ section's byte offsets are found in the index, and only the section 
+ itself is read. Otherwise the document is scanned for headings until the 
+ section is found, and reading stops as soon as the section ends. 
+
+ @author Herb Bowie
+ */
+public class SectionExtractor 
+    implements HeadOutTransformer {
+  
+  /** Separates the IDs within a section path. */
+  public      static  final String        PATH_SEPARATOR = "/";
+  
+  private     static  final String        SECTION_PATH = "section-path";
+  
+  private             UserPrefs           prefs = null;
+  
+  private             TransformOptions    options;
+  
+  private             GridPane            grid = null;
+  
+  /**
+   Construct a new section extractor for use within the user interface, 
+   with the section path initialized from the user's preferences. 
+  
+   @param transformTypeIndex Which transformation was requested?
+   @param transformTypeString What did we call it? 
+  */
+  public SectionExtractor (
+      int transformTypeIndex, 
+      String transformTypeString) {
+    
+    this(new TransformOptions(transformTypeIndex, transformTypeString));
+    
+    prefs = UserPrefs.getShared();
+    options.setSectionPath(prefs.getPref(SECTION_PATH, ""));
+  }
+  
+  /**
+   Construct a new section extractor driven solely by the passed options. 
+  
+   @param options The transform type and section path to be used. 
+  */
+  public SectionExtractor (TransformOptions options) {
+    this.options = options;
+  }
+  
+  /**
+   Get the GridPane containing the controls for this transformer.
+
+   @return the grid pane containing the controls for this type of transformation.
+   */
+  public GridPane getGrid() {
+    if (grid == null) {
+      FXUtils fxUtils = FXUtils.getShared();
+      grid = new GridPane();
+      fxUtils.applyStyle(grid);
+      
+      Label sectionLabel = new Label("Section ID or Path");
+      grid.add(sectionLabel, 0, 0, 1, 1);
+      
+      TextField sectionText = new TextField(options.getSectionPath());
+      sectionText.setPromptText("installation, or user-guide/installation");
+      sectionText.textProperty().addListener(
+          (observable, oldValue, newValue) -> 
+              options.setSectionPath(newValue));
+      grid.add(sectionText, 0, 1, 1, 1);
+      GridPane.setHgrow(sectionText, Priority.ALWAYS);
+    }
+    return grid;
+  }
+  
+  /**
+   Get the options governing this transformer. 
+  
+   @return The transform type and section path. 
+  */
+  public TransformOptions getOptions() {
+    return options;
+  }
+  
+  /**
+   Write the requested section of the Markdown input to the output. 
+  
+   @param reader The line reader to be used to access the input.
+   @param lineWriter The line writer to be used to create the output. 
+   @throws TransformException If no section was requested, or if it 
+                              could not be found. 
+  */
+  public void transformNow(TextLineReader reader, TextLineWriter lineWriter) 
+      throws TransformException {
+    
+    String[] path = splitPath(options.getSectionPath());
+    if (path.length == 0) {
+      throw new TransformException("No section was requested");
+    }
+    File source = GenTocFromMarkdown.getSourceFile(reader);
+    boolean found;
+    if (options.isIndexing() && source != null) {
+      found = extractFromIndex(source, path, lineWriter);
+    } else {
+      found = extractByScanning(reader, path, lineWriter);
+    }
+    if (! found) {
+      throw new TransformException("Section not found: " 
+          + options.getSectionPath());
+    }
+  }
+  
+  /**
+   Split a section path into its IDs. 
+  
+   @param sectionPath One or more IDs, separated by slashes. 
+   @return The IDs, with any empty ones left out. 
+  */
+  static String[] splitPath(String sectionPath) {
+    List<String> ids = new ArrayList<>();
+    if (sectionPath != null) {
+      for (String id : sectionPath.split(PATH_SEPARATOR)) {
+        String trimmed = id.trim();
+        if (trimmed.startsWith("#")) {
+          trimmed = trimmed.substring(1);
+        }
+        if (trimmed.length() > 0) {
+          ids.add(trimmed);
+        }
+      }
+    }
+    return ids.toArray(new String[ids.size()]);
+  }
+  
+  /**
+   Is this heading the one requested? 
+  
+   @param path      The requested path of IDs. 
+   @param enclosing The IDs of the headings enclosing this one, outermost 
+                    first. 
+   @param id        The ID of this heading. 
+   @return True if the ID matches the last in the path, and the rest of 
+           the path can be found, in order, among the enclosing headings. 
+  */
+  static boolean matches(String[] path, List<String> enclosing, String id) {
+    if (! id.equals(path[path.length - 1])) {
+      return false;
+    }
+    int p = 0;
+    for (int i = 0; i < enclosing.size() && p < path.length - 1; i++) {
+      if (enclosing.get(i).equals(path[p])) {
+        p++;
+      }
+    }
+    return p == path.length - 1;
+  }
+  
+  /**
+   Find the section's bounds in the file's heading index, and copy just 
+   those bytes to the output. 
+  
+   @return True if the section was found. 
+  */
+  private boolean extractFromIndex(File source, String[] path, 
+      TextLineWriter lineWriter) 
+        throws TransformException {
+    
+    TransformMetrics.startStage("index");
+    HeadingIndex index;
+    try {
+      index = HeadingIndex.forFile(source);
+    } catch (IOException e) {
+      throw new TransformException("Could not index " + source.toString() 
+          + ": " + e.getMessage());
+    }
+    List<Heading> headings = index.getHeadings();
+    
+    // Find the section's heading
+    int[] levels = new int[TransformOptions.MAX_HEADING_LEVEL + 1];
+    String[] ids = new String[TransformOptions.MAX_HEADING_LEVEL + 1];
+    List<String> enclosing = new ArrayList<>();
+    int target = -1;
+    for (int i = 0; i < headings.size() && target < 0; i++) {
+      Heading heading = headings.get(i);
+      enclosing.clear();
+      for (int l = 1; l < heading.getLevel(); l++) {
+        if (ids[l] != null) {
+          enclosing.add(ids[l]);
+        }
+      }
+      if (matches(path, enclosing, heading.getID())) {
+        target = i;
+      }
+      ids[heading.getLevel()] = heading.getID();
+      for (int l = heading.getLevel() + 1; l < ids.length; l++) {
+        ids[l] = null;
+      }
+    } // end for each heading until the target is found
+    if (target < 0) {
+      return false;
+    }
+    
+    // Find where it ends
+    Heading start = headings.get(target);
+    long end = Long.MAX_VALUE;
+    for (int i = target + 1; i < headings.size() && end == Long.MAX_VALUE; i++) {
+      if (headings.get(i).getLevel() <= start.getLevel()) {
+        end = headings.get(i).getOffset();
+      }
+    }
+    
+    TransformMetrics.startStage("copy");
+    MappedLineReader sectionReader = new MappedLineReader(source);
+    if (! sectionReader.open(start.getOffset(), end)) {
+      throw new TransformException("Could not read " + source.toString());
+    }
+    lineWriter.openForOutput();
+    String line = sectionReader.readLine();
+    while (line != null) {
+      lineWriter.writeLine(line);
+      line = sectionReader.readLine();
+    }
+    sectionReader.close();
+    lineWriter.close();
+    return true;
+  }
+  
+  /**
+   Scan the input for the section's heading, and copy lines to the output 
+   until the section ends. The lines of each paragraph are held back, 
+   since they may turn out to be the text of a Setext heading that starts 
+   or ends the section. 
+  
+   @return True if the section was found. 
+  */
+  private boolean extractByScanning(TextLineReader reader, String[] path, 
+      TextLineWriter lineWriter) {
+    
+    TransformMetrics.startStage("scan");
+    HeadingScanner scanner = new HeadingScanner();
+    String[] ids = new String[TransformOptions.MAX_HEADING_LEVEL + 1];
+    List<String> enclosing = new ArrayList<>();
+    int sectionLevel = 0;
+    boolean found = false;
+    boolean ended = false;
+    HeldLines held = new HeldLines();
+    
+    reader.open();
+    String line = nextLine(reader);
+    while (line != null && ! ended) {
+      int level = scanner.scanLine(line);
+      String id = null;
+      if (level > 0) {
+        MarkdownLine mdLine 
+            = HeadingIDs.parseHeading(level, scanner.getHeadingText());
+        if (mdLine != null) {
+          id = mdLine.getID();
+        }
+      }
+      
+      if (found) {
+        if (level > 0 && level <= sectionLevel) {
+          // The next section begins; a Setext heading's text was held back
+          if (! scanner.isSetext()) {
+            writeHeld(held, lineWriter);
+          }
+          ended = true;
+        }
+        else
+        if (level == 0 && scanner.isInParagraph()) {
+          held.add(line);
+        } else {
+          writeHeld(held, lineWriter);
+          lineWriter.writeLine(line);
+        }
+      }
+      else
+      if (id != null) {
+        enclosing.clear();
+        for (int l = 1; l < level; l++) {
+          if (ids[l] != null) {
+            enclosing.add(ids[l]);
+          }
+        }
+        if (matches(path, enclosing, id)) {
+          found = true;
+          sectionLevel = level;
+          lineWriter.openForOutput();
+          if (scanner.isSetext()) {
+            writeHeld(held, lineWriter);
+          }
+          lineWriter.writeLine(line);
+        } else {
+          ids[level] = id;
+          for (int l = level + 1; l < ids.length; l++) {
+            ids[l] = null;
+          }
+        }
+        held.clear();
+      }
+      else
+      if (scanner.isInParagraph()) {
+        held.add(line);
+      } else {
+        held.clear();
+      }
+      
+      if (! ended) {
+        line = nextLine(reader);
+      }
+    } // end while more lines, and the section has not ended
+    
+    if (found && ! ended) {
+      writeHeld(held, lineWriter);
+    }
+    reader.close();
+    if (found) {
+      lineWriter.close();
+    }
+    return found;
+  }
+  
+  /**
+   Write the lines held back, and let go of them. 
+  */
+  private static void writeHeld(HeldLines held, TextLineWriter lineWriter) {
+    for (int i = 0; i < held.size(); i++) {
+      lineWriter.writeLine(held.get(i).toString());
+    }
+    held.clear();
+  }
+  
+  private static String nextLine(TextLineReader reader) {
+    if (reader.isAtEnd() || (! reader.isOK())) {
+      return null;
+    } else {
+      return reader.readLine();
+    }
+  }
+  
+  /**
+   Save user options as preferences. 
+  */
+  public void savePrefs() {
+    if (prefs != null) {
+      prefs.setPref(SECTION_PATH, options.getSectionPath());
+    }
+  }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.io.*;
+  import java.net.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.text.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ Builds a single Table of Contents for a whole site made up of many 
+ Markdown pages. Each page gets an entry of its own, with the page's 
+ headings nested beneath it, and every link is relative to the site's 
+ top directory (as in 'guide/install.md#requirements'). <p>
+
+ The pages are scanned for headings in parallel, largest first, so that 
+ the time taken approaches the time needed to scan the single largest 
+ page. Once scanned, the Table of Contents may be written any number of 
+ times, in Markdown or as an HTML fragment, without scanning again. <p>
+
+ If a page's first heading is the only one at its level, then it is taken 
+ to be the page's title: it becomes the text of the page's entry, and is 
+ not repeated beneath it. Otherwise the page's entry shows its file name. 
+
+ @author Herb Bowie
+ */
+public class SiteToc {
+  
+  private             TransformOptions    options;
+  private             Path                siteDir;
+  private             List<Path>          files;
+  private             int                 threads;
+  
+  private             PrintStream         report = System.err;
+  
+  private             List<Page>          pages = null;
+  private             int                 entries = 0;
+  
+  /**
+   Set up a site Table of Contents. 
+  
+   @param options The heading levels to be included, and whether to use 
+                  heading indexes. 
+   @param siteDir The top directory of the site, to which links are 
+                  relative. 
+   @param files   The pages of the site, in the order they should appear. 
+   @param threads The number of scanning threads; zero or less to use 
+                  one per available processor. 
+  */
+  public SiteToc (
+      TransformOptions options, 
+      Path siteDir, 
+      List<Path> files, 
+      int threads) {
+    
+    this.options = options;
+    this.siteDir = siteDir.toAbsolutePath().normalize();
+    this.files = new ArrayList<>(files.size());
+    for (Path file : files) {
+      this.files.add(file.toAbsolutePath().normalize());
+    }
+    if (threads > 0) {
+      this.threads = threads;
+    } else {
+      this.threads = Runtime.getRuntime().availableProcessors();
+    }
+  }
+  
+  /**
+   Read an ordered list of pages from a text file: one path per line, 
+   relative to the directory containing the list. Blank lines, and lines 
+   starting with a hash, are ignored. 
+  
+   @param listFile The file listing the pages. 
+   @return The pages, in the order listed. 
+   @throws IOException If the list cannot be read. 
+  */
+  public static List<Path> readFileList(Path listFile) 
+      throws IOException {
+    Path dir = listFile.toAbsolutePath().getParent();
+    List<Path> list = new ArrayList<>();
+    for (String line : Files.readAllLines(listFile, StandardCharsets.UTF_8)) {
+      String name = line.trim();
+      if (name.length() > 0 && ! name.startsWith("#")) {
+        list.add(dir.resolve(name).normalize());
+      }
+    }
+    return list;
+  }
+  
+  /**
+   Specify where the summary should be printed. 
+  
+   @param report The stream to receive the summary. 
+  */
+  public void setReport(PrintStream report) {
+    this.report = report;
+  }
+  
+  /**
+   Scan every page for headings, several at a time. 
+  
+   @throws IOException If any page could not be read. 
+  */
+  public void scan() 
+      throws IOException {
+    
+    long startTime = System.nanoTime();
+    
+    // Start the largest pages first, so that none is left running alone
+    Integer[] order = new Integer[files.size()];
+    long[] sizes = new long[files.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+      sizes[i] = files.get(i).toFile().length();
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(sizes[b], sizes[a]));
+    
+    ForkJoinPool scanPool = new ForkJoinPool(threads);
+    List<CompletableFuture<Page>> futures = new ArrayList<>(files.size());
+    for (int i = 0; i < files.size(); i++) {
+      futures.add(null);
+    }
+    try {
+      for (Integer i : order) {
+        Path file = files.get(i);
+        futures.set(i, CompletableFuture.supplyAsync(
+            () -> scanPage(file), scanPool));
+      }
+      pages = new ArrayList<>(files.size());
+      String failure = null;
+      for (CompletableFuture<Page> future : futures) {
+        Page page = future.join();
+        if (page.message != null) {
+          report.println("  FAIL  " + siteDir.relativize(page.file)
+              + ": " + page.message);
+          if (failure == null) {
+            failure = page.message;
+          }
+        }
+        pages.add(page);
+      } // end for each page, in site order
+      if (failure != null) {
+        throw new IOException(failure);
+      }
+    } finally {
+      scanPool.shutdown();
+    }
+    
+    entries = 0;
+    for (Page page : pages) {
+      entries = entries + 1 + page.headings.size();
+    }
+    NumberFormat numberFormat = NumberFormat.getInstance();
+    double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+    report.println(Headout.PROGRAM_NAME + " site ToC: "
+        + numberFormat.format(pages.size()) + " pages, "
+        + numberFormat.format(entries - pages.size()) + " headings, "
+        + numberFormat.format(seconds) + " seconds, "
+        + String.valueOf(threads) + " threads");
+  }
+  
+  /**
+   Find the headings within one page. Runs on the scanning pool. 
+  
+   @param file The page to be scanned. 
+   @return The page, with its headings, or with a message if it could 
+           not be read. 
+  */
+  private Page scanPage(Path file) {
+    Page page = new Page(file);
+    page.href = toHref(siteDir.relativize(file));
+    List<Heading> all;
+    try {
+      if (options.isIndexing()) {
+        all = HeadingIndex.forFile(file.toFile()).getHeadings();
+      } else {
+        all = HeadingIndex.build(file.toFile()).getHeadings();
+      }
+    } catch (IOException e) {
+      page.message = "Could not be read: " + e.getMessage();
+      return page;
+    } catch (RuntimeException e) {
+      page.message = e.toString();
+      return page;
+    }
+    
+    int topLevel = TransformOptions.MAX_HEADING_LEVEL + 1;
+    int atTopLevel = 0;
+    HeadingIDs ids = new HeadingIDs();
+    for (Heading heading : all) {
+      heading = ids.assign(heading);
+      if (options.inRange(heading.getLevel())
+          && TocWriter.isTocEntry(heading.getID())) {
+        page.headings.add(heading);
+        if (heading.getLevel() < topLevel) {
+          topLevel = heading.getLevel();
+          atTopLevel = 1;
+        }
+        else
+        if (heading.getLevel() == topLevel) {
+          atTopLevel++;
+        }
+      }
+    } // end for each heading in the page
+    
+    if (page.headings.size() > 0
+        && page.headings.get(0).getLevel() == topLevel
+        && atTopLevel == 1) {
+      page.title = page.headings.remove(0).getText();
+      topLevel = TransformOptions.MAX_HEADING_LEVEL + 1;
+      for (Heading heading : page.headings) {
+        topLevel = Math.min(topLevel, heading.getLevel());
+      }
+    } else {
+      page.title = file.getFileName().toString();
+      int dot = page.title.lastIndexOf('.');
+      if (dot > 0) {
+        page.title = page.title.substring(0, dot);
+      }
+    }
+    page.topLevel = topLevel;
+    return page;
+  }
+  
+  /**
+   Turn a relative path into a link, with forward slashes, and with any 
+   characters not allowed in a URL escaped. 
+  
+   @param relative A path relative to the site directory. 
+   @return The path as a relative URL. 
+  */
+  private static String toHref(Path relative) {
+    StringBuilder path = new StringBuilder();
+    for (Path part : relative) {
+      if (path.length() > 0) {
+        path.append('/');
+      }
+      path.append(part.toString());
+    }
+    try {
+      return new URI(null, null, path.toString(), null).getRawPath();
+    } catch (URISyntaxException e) {
+      return path.toString();
+    }
+  }
+  
+  /**
+   Write the Table of Contents for the whole site. 
+  
+   @param lineWriter   The line writer to receive the output. 
+   @param markupFormat Either MarkupWriter.MARKDOWN_FORMAT or 
+                       MarkupWriter.HTML_FRAGMENT_FORMAT. 
+  */
+  public void writeToc(TextLineWriter lineWriter, int markupFormat) {
+    lineWriter.openForOutput();
+    TocWriter tocWriter = new TocWriter(lineWriter, markupFormat);
+    tocWriter.setCompact(options.isCompact());
+    tocWriter.start();
+    for (Page page : pages) {
+      tocWriter.addLink(1, page.href, null, page.title);
+      int shift = 2 - page.topLevel;
+      for (Heading heading : page.headings) {
+        tocWriter.addLink(heading.getLevel() + shift, 
+            page.href, heading.getID(), heading.getText());
+      }
+    } // end for each page
+    tocWriter.finish();
+    lineWriter.close();
+  }
+  
+  /**
+   Get the number of entries in the Table of Contents. 
+  
+   @return The number of pages, plus the number of headings beneath them. 
+  */
+  public int getEntries() {
+    return entries;
+  }
+  
+  /**
+   One page of the site, and the headings to be listed beneath it. 
+  */
+  static class Page {
+    Path          file;
+    String        href = "";
+    String        title = "";
+    List<Heading> headings = new ArrayList<>();
+    int           topLevel = 1;
+    String        message = null;
+    
+    Page(Path file) {
+      this.file = file;
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import java.lang.management.*;
+  import java.util.*;
+
+/**
+ Records how long each phase of starting up takes, so that the time it 
+ takes for the first window to appear can be watched, and any phase that 
+ grows can be spotted. Marking a phase costs next to nothing; the 
+ management classes needed to find out when the JVM itself was launched 
+ are only loaded when the timings are reported, which should be left 
+ until the first window is showing. 
+
+ @author Herb Bowie
+ */
+public class StartupTimer {
+  
+  private             long                startNanos;
+  private             long                startMillis;
+  private             long                lastNanos;
+  
+  private             List<String>        phases = new ArrayList<>();
+  private             List<Long>          phaseNanos = new ArrayList<>();
+  
+  /**
+   Start timing, as of now. 
+  */
+  public StartupTimer () {
+    startNanos = System.nanoTime();
+    startMillis = System.currentTimeMillis();
+    lastNanos = startNanos;
+  }
+  
+  /**
+   Note the end of a phase, which began when the last phase ended. 
+  
+   @param phase A brief name for the phase just ended. 
+  */
+  public void mark(String phase) {
+    long now = System.nanoTime();
+    phases.add(phase);
+    phaseNanos.add(now - lastNanos);
+    lastNanos = now;
+  }
+  
+  /**
+   Get the time from the launch of the JVM until the timer was started. 
+  
+   @return The time in milliseconds, or -1 if it cannot be determined. 
+  */
+  public long getLaunchMillis() {
+    try {
+      long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+      if (jvmStart > 0 && jvmStart <= startMillis) {
+        return startMillis - jvmStart;
+      }
+    } catch (RuntimeException e) {
+      // Management beans not available
+    }
+    return -1;
+  }
+  
+  /**
+   Get the total time for all the phases marked so far. 
+  
+   @return The elapsed time in milliseconds. 
+  */
+  public long getTotalMillis() {
+    return toMillis(lastNanos - startNanos);
+  }
+  
+  private static long toMillis(long nanos) {
+    return Math.round(nanos / 1000000.0);
+  }
+  
+  /**
+   Describe the timings in a single line, suitable for logging. 
+  
+   @return The time taken by the JVM launch and by each phase. 
+  */
+  public String toString() {
+    StringBuilder line = new StringBuilder("Startup timings: ");
+    long launch = getLaunchMillis();
+    if (launch >= 0) {
+      line.append("JVM launch ");
+      line.append(String.valueOf(launch));
+      line.append(" ms, ");
+    }
+    for (int i = 0; i < phases.size(); i++) {
+      line.append(phases.get(i));
+      line.append(" ");
+      line.append(String.valueOf(toMillis(phaseNanos.get(i))));
+      line.append(" ms, ");
+    }
+    line.append("total ");
+    line.append(String.valueOf(getTotalMillis()));
+    line.append(" ms");
+    return line.toString();
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+/**
+ A line reader that reads UTF-8 text from an input stream, such as
+ standard input. 
+
+ @author Herb Bowie
+ */
+public class StreamLineReader
+    implements TextLineReader {
+  
+  private             InputStream         inStream;
+  private             String              name;
+  
+  private             BufferedReader      bufferedReader = null;
+  private             String              nextLine = null;
+  
+  private             boolean             ok = true;
+  private             boolean             atEnd = false;
+  
+  /**
+   Construct a reader for the given stream. 
+  
+   @param inStream The stream to be read. 
+   @param name     A name identifying the source, for logging. 
+  */
+  public StreamLineReader (InputStream inStream, String name) {
+    this.inStream = inStream;
+    this.name = name;
+  }
+  
+  /**
+   Get ready to read lines. 
+  
+   @return True if everything is ok.
+  */
+  public boolean open() {
+    ok = true;
+    atEnd = false;
+    bufferedReader = new BufferedReader(
+        new InputStreamReader(inStream, StandardCharsets.UTF_8));
+    readAhead();
+    return ok;
+  }
+  
+  /**
+   Return the next line, or null at the end of the input. 
+  
+   @return The next line, without any line terminator. 
+  */
+  public String readLine() {
+    String line = nextLine;
+    if (line != null) {
+      readAhead();
+    }
+    return line;
+  }
+  
+  private void readAhead() {
+    try {
+      nextLine = bufferedReader.readLine();
+    } catch (IOException e) {
+      ok = false;
+      nextLine = null;
+    }
+    if (nextLine == null) {
+      atEnd = true;
+    }
+  }
+  
+  /**
+   Close the reader. A standard input stream is left open, for other 
+   parts of the process to use. 
+  
+   @return True if everything is ok.
+  */
+  public boolean close() {
+    if (bufferedReader != null && inStream != System.in) {
+      try {
+        bufferedReader.close();
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+    bufferedReader = null;
+    return ok;
+  }
+  
+  public boolean isOK() {
+    return ok;
+  }
+  
+  public boolean isAtEnd() {
+    return atEnd;
+  }
+  
+  public String toString() {
+    return name;
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+/**
+ A line writer that writes UTF-8 text to an output stream, such as 
+ standard output. 
+
+ @author Herb Bowie
+ */
+public class StreamLineWriter
+    implements 
+      TextLineWriter,
+      CharLineWriter {
+  
+  private             OutputStream        outStream;
+  private             String              name;
+  
+  private             Writer              writer = null;
+  
+  private             boolean             ok = true;
+  
+  /**
+   Construct a writer for the given stream. 
+  
+   @param outStream The stream to be written. 
+   @param name      A name identifying the destination, for logging. 
+  */
+  public StreamLineWriter (OutputStream outStream, String name) {
+    this.outStream = outStream;
+    this.name = name;
+  }
+  
+  public boolean openForOutput() {
+    ok = true;
+    writer = new BufferedWriter(
+        new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
+    return ok;
+  }
+  
+  public boolean newLine() {
+    return write("\n");
+  }
+  
+  public boolean writeLine(String s) {
+    return write(s) && newLine();
+  }
+  
+  public boolean write(String s) {
+    if (ok) {
+      try {
+        writer.write(s);
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+    return ok;
+  }
+  
+  public boolean write(char[] chars, int offset, int length) {
+    if (ok) {
+      try {
+        writer.write(chars, offset, length);
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+    return ok;
+  }
+  
+  public boolean flush() {
+    if (ok) {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+    return ok;
+  }
+  
+  /**
+   Flush and close the writer. Standard output and standard error are 
+   flushed but left open. 
+  
+   @return True if everything is ok.
+  */
+  public boolean close() {
+    if (writer == null) {
+      return ok;
+    }
+    flush();
+    if (outStream != System.out && outStream != System.err) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        ok = false;
+      }
+    }
+    writer = null;
+    return ok;
+  }
+  
+  public boolean isOK() {
+    return ok;
+  }
+  
+  public String getDestination() {
+    return name;
+  }
+  
+  public String toString() {
+    return name;
+  }
+
+}
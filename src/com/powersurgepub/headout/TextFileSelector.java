@@ -136,6 +136,15 @@ public class TextFileSelector {
     } // end if file identified
   }
   
+  /**
+   Return the file selected, if any. 
+  
+   @return The selected file, or null if the clipboard is to be used. 
+  */
+  public File getFile() {
+    return file;
+  }
+  
   /**
    Return a line reader, if one is available. 
   
@@ -149,7 +158,7 @@ public class TextFileSelector {
         if (file == null) {
           reader = new ClipboardReader();
         } else {
-          reader = new FileLineReader(file);
+          reader = MappedLineReader.getReader(file);
         }
         return reader;
       }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+
+/**
+ Presents an already opened line reader as a character stream, so that
+ input that does not come from a local file (the clipboard, or standard
+ input) can still be handed to an XML parser. Each line is followed by a
+ line feed.
+
+ @author Herb Bowie
+ */
+public class TextLineReaderInput
+    extends Reader {
+
+  private             TextLineReader      lineReader;
+
+  private             String              line = null;
+  private             int                 index = 0;
+  private             boolean             atEnd = false;
+
+  public TextLineReaderInput (TextLineReader lineReader) {
+    this.lineReader = lineReader;
+  }
+
+  /**
+   Read characters into a portion of an array.
+
+   @param cbuf Destination buffer.
+   @param off Offset at which to start storing characters.
+   @param len Maximum number of characters to read.
+   @return The number of characters read, or -1 at the end of the input.
+  */
+  public int read(char[] cbuf, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    int count = 0;
+    while (count < len && nextLineReady()) {
+      if (index < line.length()) {
+        int n = Math.min(len - count, line.length() - index);
+        line.getChars(index, index + n, cbuf, off + count);
+        index += n;
+        count += n;
+      } else {
+        cbuf[off + count] = '\n';
+        count++;
+        line = null;
+      }
+    } // end while room for more characters
+    if (count == 0) {
+      return -1;
+    } else {
+      return count;
+    }
+  }
+
+  /**
+   Make sure we have a line in progress, if any input remains.
+
+   @return True if a line is available, false at the end of the input.
+  */
+  private boolean nextLineReady() {
+    if (line != null) {
+      return true;
+    }
+    if (atEnd) {
+      return false;
+    }
+    if (lineReader.isAtEnd() || (! lineReader.isOK())) {
+      atEnd = true;
+      return false;
+    }
+    line = lineReader.readLine();
+    index = 0;
+    if (line == null) {
+      atEnd = true;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   The underlying line reader is left for its owner to close.
+  */
+  public void close() {
+    line = null;
+    atEnd = true;
+  }
+
+}
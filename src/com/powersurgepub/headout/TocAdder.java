@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ Adds a Table of Contents to a Markdown document, using the psutils 
+ AddToCtoMarkdown transformation, so that the document is laid out just 
+ as it always has been, but with every heading given a unique ID. <p>
+
+ AddToCtoMarkdown gives each heading the ID the Markdown parser finds for 
+ it, so that two headings with the same text get the same ID, and links 
+ to the second one lead to the first. Its output is therefore held, in 
+ memory or, if streaming was requested, in a temporary spool file, and 
+ then read twice: once to find the ID of every HTML heading it wrote, 
+ which is made unique in the same way as by HeadingIDs, and once to copy 
+ the document to the output, with the IDs of repeated headings, and the 
+ links to them within the Table of Contents, given their numeric 
+ suffixes. Headings and links whose IDs are not repeated are copied 
+ exactly as written. 
+
+ @author Herb Bowie
+ */
+public class TocAdder {
+  
+  private     static  final String        TOC_START = "<div id=\"toc\">";
+  private     static  final String        TOC_END   = "</div>";
+  private     static  final String        LINK      = "href=\"#";
+  
+  private             TransformOptions    options;
+  
+  private             MemoryLineWriter    memoryWriter = null;
+  private             File                spoolFile = null;
+  
+  /** The unique ID of each heading, in document order. */
+  private             List<String>        headingIDs = new ArrayList<>();
+  
+  /** 
+   For each ID written by AddToCtoMarkdown, the unique IDs of the headings 
+   within the ToC's range of levels that were given it, in document order, 
+   to be handed out to the ToC's links in turn. 
+  */
+  private             Map<String, Deque<String>> tocIDs = new HashMap<>();
+  
+  /** The character fencing the code block being read, or zero if none. */
+  private             char                fence = 0;
+  
+  /**
+   Prepare to add Tables of Contents. 
+  
+   @param options The heading levels to be included, and whether the 
+                  document should be spooled to a file rather than held 
+                  in memory. 
+  */
+  public TocAdder (TransformOptions options) {
+    this.options = options;
+  }
+  
+  /**
+   Copy the Markdown to the output, with its headings converted to HTML 
+   with unique IDs, and with a Table of Contents following its 'Table of 
+   Contents' heading. 
+  
+   @param reader     The Markdown input. 
+   @param lineWriter Where the Markdown with its ToC should go. 
+   @throws TransformException If the document could not be held back. 
+  */
+  public void transformNow(TextLineReader reader, TextLineWriter lineWriter) 
+      throws TransformException {
+    
+    TransformMetrics.startStage("add-toc");
+    AddToCtoMarkdown addToC = new AddToCtoMarkdown();
+    addToC.transformNow(reader, openSpool(), 
+        options.getStartHeadingLevel(), options.getEndHeadingLevel());
+    
+    TransformMetrics.startStage("unique-ids");
+    try {
+      findHeadings();
+      copyWithUniqueIDs(lineWriter);
+    } finally {
+      deleteSpool();
+      headingIDs.clear();
+      tocIDs.clear();
+    }
+  }
+  
+  /**
+   Open a writer to hold the output of AddToCtoMarkdown. If a spool file 
+   was requested but cannot be created, the output is held in memory. 
+  
+   @return The writer for the held output. 
+  */
+  private TextLineWriter openSpool() {
+    memoryWriter = null;
+    spoolFile = null;
+    if (options.isStreaming()) {
+      try {
+        spoolFile = File.createTempFile("headout", ".md");
+        spoolFile.deleteOnExit();
+        return new StreamLineWriter(
+            new FileOutputStream(spoolFile), spoolFile.toString());
+      } catch (IOException e) {
+        deleteSpool();
+      }
+    }
+    memoryWriter = new MemoryLineWriter();
+    return memoryWriter;
+  }
+  
+  /**
+   Open a reader for the held output, from its beginning. 
+  
+   @return The reader, already opened. 
+   @throws TransformException If the spool file cannot be read. 
+  */
+  private TextLineReader readSpool() 
+      throws TransformException {
+    
+    TextLineReader spoolReader;
+    if (spoolFile == null) {
+      String held = memoryWriter.toString();
+      TransformMetrics.noteBufferSize(held.length());
+      spoolReader = new StringLineReader(held);
+    } else {
+      try {
+        spoolReader = new StreamLineReader(
+            new FileInputStream(spoolFile), spoolFile.toString());
+      } catch (IOException e) {
+        throw new TransformException("Could not read spool file");
+      }
+    }
+    if (! spoolReader.open()) {
+      throw new TransformException("Could not read spool file");
+    }
+    fence = 0;
+    return spoolReader;
+  }
+  
+  private void deleteSpool() {
+    if (spoolFile != null) {
+      spoolFile.delete();
+      spoolFile = null;
+    }
+    memoryWriter = null;
+  }
+  
+  /**
+   Find every HTML heading written by AddToCtoMarkdown, and give each one 
+   a unique ID. 
+  
+   @throws TransformException If the held output cannot be read. 
+  */
+  private void findHeadings() 
+      throws TransformException {
+    
+    HeadingIDs ids = new HeadingIDs();
+    TextLineReader spoolReader = readSpool();
+    String line = nextLine(spoolReader);
+    while (line != null) {
+      int idStart = getHeadingIDStart(line);
+      if (idStart > 0) {
+        int idEnd = line.indexOf('"', idStart);
+        String id = line.substring(idStart, idEnd);
+        String uniqueID = ids.unique(id);
+        headingIDs.add(uniqueID);
+        int level = line.charAt(2) - '0';
+        if (options.inRange(level)) {
+          Deque<String> linked = tocIDs.get(id);
+          if (linked == null) {
+            linked = new ArrayDeque<>();
+            tocIDs.put(id, linked);
+          }
+          linked.add(uniqueID);
+        }
+      }
+      line = nextLine(spoolReader);
+    } // end while more lines held
+    spoolReader.close();
+  }
+  
+  /**
+   Copy the held output to its final destination, replacing the IDs of 
+   repeated headings, and the links to them from the Table of Contents. 
+  
+   @param lineWriter The final output. 
+   @throws TransformException If the held output cannot be read. 
+  */
+  private void copyWithUniqueIDs(TextLineWriter lineWriter) 
+      throws TransformException {
+    
+    TextLineReader spoolReader = readSpool();
+    lineWriter.openForOutput();
+    int heading = 0;
+    boolean inToc = false;
+    boolean tocDone = false;
+    String line = nextLine(spoolReader);
+    while (line != null) {
+      int idStart = getHeadingIDStart(line);
+      if (idStart > 0) {
+        int idEnd = line.indexOf('"', idStart);
+        String uniqueID = headingIDs.get(heading++);
+        if (! line.startsWith(uniqueID, idStart) 
+            || idEnd != idStart + uniqueID.length()) {
+          line = line.substring(0, idStart) + uniqueID + line.substring(idEnd);
+        }
+      }
+      else
+      if (fence == 0 && ! tocDone && line.startsWith(TOC_START)) {
+        inToc = true;
+      }
+      else
+      if (inToc && line.startsWith(TOC_END)) {
+        inToc = false;
+        tocDone = true;
+      }
+      else
+      if (inToc) {
+        line = relink(line);
+      }
+      lineWriter.writeLine(line);
+      line = nextLine(spoolReader);
+    } // end while more lines held
+    spoolReader.close();
+    lineWriter.close();
+  }
+  
+  /**
+   Point each link within a line of the Table of Contents to the unique ID 
+   of the heading it stands for. 
+  
+   @param line A line of the ToC. 
+   @return The line, with any links changed. 
+  */
+  private String relink(String line) {
+    int linkStart = line.indexOf(LINK);
+    while (linkStart >= 0) {
+      int idStart = linkStart + LINK.length();
+      int idEnd = line.indexOf('"', idStart);
+      if (idEnd < 0) {
+        break;
+      }
+      String id = line.substring(idStart, idEnd);
+      Deque<String> linked = tocIDs.get(id);
+      if (linked != null && ! linked.isEmpty()) {
+        String uniqueID = linked.removeFirst();
+        if (! uniqueID.equals(id)) {
+          line = line.substring(0, idStart) + uniqueID + line.substring(idEnd);
+          idEnd = idStart + uniqueID.length();
+        }
+      }
+      linkStart = line.indexOf(LINK, idEnd);
+    }
+    return line;
+  }
+  
+  /**
+   Is this one of the HTML headings written by AddToCtoMarkdown, outside 
+   of any fenced code block? Fences are tracked as a side effect, so every 
+   line must be passed here, in order. 
+  
+   @param line A line of the held output. 
+   @return The index at which the heading's ID starts, or zero if the line 
+           is not such a heading. 
+  */
+  private int getHeadingIDStart(String line) {
+    if (isFence(line)) {
+      return 0;
+    }
+    if (fence == 0
+        && line.length() > 8
+        && line.startsWith("<h")
+        && line.charAt(2) >= '1' 
+        && line.charAt(2) <= '6'
+        && line.startsWith(" id=\"", 3)
+        && line.indexOf('"', 8) > 0) {
+      return 8;
+    } else {
+      return 0;
+    }
+  }
+  
+  /**
+   Note the start or end of a fenced code block. 
+  
+   @param line A line of the held output. 
+   @return True if the line opens or closes a fenced code block. 
+  */
+  private boolean isFence(String line) {
+    int i = 0;
+    while (i < 3 && i < line.length() && line.charAt(i) == ' ') {
+      i++;
+    }
+    if (line.startsWith("```", i) || line.startsWith("~~~", i)) {
+      char c = line.charAt(i);
+      if (fence == 0) {
+        fence = c;
+        return true;
+      }
+      else
+      if (fence == c) {
+        fence = 0;
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  private static String nextLine(TextLineReader reader) {
+    if (reader.isAtEnd() || (! reader.isOK())) {
+      return null;
+    } else {
+      return reader.readLine();
+    }
+  }
+
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2014 - 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+  import com.powersurgepub.psutils2.txbio.*;
+
+/**
+ Writes a Table of Contents, one heading at a time, as either a nested
+ Markdown list or an HTML fragment. The caller is responsible for opening
+ and closing the line writer, so that a Table of Contents may be written
+ into the middle of a larger document. <p>
+
+ HTML is written through a MarkupWriter, just as it always has been, so 
+ that its layout is unchanged, unless compact output is requested. 
+ Markdown, and compact HTML, are instead assembled a line at a time in a 
+ reusable character buffer and handed straight to the line writer. If 
+ the line writer accepts characters directly (see CharLineWriter), then 
+ nothing at all is allocated once the buffer has grown to the length of 
+ the longest line; otherwise one String is created per line. Compact 
+ HTML puts each list item on a single line, without any indentation. 
+ Within HTML, the characters &amp;, &lt;, &gt; and &quot; are written as 
+ character references, both in links and in their text.
+
+ @author Herb Bowie
+ */
+public class TocWriter {
+
+  private     static  final int           INDENT_PER_LEVEL = 2;
+
+  private             TextLineWriter      lineWriter;
+  private             CharLineWriter      charWriter = null;
+  
+  /** Writes HTML, unless compact output was requested. */
+  private             MarkupWriter        markupWriter = null;
+  private             int                 markupFormat;
+  private             boolean             compact = false;
+
+  private             int                 firstHeadingLevel = 0;
+  private             int                 lastHeadingLevel = 1;
+
+  /**
+   Open list items, indexed by level. One level beyond the deepest heading
+   is allowed, so that headings may be nested beneath an entry for the
+   page they came from.
+  */
+  private             boolean[]           listItemOpen
+      = new boolean[TransformOptions.MAX_HEADING_LEVEL + 2];
+
+  private             int                 entries = 0;
+
+  private             char[]              buffer = new char[256];
+  private             int                 length = 0;
+
+  /** Is a list item's line still waiting for its end tag, or a nested list? */
+  private             boolean             itemLinePending = false;
+
+  /**
+   Prepare to write a Table of Contents.
+
+   @param lineWriter   The line writer to receive the output, already
+                       opened by the caller.
+   @param markupFormat Either MarkupWriter.MARKDOWN_FORMAT or
+                       MarkupWriter.HTML_FRAGMENT_FORMAT.
+  */
+  public TocWriter (TextLineWriter lineWriter, int markupFormat) {
+    this.lineWriter = lineWriter;
+    if (lineWriter instanceof CharLineWriter) {
+      charWriter = (CharLineWriter)lineWriter;
+    }
+    this.markupFormat = markupFormat;
+  }
+
+  /**
+   Request compact output: HTML with each list item on a line of its own, 
+   without any indentation. Markdown is not affected, since its 
+   indentation is what nests the list.
+
+   @param compact True for compact output.
+  */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  /**
+   Should a heading with the given ID appear in a Table of Contents? The
+   heading for the Table of Contents itself is left out.
+
+   @param id The heading's ID.
+   @return True if the heading should be listed.
+  */
+  public static boolean isTocEntry(String id) {
+    return id.length() > 0
+        && (! id.equals("tableofcontents"))
+        && (! id.equals("contents"));
+  }
+
+  /**
+   Is this the heading after which a Table of Contents should be inserted?
+
+   @param id The heading's ID.
+   @return True if the heading is titled 'Table of Contents'.
+  */
+  public static boolean isTocHeading(String id) {
+    return id.equals("tableofcontents")
+        || id.equals("table-of-contents");
+  }
+
+  /**
+   Start the Table of Contents.
+  */
+  public void start() {
+    firstHeadingLevel = 0;
+    lastHeadingLevel = 1;
+    entries = 0;
+    length = 0;
+    itemLinePending = false;
+    for (int i = 0; i < listItemOpen.length; i++) {
+      listItemOpen[i] = false;
+    }
+    markupWriter = null;
+    if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
+      if (compact) {
+        startTagLine();
+        append("<div id=\"toc\">");
+        endLine();
+      } else {
+        markupWriter = new MarkupWriter(lineWriter, markupFormat);
+        markupWriter.setIndenting(true);
+        markupWriter.setIndentPerLevel(INDENT_PER_LEVEL);
+        markupWriter.startDiv("", "toc");
+      }
+      startUnorderedList();
+    }
+  }
+
+  /**
+   Add one heading to the Table of Contents.
+
+   @param heading The heading to be added.
+  */
+  public void addHeading(Heading heading) {
+    addHeading(heading.getLevel(), heading.getID(), heading.getText());
+  }
+
+  /**
+   Add one heading to the Table of Contents.
+
+   @param headingLevel The heading level, from 1 through 6.
+   @param id           The ID to be linked to.
+   @param text         The text of the heading.
+  */
+  public void addHeading(int headingLevel, CharSequence id, CharSequence text) {
+    addLink(headingLevel, null, id, text);
+  }
+
+  /**
+   Add one entry to the Table of Contents, linking to a heading within
+   another page, or to the page itself.
+
+   @param headingLevel The level of the entry, from 1 through 7.
+   @param page         The page to be linked to, or null for this page.
+   @param id           The ID to be linked to, or null for the top of the
+                       page.
+   @param text         The text of the entry.
+  */
+  public void addLink(int headingLevel, CharSequence page, CharSequence id,
+      CharSequence text) {
+
+    if (firstHeadingLevel < 1) {
+      firstHeadingLevel = headingLevel;
+      lastHeadingLevel = headingLevel;
+    }
+
+    if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
+      // Write HTML
+      if (headingLevel > lastHeadingLevel) {
+        startUnorderedList();
+      } else {
+        if (headingLevel < lastHeadingLevel) {
+          int l = lastHeadingLevel;
+          while (l > headingLevel) {
+            if (listItemOpen[l]) {
+              endListItem();
+              endUnorderedList();
+              listItemOpen[l] = false;
+            }
+            l--;
+          } // end while higher (more deeply indented) lists still open
+        } else {
+          // No change in heading level
+          if (listItemOpen[headingLevel]) {
+            endListItem();
+            listItemOpen[headingLevel] = false;
+          }
+        }
+      } // end if new heading level less than or equal to last
+
+      if (listItemOpen[headingLevel]) {
+        endListItem();
+        listItemOpen[headingLevel] = false;
+      }
+      if (markupWriter == null) {
+        startTagLine();
+        append("<li><a href=\"");
+        appendHref(page, id, true);
+        append("\">");
+        appendEscaped(text, true);
+        append("</a>");
+        itemLinePending = true;
+      } else {
+        appendHref(page, id, true);
+        String link = new String(buffer, 0, length);
+        length = 0;
+        appendEscaped(text, true);
+        markupWriter.startListItem("");
+        markupWriter.startLink(link);
+        markupWriter.write(new String(buffer, 0, length));
+        markupWriter.endLink(link);
+        length = 0;
+      }
+      listItemOpen[headingLevel] = true;
+    } else {
+      // Write Markdown
+      int h = firstHeadingLevel;
+      while (h < headingLevel) {
+        append("    ");
+        h++;
+      }
+      append("* [");
+      append(text);
+      append("](");
+      appendHref(page, id, false);
+      append(")");
+      endLine();
+    } // end if markdown format
+    lastHeadingLevel = headingLevel;
+    entries++;
+  }
+
+  /**
+   Finish the Table of Contents, closing any lists still open.
+  */
+  public void finish() {
+    if (markupFormat == MarkupWriter.HTML_FRAGMENT_FORMAT) {
+      int l = lastHeadingLevel;
+      while (l >= firstHeadingLevel) {
+        if (listItemOpen[l]) {
+          endListItem();
+          endUnorderedList();
+          listItemOpen[l] = false;
+        }
+        l--;
+      } // end while higher (more deeply indented) lists still open
+      if (markupWriter == null) {
+        if (firstHeadingLevel < 1) {
+          // No entries at all, so the outer list is still open
+          endUnorderedList();
+        }
+        startTagLine();
+        append("</div>");
+        endLine();
+      } else {
+        markupWriter.endDiv();
+        markupWriter = null;
+      }
+    }
+  }
+
+  /**
+   Get the number of entries written.
+
+   @return The number of headings added since the start.
+  */
+  public int getEntries() {
+    return entries;
+  }
+
+  private void startUnorderedList() {
+    if (markupWriter != null) {
+      markupWriter.startUnorderedList("");
+    } else {
+      startTagLine();
+      append("<ul>");
+      endLine();
+    }
+  }
+
+  private void endUnorderedList() {
+    if (markupWriter != null) {
+      markupWriter.endUnorderedList();
+    } else {
+      startTagLine();
+      append("</ul>");
+      endLine();
+    }
+  }
+
+  private void endListItem() {
+    if (markupWriter != null) {
+      markupWriter.endListItem();
+    }
+    else
+    if (itemLinePending) {
+      // Nothing nested, so close the item on the same line
+      append("</li>");
+      endLine();
+      itemLinePending = false;
+    } else {
+      startTagLine();
+      append("</li>");
+      endLine();
+    }
+  }
+
+  /**
+   Start a new line of compact HTML, finishing any list item line still 
+   pending.
+  */
+  private void startTagLine() {
+    if (itemLinePending) {
+      endLine();
+      itemLinePending = false;
+    }
+  }
+
+  private void appendHref(CharSequence page, CharSequence id, boolean html) {
+    if (page != null) {
+      if (html) {
+        appendEscaped(page, false);
+      } else {
+        append(page);
+      }
+    }
+    if (id != null) {
+      append('#');
+      if (html) {
+        appendEscaped(id, false);
+      } else {
+        append(id);
+      }
+    }
+  }
+
+  /**
+   Append text to HTML, replacing markup characters with character
+   references. Within link text, taken from Markdown, entity and
+   character references already present are kept, as the Markdown parser
+   keeps them; within an attribute value, every ampersand is escaped.
+
+   @param s            The text to be appended.
+   @param keepEntities True to keep existing references.
+  */
+  private void appendEscaped(CharSequence s, boolean keepEntities) {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      String replacement = MarkupEscaper.replacementFor(s, i, keepEntities);
+      if (replacement == null) {
+        append(s.charAt(i));
+      } else {
+        append(replacement);
+      }
+    }
+  }
+
+  private void append(char c) {
+    if (length >= buffer.length) {
+      grow(length + 1);
+    }
+    buffer[length++] = c;
+  }
+
+  private void append(CharSequence s) {
+    int n = s.length();
+    if (length + n > buffer.length) {
+      grow(length + n);
+    }
+    if (s instanceof String) {
+      ((String)s).getChars(0, n, buffer, length);
+    } else {
+      for (int i = 0; i < n; i++) {
+        buffer[length + i] = s.charAt(i);
+      }
+    }
+    length = length + n;
+  }
+
+  private void grow(int needed) {
+    char[] larger = new char[Math.max(needed, buffer.length * 2)];
+    System.arraycopy(buffer, 0, larger, 0, length);
+    buffer = larger;
+  }
+
+  /**
+   Pass the line in the buffer to the line writer, and empty the buffer.
+  */
+  private void endLine() {
+    if (charWriter != null) {
+      charWriter.write(buffer, 0, length);
+      lineWriter.newLine();
+    } else {
+      lineWriter.writeLine(new String(buffer, 0, length));
+    }
+    length = 0;
+  }
+
+}
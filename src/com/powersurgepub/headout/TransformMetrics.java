@@ -0,0 +1,519 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import java.io.*;
+  import java.lang.management.*;
+  import java.nio.charset.*;
+  import java.text.*;
+  import java.util.*;
+
+/**
+ Measurements taken during a single transformation: wall and CPU time, 
+ and bytes allocated, for the transformation as a whole and for each of 
+ its stages, along with the lines and characters read and written, the 
+ headings emitted, and the largest interim buffer held in memory. <p>
+
+ A transformer need not be handed a metrics object: while a measured 
+ transformation is running (see MeasuredTransformer), its metrics are 
+ the current metrics for the thread doing the work, and the static 
+ methods here record stages and counts against them. When a flight 
+ recording is under way, each stage is also recorded as a JFR event (see 
+ HeadoutEvents). When no transformation is being measured or recorded, 
+ those methods do nothing. <p>
+
+ CPU time and allocation are measured only for the thread performing the 
+ transformation, and allocation only where the JVM supports it; otherwise 
+ they are reported as -1. Time spent reading and writing is measured 
+ around each line, and so is wall time only. 
+
+ @author Herb Bowie
+ */
+public class TransformMetrics {
+  
+  /** Column names for CSV output, matching toCSV. */
+  public      static  final String        CSV_HEADER 
+      = "started,transform,source,ok,wall_ms,cpu_ms,allocated_bytes,"
+      + "read_ms,write_ms,lines_in,chars_in,lines_out,chars_out,"
+      + "headings,peak_buffer_chars,stages";
+  
+  private     static  final ThreadLocal<TransformMetrics> CURRENT 
+      = new ThreadLocal<>();
+  
+  private     static  final ThreadMXBean  threads 
+      = ManagementFactory.getThreadMXBean();
+  
+  private             String              transform;
+  private             String              source;
+  private             long                startedMillis = 0;
+  private             boolean             ok = false;
+  
+  private             Sample              total = new Sample();
+  private             Map<String, Sample> stages = new LinkedHashMap<>();
+  private             String              stageName = null;
+  private             Sample              stage = null;
+  
+  private             boolean             recording = false;
+  private             HeadoutEvents.Stage stageEvent = null;
+  
+  private             long                readNanos = 0;
+  private             long                writeNanos = 0;
+  private             long                linesIn = 0;
+  private             long                charsIn = 0;
+  private             long                linesOut = 0;
+  private             long                charsOut = 0;
+  private             long                headings = 0;
+  private             long                peakBufferChars = 0;
+  
+  /**
+   Prepare to measure a transformation. 
+  
+   @param transform A description of the transformation. 
+   @param source    The input being transformed. 
+  */
+  public TransformMetrics (String transform, String source) {
+    this.transform = transform;
+    this.source = source;
+  }
+  
+  /**
+   Get the metrics being collected on the current thread. 
+  
+   @return The current metrics, or null if nothing is being measured. 
+  */
+  public static TransformMetrics current() {
+    return CURRENT.get();
+  }
+  
+  /**
+   Start a stage of the current transformation, ending any stage already 
+   under way. 
+  
+   @param name The name of the stage, such as 'parse' or 'toc'. 
+  */
+  public static void startStage(String name) {
+    TransformMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      metrics.endCurrentStage();
+      metrics.stageName = name;
+      metrics.stage = new Sample();
+      metrics.stage.begin();
+      if (metrics.recording) {
+        metrics.stageEvent = new HeadoutEvents.Stage();
+        metrics.stageEvent.begin();
+      }
+    }
+  }
+  
+  /**
+   End the stage of the current transformation now under way, if any. 
+  */
+  public static void endStage() {
+    TransformMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      metrics.endCurrentStage();
+    }
+  }
+  
+  /**
+   Count headings emitted by the current transformation. 
+  
+   @param count The number of headings emitted. 
+  */
+  public static void addHeadings(long count) {
+    TransformMetrics metrics = CURRENT.get();
+    if (metrics != null) {
+      metrics.headings = metrics.headings + count;
+    }
+  }
+  
+  /**
+   Note the size of an interim buffer held by the current transformation. 
+  
+   @param chars The number of characters held. 
+  */
+  public static void noteBufferSize(long chars) {
+    TransformMetrics metrics = CURRENT.get();
+    if (metrics != null && chars > metrics.peakBufferChars) {
+      metrics.peakBufferChars = chars;
+    }
+  }
+  
+  /**
+   Should each stage also be recorded as a flight recorder event? 
+  
+   @param recording True if a flight recording is under way. 
+  */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+  
+  /**
+   Start measuring, making these the current metrics for this thread. 
+  */
+  public void begin() {
+    startedMillis = System.currentTimeMillis();
+    CURRENT.set(this);
+    total.begin();
+  }
+  
+  /**
+   Stop measuring. 
+  
+   @param ok True if the transformation succeeded. 
+  */
+  public void end(boolean ok) {
+    endCurrentStage();
+    total.end();
+    this.ok = ok;
+    CURRENT.remove();
+  }
+  
+  private void endCurrentStage() {
+    if (stageEvent != null) {
+      stageEvent.end();
+      if (stageEvent.shouldCommit()) {
+        stageEvent.stage = stageName;
+        stageEvent.transformType = transform;
+        stageEvent.source = source;
+        stageEvent.commit();
+      }
+      stageEvent = null;
+    }
+    if (stage != null) {
+      stage.end();
+      Sample prior = stages.get(stageName);
+      if (prior == null) {
+        stages.put(stageName, stage);
+      } else {
+        prior.add(stage);
+      }
+      stage = null;
+      stageName = null;
+    }
+  }
+  
+  void addReadNanos(long nanos) {
+    readNanos = readNanos + nanos;
+  }
+  
+  void addWriteNanos(long nanos) {
+    writeNanos = writeNanos + nanos;
+  }
+  
+  void setInput(long lines, long chars) {
+    linesIn = lines;
+    charsIn = chars;
+  }
+  
+  void setOutput(long lines, long chars) {
+    linesOut = lines;
+    charsOut = chars;
+  }
+  
+  public boolean isOK() {
+    return ok;
+  }
+  
+  public long getWallNanos() {
+    return total.wallNanos;
+  }
+  
+  public long getCpuNanos() {
+    return total.cpuNanos;
+  }
+  
+  public long getAllocatedBytes() {
+    return total.allocatedBytes;
+  }
+  
+  public long getLinesIn() {
+    return linesIn;
+  }
+  
+  public long getLinesOut() {
+    return linesOut;
+  }
+  
+  public long getHeadings() {
+    return headings;
+  }
+  
+  public long getPeakBufferChars() {
+    return peakBufferChars;
+  }
+  
+  /**
+   Describe the measurements in a few lines, suitable for a log. 
+  
+   @return One line for the whole transformation, one for its input and 
+           output, and one for each stage. 
+  */
+  public List<String> toLogLines() {
+    NumberFormat numberFormat = NumberFormat.getInstance();
+    List<String> lines = new ArrayList<>();
+    lines.add("Metrics for " + transform + " of " + source + ": "
+        + total.describe(numberFormat));
+    lines.add("  read " + millis(readNanos, numberFormat) + " ms, write " 
+        + millis(writeNanos, numberFormat) + " ms; "
+        + numberFormat.format(linesIn) + " lines ("
+        + numberFormat.format(charsIn) + " chars) in, "
+        + numberFormat.format(linesOut) + " lines ("
+        + numberFormat.format(charsOut) + " chars) out; "
+        + numberFormat.format(headings) + " headings; peak buffer "
+        + numberFormat.format(peakBufferChars) + " chars");
+    for (Map.Entry<String, Sample> entry : stages.entrySet()) {
+      lines.add("  stage " + entry.getKey() + ": " 
+          + entry.getValue().describe(numberFormat));
+    }
+    return lines;
+  }
+  
+  /**
+   Format the measurements as a single JSON object. 
+  
+   @return A JSON object, on one line. 
+  */
+  public String toJSON() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"started\":").append(startedMillis);
+    json.append(",\"transform\":");
+    appendJSONString(json, transform);
+    json.append(",\"source\":");
+    appendJSONString(json, source);
+    json.append(",\"ok\":").append(ok);
+    json.append(",\"wallNanos\":").append(total.wallNanos);
+    json.append(",\"cpuNanos\":").append(total.cpuNanos);
+    json.append(",\"allocatedBytes\":").append(total.allocatedBytes);
+    json.append(",\"readNanos\":").append(readNanos);
+    json.append(",\"writeNanos\":").append(writeNanos);
+    json.append(",\"linesIn\":").append(linesIn);
+    json.append(",\"charsIn\":").append(charsIn);
+    json.append(",\"linesOut\":").append(linesOut);
+    json.append(",\"charsOut\":").append(charsOut);
+    json.append(",\"headings\":").append(headings);
+    json.append(",\"peakBufferChars\":").append(peakBufferChars);
+    json.append(",\"stages\":[");
+    boolean first = true;
+    for (Map.Entry<String, Sample> entry : stages.entrySet()) {
+      if (! first) {
+        json.append(',');
+      }
+      first = false;
+      Sample sample = entry.getValue();
+      json.append("{\"name\":");
+      appendJSONString(json, entry.getKey());
+      json.append(",\"wallNanos\":").append(sample.wallNanos);
+      json.append(",\"cpuNanos\":").append(sample.cpuNanos);
+      json.append(",\"allocatedBytes\":").append(sample.allocatedBytes);
+      json.append('}');
+    }
+    json.append("]}");
+    return json.toString();
+  }
+  
+  /**
+   Format the measurements as a line of comma-separated values, with 
+   columns as named in CSV_HEADER. Stages are packed into the last column 
+   as name:wall_ms:cpu_ms:allocated_bytes, separated by semicolons. 
+  
+   @return One line of CSV. 
+  */
+  public String toCSV() {
+    StringBuilder csv = new StringBuilder();
+    csv.append(startedMillis).append(',');
+    appendCSVField(csv, transform);
+    csv.append(',');
+    appendCSVField(csv, source);
+    csv.append(',').append(ok);
+    csv.append(',').append(total.wallNanos / 1000000);
+    csv.append(',').append(toMillis(total.cpuNanos));
+    csv.append(',').append(total.allocatedBytes);
+    csv.append(',').append(readNanos / 1000000);
+    csv.append(',').append(writeNanos / 1000000);
+    csv.append(',').append(linesIn);
+    csv.append(',').append(charsIn);
+    csv.append(',').append(linesOut);
+    csv.append(',').append(charsOut);
+    csv.append(',').append(headings);
+    csv.append(',').append(peakBufferChars);
+    csv.append(',');
+    StringBuilder packed = new StringBuilder();
+    for (Map.Entry<String, Sample> entry : stages.entrySet()) {
+      if (packed.length() > 0) {
+        packed.append(';');
+      }
+      Sample sample = entry.getValue();
+      packed.append(entry.getKey())
+          .append(':').append(sample.wallNanos / 1000000)
+          .append(':').append(toMillis(sample.cpuNanos))
+          .append(':').append(sample.allocatedBytes);
+    }
+    appendCSVField(csv, packed.toString());
+    return csv.toString();
+  }
+  
+  /**
+   Append these metrics to a file: as JSON, one object per line, if the 
+   file name ends with '.json' or '.jsonl', or else as CSV, with a header 
+   line written first if the file is new or empty. Several threads may 
+   append to the same file at once. 
+  
+   @param file The file to receive the metrics. 
+   @throws IOException If the file cannot be written. 
+  */
+  public void appendTo(File file) 
+      throws IOException {
+    String name = file.getName().toLowerCase();
+    boolean json = name.endsWith(".json") || name.endsWith(".jsonl");
+    synchronized (TransformMetrics.class) {
+      boolean needHeader = (! json) && file.length() == 0;
+      try (Writer out = new OutputStreamWriter(
+          new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+        if (needHeader) {
+          out.write(CSV_HEADER);
+          out.write('\n');
+        }
+        if (json) {
+          out.write(toJSON());
+        } else {
+          out.write(toCSV());
+        }
+        out.write('\n');
+      }
+    }
+  }
+  
+  private static long toMillis(long nanos) {
+    if (nanos < 0) {
+      return -1;
+    } else {
+      return nanos / 1000000;
+    }
+  }
+  
+  private static String millis(long nanos, NumberFormat numberFormat) {
+    if (nanos < 0) {
+      return "n/a";
+    } else {
+      return numberFormat.format(nanos / 1000000.0);
+    }
+  }
+  
+  private static void appendJSONString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      }
+      else
+      if (c < ' ') {
+        json.append(String.format("\\u%04x", (int)c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+  
+  private static void appendCSVField(StringBuilder csv, String value) {
+    if (value.indexOf(',') >= 0 
+        || value.indexOf('"') >= 0 
+        || value.indexOf('\n') >= 0) {
+      csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    } else {
+      csv.append(value);
+    }
+  }
+  
+  /**
+   Wall time, CPU time and allocation, for the whole transformation or 
+   for a single stage. 
+  */
+  static class Sample {
+    long    wallNanos = 0;
+    long    cpuNanos = -1;
+    long    allocatedBytes = -1;
+    
+    private long    wallStart = 0;
+    private long    cpuStart = -1;
+    private long    allocatedStart = -1;
+    
+    void begin() {
+      wallStart = System.nanoTime();
+      cpuStart = cpuTime();
+      allocatedStart = allocated();
+    }
+    
+    void end() {
+      wallNanos = System.nanoTime() - wallStart;
+      long cpuEnd = cpuTime();
+      if (cpuStart >= 0 && cpuEnd >= 0) {
+        cpuNanos = cpuEnd - cpuStart;
+      }
+      long allocatedEnd = allocated();
+      if (allocatedStart >= 0 && allocatedEnd >= 0) {
+        allocatedBytes = allocatedEnd - allocatedStart;
+      }
+    }
+    
+    void add(Sample other) {
+      wallNanos = wallNanos + other.wallNanos;
+      if (cpuNanos >= 0 && other.cpuNanos >= 0) {
+        cpuNanos = cpuNanos + other.cpuNanos;
+      }
+      if (allocatedBytes >= 0 && other.allocatedBytes >= 0) {
+        allocatedBytes = allocatedBytes + other.allocatedBytes;
+      }
+    }
+    
+    String describe(NumberFormat numberFormat) {
+      StringBuilder text = new StringBuilder();
+      text.append(millis(wallNanos, numberFormat)).append(" ms wall, ");
+      text.append(millis(cpuNanos, numberFormat)).append(" ms CPU, ");
+      if (allocatedBytes < 0) {
+        text.append("n/a");
+      } else {
+        text.append(numberFormat.format(allocatedBytes));
+      }
+      text.append(" bytes allocated");
+      return text.toString();
+    }
+    
+    private static long cpuTime() {
+      if (threads.isCurrentThreadCpuTimeSupported()) {
+        return threads.getCurrentThreadCpuTime();
+      } else {
+        return -1;
+      }
+    }
+    
+    private static long allocated() {
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunThreads 
+            = (com.sun.management.ThreadMXBean)threads;
+        if (sunThreads.isThreadAllocatedMemorySupported() 
+            && sunThreads.isThreadAllocatedMemoryEnabled()) {
+          return sunThreads.getThreadAllocatedBytes(
+              Thread.currentThread().getId());
+        }
+      }
+      return -1;
+    }
+  }
+
+}
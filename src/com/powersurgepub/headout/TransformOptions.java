@@ -0,0 +1,368 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import java.io.*;
+
+/**
+ The user options governing a transformation, held apart from any
+ JavaFX controls so that transforms may also be run without a user interface.
+
+ @author Herb Bowie
+ */
+public class TransformOptions {
+
+  public static final int MARKDOWN_TOC_FROM_MARKDOWN  = 0;
+  public static final int HTML_TOC_FROM_MARKDOWN      = 1;
+  public static final int ADD_TOC_TO_MARKDOWN         = 2;
+  public static final int MARKDOWN_FROM_OPML          = 3;
+  public static final int EXTRACT_SECTION             = 4;
+  public static final int OPML_FROM_MARKDOWN          = 5;
+
+  /**
+   Full names for HeadOut's own transform types. Others may be added
+   through the TransformerRegistry, which should be consulted for the
+   complete list.
+  */
+  public static final String[] TRANSFORM_TYPES = {
+    "Create Markdown ToC from Markdown",
+    "Create HTML ToC from Markdown",
+    "Add ToC to Markdown",
+    "Create Markdown from OPML",
+    "Extract Section from Markdown",
+    "Create OPML from Markdown"
+  };
+
+  /** Short names for HeadOut's own transform types, for a command line. */
+  public static final String[] TRANSFORM_TYPE_NAMES = {
+    "md-toc",
+    "html-toc",
+    "add-toc",
+    "opml-md",
+    "section",
+    "md-opml"
+  };
+
+  public static final int MIN_HEADING_LEVEL = 1;
+  public static final int MAX_HEADING_LEVEL = 6;
+
+  private             int                 transformTypeIndex = 0;
+  private             String              transformTypeString = "";
+
+  /** Further transform types, to be applied in turn to this one's output. */
+  private             int[]               followingTypes = new int[0];
+
+  private             int                 startHeadingLevel = MIN_HEADING_LEVEL;
+  private             int                 endHeadingLevel   = MAX_HEADING_LEVEL;
+
+  private             boolean             streaming = false;
+  private             boolean             pullParsing = false;
+  private             boolean             compact = false;
+  private             boolean             indexing = false;
+
+  private             String              sectionPath = "";
+
+  private             boolean             measuring = false;
+  private             File                metricsFile = null;
+
+  /**
+   Construct options for one of the registered transform types.
+
+   @param transformTypeIndex Which transformation was requested?
+  */
+  public TransformOptions (int transformTypeIndex) {
+    this(transformTypeIndex,
+        TransformerRegistry.getShared().getTitle(transformTypeIndex));
+  }
+
+  /**
+   Construct options for a transformation.
+
+   @param transformTypeIndex Which transformation was requested?
+   @param transformTypeString What did we call it?
+  */
+  public TransformOptions (int transformTypeIndex, String transformTypeString) {
+    this.transformTypeIndex = transformTypeIndex;
+    this.transformTypeString = transformTypeString;
+  }
+
+  /**
+   Find a transform type given its index, its short name or its full name.
+
+   @param type The index, short name or full name of a transform type.
+   @return The matching index, or -1 if no match.
+  */
+  public static int lookupTransformType(String type) {
+    return TransformerRegistry.getShared().lookup(type);
+  }
+
+  public int getTransformTypeIndex() {
+    return transformTypeIndex;
+  }
+
+  public String getTransformTypeString() {
+    return transformTypeString;
+  }
+
+  /**
+   Chain further transformations after this one, each taking the output
+   of the one before as its input.
+
+   @param followingTypes The indexes of the transform types to follow this
+                         one, in order; empty for none.
+  */
+  public void setFollowingTypes(int[] followingTypes) {
+    if (followingTypes == null) {
+      this.followingTypes = new int[0];
+    } else {
+      this.followingTypes = followingTypes.clone();
+    }
+  }
+
+  public int[] getFollowingTypes() {
+    return followingTypes.clone();
+  }
+
+  /**
+   Is more than one transformation to be chained together?
+
+   @return True if other transformations follow this one.
+  */
+  public boolean isPipeline() {
+    return followingTypes.length > 0;
+  }
+
+  /**
+   Get the type of the last transformation in the chain, which determines
+   the kind of output produced.
+
+   @return The index of the final transform type.
+  */
+  public int getFinalTransformTypeIndex() {
+    if (followingTypes.length == 0) {
+      return transformTypeIndex;
+    } else {
+      return followingTypes[followingTypes.length - 1];
+    }
+  }
+
+  /**
+   Get options for another type of transformation, with everything else
+   the same as these options, and no transformations following.
+
+   @param typeIndex The index of the other transform type.
+   @return The new options.
+  */
+  public TransformOptions forTransformType(int typeIndex) {
+    TransformOptions other = new TransformOptions(typeIndex);
+    other.copySettings(this);
+    return other;
+  }
+
+  /**
+   Take on all the settings of other options, apart from the transform
+   type, and any transformations following it.
+
+   @param other The options to be copied.
+  */
+  public void copySettings(TransformOptions other) {
+    startHeadingLevel = other.startHeadingLevel;
+    endHeadingLevel = other.endHeadingLevel;
+    streaming = other.streaming;
+    pullParsing = other.pullParsing;
+    compact = other.compact;
+    indexing = other.indexing;
+    sectionPath = other.sectionPath;
+    measuring = other.measuring;
+    metricsFile = other.metricsFile;
+  }
+
+  /**
+   Set the lowest heading level to be included (the one with the
+   fewest hashes). Values outside the range 1 - 6 are pulled back into it.
+
+   @param startHeadingLevel The lowest heading level.
+  */
+  public void setStartHeadingLevel(int startHeadingLevel) {
+    this.startHeadingLevel = constrainLevel(startHeadingLevel);
+  }
+
+  public int getStartHeadingLevel() {
+    return startHeadingLevel;
+  }
+
+  /**
+   Set the highest heading level to be included (the one with the
+   most hashes). Values outside the range 1 - 6 are pulled back into it.
+
+   @param endHeadingLevel The highest heading level.
+  */
+  public void setEndHeadingLevel(int endHeadingLevel) {
+    this.endHeadingLevel = constrainLevel(endHeadingLevel);
+  }
+
+  public int getEndHeadingLevel() {
+    return endHeadingLevel;
+  }
+
+  /**
+   Is the given heading level within the requested range?
+
+   @param headingLevel A heading level, with zero meaning not a heading.
+   @return True if a heading, and within the start and end levels.
+  */
+  public boolean inRange(int headingLevel) {
+    return headingLevel > 0
+        && headingLevel >= startHeadingLevel
+        && headingLevel <= endHeadingLevel;
+  }
+
+  private static int constrainLevel(int level) {
+    if (level < MIN_HEADING_LEVEL) {
+      return MIN_HEADING_LEVEL;
+    } else if (level > MAX_HEADING_LEVEL) {
+      return MAX_HEADING_LEVEL;
+    } else {
+      return level;
+    }
+  }
+
+  /**
+   Request a single pass through the input, with the Table of Contents
+   filled in from headings collected along the way, rather than building
+   the whole output in memory and then parsing it a second time.
+
+   @param streaming True for a single streaming pass.
+  */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   Request that OPML be read with the StAX pull parser, rather than SAX.
+
+   @param pullParsing True to use the pull parser.
+  */
+  public void setPullParsing(boolean pullParsing) {
+    this.pullParsing = pullParsing;
+  }
+
+  public boolean isPullParsing() {
+    return pullParsing;
+  }
+
+  /**
+   Request a compact Table of Contents: HTML written without indentation.
+
+   @param compact True for compact output.
+  */
+  public void setCompact(boolean compact) {
+    this.compact = compact;
+  }
+
+  public boolean isCompact() {
+    return compact;
+  }
+
+  /**
+   Request that a Table of Contents for a local Markdown file be built
+   from a sidecar heading index, creating or refreshing the index first
+   if necessary.
+
+   @param indexing True to use a heading index.
+  */
+  public void setIndexing(boolean indexing) {
+    this.indexing = indexing;
+  }
+
+  public boolean isIndexing() {
+    return indexing;
+  }
+
+  /**
+   Identify the section to be extracted from a Markdown document, by the
+   ID of its heading, optionally preceded by the IDs of enclosing headings,
+   separated by slashes.
+
+   @param sectionPath The heading ID, or path of IDs, of the section.
+  */
+  public void setSectionPath(String sectionPath) {
+    if (sectionPath == null) {
+      this.sectionPath = "";
+    } else {
+      this.sectionPath = sectionPath;
+    }
+  }
+
+  public String getSectionPath() {
+    return sectionPath;
+  }
+
+  /**
+   Request that each transformation be measured, with the results logged.
+
+   @param measuring True to measure each transformation.
+  */
+  public void setMeasuring(boolean measuring) {
+    this.measuring = measuring;
+  }
+
+  /**
+   Should each transformation be measured?
+
+   @return True if measurement was requested, or a metrics file named.
+  */
+  public boolean isMeasuring() {
+    return measuring || metricsFile != null;
+  }
+
+  /**
+   Name a file to which the metrics for each transformation should be
+   appended, as JSON if the name ends with '.json' or '.jsonl', or else
+   as CSV.
+
+   @param metricsFile The file to receive metrics, or null for none.
+  */
+  public void setMetricsFile(File metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+
+  public File getMetricsFile() {
+    return metricsFile;
+  }
+
+  /**
+   Return a brief description suitable for logging.
+
+   @return Transform type(s) plus heading levels.
+  */
+  public String toString() {
+    StringBuilder types = new StringBuilder(transformTypeString);
+    for (int i = 0; i < followingTypes.length; i++) {
+      types.append(", then ");
+      types.append(
+          TransformerRegistry.getShared().getTitle(followingTypes[i]));
+    }
+    return types.toString()
+        + " (heading levels " + String.valueOf(startHeadingLevel)
+        + " - " + String.valueOf(endHeadingLevel) + ")";
+  }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import javafx.scene.layout.*;
+
+  import java.util.*;
+
+/**
+ Chains several transformers together, each taking the output of the one 
+ before as its input. Every transformer but the last runs on a thread of 
+ its own, with its output passed along through a bounded LineQueue, so 
+ that the stages overlap their work, and no intermediate document is 
+ ever held in memory in its entirety. The last transformer runs on the 
+ calling thread, writing to the real output. <p>
+
+ If any stage fails, the queues are abandoned, so that every other stage 
+ comes to a prompt halt, and the first failure is reported. 
+
+ @author Herb Bowie
+ */
+public class TransformPipeline 
+    implements HeadOutTransformer {
+  
+  private             List<HeadOutTransformer> stages = new ArrayList<>();
+  private             List<String>        stageNames = new ArrayList<>();
+  
+  private             LineQueue[]         queues = new LineQueue[0];
+  private             String              failure = null;
+  
+  /**
+   Build a pipeline for the given options: the options' own transform 
+   type first, followed by each of its following types. Each stage is 
+   measured separately, as requested by the options. 
+  
+   @param options The options for the transformation. 
+  */
+  public TransformPipeline (TransformOptions options) {
+    TransformerRegistry registry = TransformerRegistry.getShared();
+    addStage(HeadoutCommandLine.createTransformer(
+            options.forTransformType(options.getTransformTypeIndex())),
+        registry.getName(options.getTransformTypeIndex()));
+    int[] following = options.getFollowingTypes();
+    for (int i = 0; i < following.length; i++) {
+      addStage(HeadoutCommandLine.createTransformer(
+              options.forTransformType(following[i])),
+          registry.getName(following[i]));
+    }
+  }
+  
+  /**
+   Build an empty pipeline, to which stages may be added. 
+  */
+  public TransformPipeline () {
+    
+  }
+  
+  /**
+   Add a stage to the end of the pipeline. 
+  
+   @param transformer The transformer for the stage. 
+   @param name        A name for the stage, used to name its thread. 
+  */
+  public void addStage(HeadOutTransformer transformer, String name) {
+    stages.add(transformer);
+    stageNames.add(name);
+  }
+  
+  /**
+   The controls for a pipeline are those of its first stage. 
+  
+   @return The first stage's controls, or null if there are no stages. 
+  */
+  public GridPane getGrid() {
+    if (stages.isEmpty()) {
+      return null;
+    } else {
+      return stages.get(0).getGrid();
+    }
+  }
+  
+  /**
+   The options for a pipeline are those of its first stage. 
+  
+   @return The first stage's options, or null if there are no stages. 
+  */
+  public TransformOptions getOptions() {
+    if (stages.isEmpty()) {
+      return null;
+    } else {
+      return stages.get(0).getOptions();
+    }
+  }
+  
+  /**
+   Run every stage of the pipeline, and wait for them all to finish. 
+  
+   @param reader The input to the first stage. 
+   @param writer The output from the last stage. 
+   @throws TransformException If any of the stages fails. 
+  */
+  public void transformNow(TextLineReader reader, TextLineWriter writer)
+      throws TransformException {
+    
+    if (stages.isEmpty()) {
+      throw new TransformException("No transformations in the pipeline");
+    }
+    int last = stages.size() - 1;
+    failure = null;
+    queues = new LineQueue[last];
+    for (int i = 0; i < last; i++) {
+      queues[i] = new LineQueue(stageNames.get(i) + " > " + stageNames.get(i + 1));
+    }
+    
+    Thread[] threads = new Thread[last];
+    for (int i = 0; i < last; i++) {
+      TextLineReader stageReader = reader;
+      if (i > 0) {
+        stageReader = queues[i - 1].getReader();
+      }
+      StageRunner runner 
+          = new StageRunner(i, stageReader, queues[i].getWriter());
+      threads[i] = new Thread(runner, 
+          Headout.PROGRAM_NAME + " pipeline " + stageNames.get(i));
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+    
+    TextLineReader lastReader = reader;
+    if (last > 0) {
+      lastReader = queues[last - 1].getReader();
+    }
+    new StageRunner(last, lastReader, writer).run();
+    
+    for (int i = 0; i < last; i++) {
+      try {
+        threads[i].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        fail("Interrupted");
+      }
+    }
+    if (failure != null) {
+      throw new TransformException(failure);
+    }
+  }
+  
+  /**
+   Note the failure of a stage, and bring the others to a halt. 
+  
+   @param message A description of what went wrong. 
+  */
+  private synchronized void fail(String message) {
+    if (failure == null) {
+      failure = message;
+    }
+    for (int i = 0; i < queues.length; i++) {
+      queues[i].abandon();
+    }
+  }
+  
+  public void savePrefs() {
+    for (HeadOutTransformer stage : stages) {
+      stage.savePrefs();
+    }
+  }
+  
+  /**
+   Runs one stage of the pipeline. 
+  */
+  class StageRunner 
+      implements Runnable {
+    
+    private             int                 index;
+    private             TextLineReader      reader;
+    private             TextLineWriter      writer;
+    
+    StageRunner(int index, TextLineReader reader, TextLineWriter writer) {
+      this.index = index;
+      this.reader = reader;
+      this.writer = writer;
+    }
+    
+    public void run() {
+      try {
+        stages.get(index).transformNow(reader, writer);
+      } catch (TransformException e) {
+        fail(stageNames.get(index) + ": " + e.getMessage());
+      } catch (RuntimeException e) {
+        fail(stageNames.get(index) + ": " + e.toString());
+      } finally {
+        if (index > 0) {
+          // Let the stage before know that no more of its output is wanted
+          reader.close();
+        }
+        if (index < queues.length) {
+          // Make sure the stage after sees the end of its input
+          writer.close();
+        }
+      }
+    }
+    
+  }
+
+}
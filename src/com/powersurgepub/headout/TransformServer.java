@@ -0,0 +1,813 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.net.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+ Keeps HeadOut running in the background, performing transformations 
+ requested over a local connection, so that an editor or script can have 
+ many small documents transformed without starting a JVM for each one. 
+ The server listens only on the loopback address. <p>
+
+ Each connection may carry any number of requests, one after another. A 
+ request is a series of header lines, each of the form 'name: value', 
+ ending with an empty line, followed by the input itself, if any. The 
+ headers are: type (as for the -t option, defaulting to md-toc), start 
+ and end (heading levels), section, compact, stream and pull (as for the 
+ command line options of the same names, with a value of 'true' or 
+ 'false'), and then either length (the number of bytes of UTF-8 input 
+ following the headers) or path (a file within the directory being 
+ served, if any). The server only reads files, so a request for a 
+ heading index, which would be written alongside the file, is refused. <p>
+
+ The output is sent back as it is written, in chunks, each consisting of 
+ a line 'DATA n' followed by n bytes of UTF-8 text. The response then ends 
+ with a line reading 'OK', or 'FAIL' followed by a reason, or 'BUSY' if 
+ too many requests were already waiting, in which case the request may 
+ simply be sent again. <p>
+
+ Transformations run on a fixed pool of worker threads, each of which 
+ keeps a transformer of each type once built. The number of requests 
+ waiting for a worker is limited, as are the sizes of each request's 
+ input and output, so that memory use stays bounded no matter how busy 
+ the server gets. 
+
+ @author Herb Bowie
+ */
+public class TransformServer {
+  
+  public static final int     DEFAULT_PORT = 7878;
+  public static final int     DEFAULT_QUEUE_DEPTH = 64;
+  public static final long    DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+  
+  public static final String  DATA = "DATA";
+  public static final String  OK   = "OK";
+  public static final String  FAIL = "FAIL";
+  public static final String  BUSY = "BUSY";
+  
+  /** The number of bytes of output sent in each chunk. */
+  private static final int    CHUNK_SIZE = 32 * 1024;
+  
+  /** The longest header line accepted. */
+  private static final int    MAX_HEADER_LINE = 8192;
+  
+  /** The number of times each transform type is run while warming up. */
+  private static final int    WARM_UP_RUNS = 100;
+  
+  private             int                 port;
+  private             int                 threads;
+  private             int                 queueDepth;
+  private             long                maxBytes;
+  private             Path                rootDir = null;
+  
+  private             ServerSocket        serverSocket = null;
+  private             ThreadPoolExecutor  workers = null;
+  private             ExecutorService     connections = null;
+  private             Semaphore           connectionPermits;
+  private volatile    boolean             running = false;
+  
+  private             AtomicLong          requests = new AtomicLong();
+  private             AtomicLong          failures = new AtomicLong();
+  private             AtomicLong          rejections = new AtomicLong();
+  
+  private             PrintStream         report = System.err;
+  
+  /** Each worker's transformers, indexed by transform type. */
+  private             ThreadLocal<HeadOutTransformer[]> warmTransformers
+      = new ThreadLocal<>();
+  
+  /** The options used by each worker's transformers. */
+  private             ThreadLocal<TransformOptions[]> warmOptions
+      = new ThreadLocal<>();
+  
+  /**
+   Set up a server. 
+  
+   @param port       The loopback port on which to listen; zero for any 
+                     free port. 
+   @param threads    The number of worker threads; zero or less to use 
+                     one per available processor. 
+   @param queueDepth The number of requests that may wait for a worker 
+                     before further requests are turned away. 
+   @param maxBytes   The largest input, and the largest output, allowed 
+                     for a single request. 
+   @param rootDir    A directory whose files may be named in requests, or 
+                     null to accept only input sent with each request. 
+  */
+  public TransformServer (
+      int port, 
+      int threads, 
+      int queueDepth, 
+      long maxBytes, 
+      Path rootDir) {
+    
+    this.port = port;
+    if (threads > 0) {
+      this.threads = threads;
+    } else {
+      this.threads = Runtime.getRuntime().availableProcessors();
+    }
+    this.queueDepth = Math.max(queueDepth, 1);
+    this.maxBytes = Math.max(maxBytes, 1);
+    this.rootDir = rootDir;
+    // Every waiting request holds its input in memory, so limit those too
+    connectionPermits = new Semaphore(this.threads + this.queueDepth);
+  }
+  
+  /**
+   Specify where progress and problems should be reported. 
+  
+   @param report The stream to receive the report. 
+  */
+  public void setReport(PrintStream report) {
+    this.report = report;
+  }
+  
+  /**
+   Warm up the transformers and start listening. 
+  
+   @return The port on which the server is listening. 
+   @throws IOException If the port could not be opened. 
+  */
+  public int open() 
+      throws IOException {
+    
+    if (rootDir != null) {
+      rootDir = rootDir.toRealPath();
+    }
+    warmUp();
+    serverSocket = new ServerSocket();
+    serverSocket.bind(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    port = serverSocket.getLocalPort();
+    workers = new ThreadPoolExecutor(
+        threads, threads, 0L, TimeUnit.MILLISECONDS, 
+        new ArrayBlockingQueue<>(queueDepth), 
+        new DaemonThreads("Worker"));
+    workers.prestartAllCoreThreads();
+    connections = Executors.newCachedThreadPool(new DaemonThreads("Connection"));
+    running = true;
+    return port;
+  }
+  
+  /**
+   Accept connections until the server is closed. 
+  */
+  public void serve() {
+    while (running) {
+      try {
+        Socket socket = serverSocket.accept();
+        if (connectionPermits.tryAcquire()) {
+          connections.execute(() -> {
+            try {
+              handle(socket);
+            } finally {
+              connectionPermits.release();
+            }
+          });
+        } else {
+          rejections.incrementAndGet();
+          try (OutputStream out = socket.getOutputStream()) {
+            out.write((BUSY + "\n").getBytes(StandardCharsets.UTF_8));
+          } catch (IOException e) {
+            // Nothing more to be done for this client
+          }
+          closeQuietly(socket);
+        }
+      } catch (IOException e) {
+        if (running) {
+          report.println(Headout.PROGRAM_NAME + " server: " + e.getMessage());
+        }
+      }
+    } // end while running
+  }
+  
+  /**
+   Stop listening, and stop the workers once they are idle. 
+  */
+  public void close() {
+    running = false;
+    if (serverSocket != null) {
+      try {
+        serverSocket.close();
+      } catch (IOException e) {
+        // Closing anyway
+      }
+    }
+    if (workers != null) {
+      workers.shutdown();
+    }
+    if (connections != null) {
+      connections.shutdownNow();
+    }
+  }
+  
+  public int getPort() {
+    return port;
+  }
+  
+  /**
+   Describe the work done so far, suitable for logging. 
+  
+   @return Counts of requests, failures and rejections. 
+  */
+  public String getSummary() {
+    return String.valueOf(requests.get()) + " requests, " 
+        + String.valueOf(failures.get()) + " failed, " 
+        + String.valueOf(rejections.get()) + " turned away";
+  }
+  
+  /**
+   Serve the requests arriving on one connection, in turn. 
+  
+   @param socket The connection to a client. 
+  */
+  private void handle(Socket socket) {
+    try {
+      socket.setTcpNoDelay(true);
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out 
+          = new BufferedOutputStream(socket.getOutputStream(), CHUNK_SIZE + 64);
+      boolean open = true;
+      while (open && running) {
+        Request request = readRequest(in);
+        if (request == null) {
+          open = false;
+        }
+        else
+        if (request.problem != null) {
+          failures.incrementAndGet();
+          writeStatus(out, FAIL + " " + request.problem);
+          open = ! request.fatal;
+        } else {
+          requests.incrementAndGet();
+          open = submit(request, out);
+        }
+        out.flush();
+      } // end while the connection is open
+    } catch (IOException e) {
+      // The client went away
+    } finally {
+      closeQuietly(socket);
+    }
+  }
+  
+  /**
+   Pass a request to a worker, and wait for it to be done. 
+  
+   @param request The request. 
+   @param out     The stream to receive the response. 
+   @return True if the connection may be used for further requests. 
+   @throws IOException If the response could not be sent. 
+  */
+  private boolean submit(Request request, OutputStream out)
+      throws IOException {
+    
+    Future<Boolean> result;
+    try {
+      result = workers.submit(() -> perform(request, out));
+    } catch (RejectedExecutionException e) {
+      rejections.incrementAndGet();
+      writeStatus(out, BUSY);
+      return true;
+    }
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.cancel(true);
+      return false;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      failures.incrementAndGet();
+      writeStatus(out, FAIL + " " + String.valueOf(cause));
+      return true;
+    }
+  }
+  
+  /**
+   Perform one transformation, on a worker thread, sending its output back 
+   as it is written. 
+  
+   @param request The request. 
+   @param out     The stream to receive the response. 
+   @return True if the connection may be used for further requests. 
+   @throws IOException If the response could not be sent. 
+  */
+  private boolean perform(Request request, OutputStream out)
+      throws IOException {
+    
+    TextLineReader reader;
+    if (request.file != null) {
+      reader = MappedLineReader.getReader(request.file);
+    } else {
+      reader = new StreamLineReader(
+          new ByteArrayInputStream(request.input), "request");
+    }
+    ResponseWriter writer = new ResponseWriter(out, maxBytes);
+    String status = OK;
+    try {
+      getTransformer(request.options).transformNow(reader, writer);
+    } catch (TransformException e) {
+      status = FAIL + " " + e.getMessage();
+    } catch (RuntimeException e) {
+      status = FAIL + " " + e.toString();
+    }
+    writer.close();
+    if (writer.getException() != null) {
+      throw writer.getException();
+    }
+    if (writer.isOverLimit()) {
+      status = FAIL + " Output larger than " + String.valueOf(maxBytes) 
+          + " bytes";
+    }
+    if (! status.equals(OK)) {
+      failures.incrementAndGet();
+      Logger.getShared().recordEvent(LogEvent.NORMAL,
+          "Request for " + request.options.toString() + " " + status, false);
+    }
+    writeStatus(out, status);
+    return true;
+  }
+  
+  /**
+   Get a transformer for the given options, reusing the current worker's 
+   transformer of the requested type if it has one. 
+  
+   @param options The options for the request. 
+   @return A transformer ready for use. 
+  */
+  private HeadOutTransformer getTransformer(TransformOptions options) {
+    if (options.isPipeline()) {
+      return HeadoutCommandLine.createTransformer(options);
+    }
+    HeadOutTransformer[] transformers = warmTransformers.get();
+    TransformOptions[] transformerOptions = warmOptions.get();
+    if (transformers == null) {
+      int types = TransformerRegistry.getShared().size();
+      transformers = new HeadOutTransformer[types];
+      transformerOptions = new TransformOptions[types];
+      warmTransformers.set(transformers);
+      warmOptions.set(transformerOptions);
+    }
+    int type = options.getTransformTypeIndex();
+    if (transformers[type] == null) {
+      transformerOptions[type] = new TransformOptions(type);
+      transformers[type] 
+          = HeadoutCommandLine.createTransformer(transformerOptions[type]);
+    }
+    transformerOptions[type].copySettings(options);
+    return transformers[type];
+  }
+  
+  /**
+   Run each of the built-in transform types a number of times on a small 
+   document, so that their classes are loaded and their code compiled 
+   before the first real request arrives. 
+  */
+  private void warmUp() {
+    StringBuilder markdown = new StringBuilder();
+    markdown.append("# Warm Up\n\n");
+    markdown.append("## Table of Contents\n\n");
+    for (int i = 1; i <= 20; i++) {
+      markdown.append("## Section " + String.valueOf(i) + "\n\n");
+      markdown.append("Some text, with *emphasis*.\n\n");
+      markdown.append("### Detail " + String.valueOf(i) + "\n\n");
+      markdown.append("- an item\n- another item\n\n");
+    }
+    byte[] markdownBytes = markdown.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] opmlBytes = warmUpRun(
+        TransformOptions.OPML_FROM_MARKDOWN, markdownBytes);
+    for (int run = 0; run < WARM_UP_RUNS; run++) {
+      for (int type = 0; type < TransformOptions.TRANSFORM_TYPES.length; type++) {
+        if (type == TransformOptions.MARKDOWN_FROM_OPML) {
+          warmUpRun(type, opmlBytes);
+        } else {
+          warmUpRun(type, markdownBytes);
+        }
+      }
+    }
+  }
+  
+  private byte[] warmUpRun(int type, byte[] input) {
+    TransformOptions options = new TransformOptions(type);
+    options.setSectionPath("section-10");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      HeadoutCommandLine.createTransformer(options).transformNow(
+          new StreamLineReader(new ByteArrayInputStream(input), "warm-up"),
+          new StreamLineWriter(output, "warm-up"));
+    } catch (TransformException e) {
+      // Only the practice matters
+    } catch (RuntimeException e) {
+      // Only the practice matters
+    }
+    return output.toByteArray();
+  }
+  
+  /**
+   Read the next request from a connection. 
+  
+   @param in The stream from the client. 
+   @return The request, or null if the client has no more. 
+   @throws IOException If the connection failed. 
+  */
+  private Request readRequest(InputStream in) 
+      throws IOException {
+    
+    Request request = new Request();
+    String typeName = TransformOptions.TRANSFORM_TYPE_NAMES[
+        TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN];
+    Map<String, String> headers = new HashMap<>();
+    String line = readHeaderLine(in);
+    while (line != null && line.length() == 0 && headers.isEmpty()) {
+      // Skip any blank lines between requests
+      line = readHeaderLine(in);
+    }
+    if (line == null) {
+      return null;
+    }
+    while (line != null && line.length() > 0) {
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        request.problem = "Bad header: " + line;
+        request.fatal = true;
+        return request;
+      }
+      headers.put(line.substring(0, colon).trim().toLowerCase(), 
+          line.substring(colon + 1).trim());
+      line = readHeaderLine(in);
+    }
+    if (line == null) {
+      request.problem = "Connection closed within headers";
+      request.fatal = true;
+      return request;
+    }
+    
+    // Read the input first, so that the connection stays in step
+    long length = -1;
+    if (headers.containsKey("length")) {
+      try {
+        length = Long.parseLong(headers.get("length"));
+      } catch (NumberFormatException e) {
+        length = -1;
+      }
+      if (length < 0) {
+        request.problem = "Bad length: " + headers.get("length");
+        request.fatal = true;
+        return request;
+      }
+      if (length > maxBytes) {
+        request.problem = "Input larger than " + String.valueOf(maxBytes) 
+            + " bytes";
+        request.fatal = true;
+        return request;
+      }
+      request.input = in.readNBytes((int)length);
+      if (request.input.length < length) {
+        request.problem = "Connection closed within input";
+        request.fatal = true;
+        return request;
+      }
+    }
+    
+    int start = TransformOptions.MIN_HEADING_LEVEL;
+    int end = TransformOptions.MAX_HEADING_LEVEL;
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      String name = header.getKey();
+      String value = header.getValue();
+      if (name.equals("type")) {
+        typeName = value;
+      }
+      else
+      if (name.equals("start")) {
+        start = parseLevel(value, request);
+      }
+      else
+      if (name.equals("end")) {
+        end = parseLevel(value, request);
+      }
+      else
+      if (name.equals("path")) {
+        request.file = resolvePath(value, request);
+      }
+      else
+      if (name.equals("index")) {
+        request.problem = "Heading indexes are not written by the server";
+      }
+      else
+      if (! (name.equals("length") 
+          || name.equals("section") 
+          || name.equals("compact") 
+          || name.equals("stream") 
+          || name.equals("pull"))) {
+        request.problem = "Unknown header: " + name;
+      }
+    } // end for each header
+    if (request.problem != null) {
+      return request;
+    }
+    if (length < 0 && request.file == null) {
+      request.problem = "Either a length or a path is required";
+      return request;
+    }
+    
+    String[] types = typeName.split(",");
+    int typeIndex = TransformOptions.lookupTransformType(types[0].trim());
+    int[] following = new int[types.length - 1];
+    for (int j = 1; j < types.length && typeIndex >= 0; j++) {
+      following[j - 1] = TransformOptions.lookupTransformType(types[j].trim());
+      if (following[j - 1] < 0) {
+        typeIndex = -1;
+      }
+    }
+    if (typeIndex < 0) {
+      request.problem = "Unknown transform type: " + typeName;
+      return request;
+    }
+    
+    TransformOptions options = new TransformOptions(typeIndex);
+    options.setFollowingTypes(following);
+    options.setStartHeadingLevel(start);
+    options.setEndHeadingLevel(end);
+    options.setSectionPath(headers.get("section"));
+    options.setCompact(isTrue(headers.get("compact")));
+    options.setStreaming(isTrue(headers.get("stream")));
+    options.setPullParsing(isTrue(headers.get("pull")));
+    request.options = options;
+    return request;
+  }
+  
+  private int parseLevel(String value, Request request) {
+    try {
+      int level = Integer.parseInt(value);
+      if (level >= TransformOptions.MIN_HEADING_LEVEL 
+          && level <= TransformOptions.MAX_HEADING_LEVEL) {
+        return level;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the problem below
+    }
+    request.problem = "Bad heading level: " + value;
+    return TransformOptions.MIN_HEADING_LEVEL;
+  }
+  
+  private static boolean isTrue(String value) {
+    return value != null 
+        && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes"));
+  }
+  
+  /**
+   Find a file named in a request, which must lie within the directory 
+   being served. 
+  
+   @param name    The path of the file, relative to the directory served, 
+                  or absolute. 
+   @param request The request, to receive any problem found. 
+   @return The file, or null if it may not be read. 
+  */
+  private File resolvePath(String name, Request request) {
+    if (rootDir == null) {
+      request.problem = "Paths are not accepted by this server";
+      return null;
+    }
+    try {
+      Path path = rootDir.resolve(name).toRealPath();
+      if (! path.startsWith(rootDir)) {
+        request.problem = "Path is outside the directory served: " + name;
+        return null;
+      }
+      if (! Files.isRegularFile(path)) {
+        request.problem = "Not a file: " + name;
+        return null;
+      }
+      if (Files.size(path) > maxBytes) {
+        request.problem = "Input larger than " + String.valueOf(maxBytes) 
+            + " bytes";
+        return null;
+      }
+      return path.toFile();
+    } catch (IOException e) {
+      request.problem = "File not found: " + name;
+      return null;
+    }
+  }
+  
+  /**
+   Read one header line, ending with a line feed. 
+  
+   @param in The stream from the client. 
+   @return The line, without its ending, or null at the end of the stream. 
+   @throws IOException If the line is too long, or cannot be read. 
+  */
+  private static String readHeaderLine(InputStream in)
+      throws IOException {
+    
+    ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+    int b = in.read();
+    if (b < 0) {
+      return null;
+    }
+    while (b >= 0 && b != '\n') {
+      if (b != '\r') {
+        line.write(b);
+      }
+      if (line.size() > MAX_HEADER_LINE) {
+        throw new IOException("Header line too long");
+      }
+      b = in.read();
+    }
+    return line.toString(StandardCharsets.UTF_8);
+  }
+  
+  private static void writeStatus(OutputStream out, String status) 
+      throws IOException {
+    out.write(status.replace('\n', ' ').replace('\r', ' ')
+        .getBytes(StandardCharsets.UTF_8));
+    out.write('\n');
+  }
+  
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Already gone
+    }
+  }
+  
+  /**
+   One request, as read from a connection. 
+  */
+  static class Request {
+    TransformOptions  options = null;
+    byte[]            input = null;
+    File              file = null;
+    String            problem = null;
+    boolean           fatal = false;
+  }
+  
+  /**
+   Sends the output of a transformation back to the client in chunks, 
+   as it is written, up to a limit. 
+  */
+  static class ResponseWriter
+      implements 
+        TextLineWriter,
+        CharLineWriter {
+    
+    private             OutputStream        out;
+    private             long                maxBytes;
+    
+    private             StringBuilder       pending = new StringBuilder();
+    private             long                bytesSent = 0;
+    private             boolean             overLimit = false;
+    private             IOException         exception = null;
+    
+    ResponseWriter(OutputStream out, long maxBytes) {
+      this.out = out;
+      this.maxBytes = maxBytes;
+    }
+    
+    public boolean openForOutput() {
+      return isOK();
+    }
+    
+    public boolean newLine() {
+      return write("\n");
+    }
+    
+    public boolean writeLine(String s) {
+      return write(s) && newLine();
+    }
+    
+    public boolean write(String s) {
+      if (isOK()) {
+        pending.append(s);
+        if (pending.length() >= CHUNK_SIZE) {
+          sendChunk();
+        }
+      }
+      return isOK();
+    }
+    
+    public boolean write(char[] chars, int offset, int length) {
+      if (isOK()) {
+        pending.append(chars, offset, length);
+        if (pending.length() >= CHUNK_SIZE) {
+          sendChunk();
+        }
+      }
+      return isOK();
+    }
+    
+    private void sendChunk() {
+      if (pending.length() == 0 || ! isOK()) {
+        return;
+      }
+      byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+      pending.setLength(0);
+      if (bytesSent + bytes.length > maxBytes) {
+        overLimit = true;
+        return;
+      }
+      try {
+        writeStatus(out, DATA + " " + String.valueOf(bytes.length));
+        out.write(bytes);
+        bytesSent = bytesSent + bytes.length;
+      } catch (IOException e) {
+        exception = e;
+      }
+    }
+    
+    /**
+     Output is sent a chunk at a time, so there is nothing to be gained 
+     by sending part of one early. 
+    
+     @return True if everything is ok. 
+    */
+    public boolean flush() {
+      return isOK();
+    }
+    
+    /**
+     Send anything still waiting, leaving the connection open for the 
+     response to be completed. 
+    
+     @return True if everything is ok. 
+    */
+    public boolean close() {
+      sendChunk();
+      return isOK();
+    }
+    
+    public boolean isOK() {
+      return exception == null && ! overLimit;
+    }
+    
+    boolean isOverLimit() {
+      return overLimit;
+    }
+    
+    IOException getException() {
+      return exception;
+    }
+    
+    public String getDestination() {
+      return "client";
+    }
+    
+    public String toString() {
+      return "client";
+    }
+    
+  }
+  
+  /**
+   Makes the server's threads daemons, with recognizable names. 
+  */
+  static class DaemonThreads 
+      implements ThreadFactory {
+    
+    private             String              kind;
+    private             AtomicInteger       count = new AtomicInteger();
+    
+    DaemonThreads(String kind) {
+      this.kind = kind;
+    }
+    
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, Headout.PROGRAM_NAME + " Server " 
+          + kind + " " + String.valueOf(count.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    }
+    
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.text.*;
+
+  import javafx.concurrent.*;
+
+/**
+ Runs a transformation on a background thread, so that the user interface
+ stays responsive. Progress is reported as input lines are consumed, and
+ the task may be cancelled at any point, in which case the input is cut
+ short and no output is written.
+
+ @author Herb Bowie
+ */
+public class TransformTask
+    extends Task<Void> {
+
+  /** How many lines to read between progress updates. */
+  private     static  final int           PROGRESS_INTERVAL = 500;
+
+  private             HeadOutTransformer  transformer;
+  private             ProgressReader      reader;
+  private             DeferredLineWriter  writer;
+  private             long                totalChars;
+
+  private             long                startTime = 0;
+  private             long                elapsedNanos = 0;
+
+  /**
+   Prepare a transformation to be run in the background.
+
+   @param transformer The transformer to be used.
+   @param reader      The input.
+   @param writer      The output.
+   @param totalChars  The expected size of the input, or -1 if unknown.
+  */
+  public TransformTask (
+      HeadOutTransformer transformer,
+      TextLineReader reader,
+      TextLineWriter writer,
+      long totalChars) {
+
+    this.transformer = transformer;
+    this.reader = new ProgressReader(reader);
+    this.writer = new DeferredLineWriter(writer);
+    this.totalChars = totalChars;
+  }
+
+  /**
+   Perform the transformation. Runs on a background thread.
+
+   @return Nothing.
+   @throws TransformException If the transformation fails.
+  */
+  protected Void call()
+      throws TransformException {
+
+    startTime = System.nanoTime();
+    updateMessage("Transforming...");
+    updateProgress(-1, 1);
+    transformer.transformNow(reader, writer);
+    if (isCancelled()) {
+      writer.discard();
+      updateMessage("Cancelled: no output written");
+      return null;
+    }
+    updateMessage("Writing output...");
+    if (! writer.commit()) {
+      throw new TransformException("Trouble writing to "
+          + writer.getDestination());
+    }
+    elapsedNanos = System.nanoTime() - startTime;
+    updateProgress(1, 1);
+    updateMessage(getSummary());
+    return null;
+  }
+
+  /**
+   Describe the completed transformation.
+
+   @return Lines read, elapsed time and throughput.
+  */
+  public String getSummary() {
+    NumberFormat numberFormat = NumberFormat.getInstance();
+    double seconds = elapsedNanos / 1000000000.0;
+    StringBuilder summary = new StringBuilder();
+    summary.append(numberFormat.format(reader.getLines()));
+    summary.append(" lines in ");
+    summary.append(numberFormat.format(seconds));
+    summary.append(" seconds");
+    if (seconds > 0) {
+      summary.append(" (");
+      summary.append(numberFormat.format(Math.round(reader.getLines() / seconds)));
+      summary.append(" lines/sec)");
+    }
+    return summary.toString();
+  }
+
+  /**
+   A line reader that reports progress, and stops supplying lines once
+   the task has been cancelled, so that the transformer winds up cleanly.
+  */
+  class ProgressReader
+      extends CountingLineReader {
+
+    ProgressReader(TextLineReader reader) {
+      super(reader);
+    }
+
+    public String readLine() {
+      if (isCancelled()) {
+        return null;
+      }
+      String line = super.readLine();
+      reportProgress();
+      return line;
+    }
+
+    public CharSequence readLineSequence() {
+      if (isCancelled()) {
+        return null;
+      }
+      CharSequence line = super.readLineSequence();
+      reportProgress();
+      return line;
+    }
+
+    private void reportProgress() {
+      if (getLines() % PROGRESS_INTERVAL == 0) {
+        if (totalChars > 0) {
+          updateProgress(Math.min(getChars(), totalChars), totalChars);
+        }
+        updateMessage(NumberFormat.getInstance().format(getLines())
+            + " lines read");
+      }
+    }
+
+    public boolean isAtEnd() {
+      return isCancelled() || super.isAtEnd();
+    }
+
+  }
+
+}
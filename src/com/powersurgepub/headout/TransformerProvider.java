@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+/**
+ Describes one type of transformation, and builds transformers of that 
+ type. HeadOut's own transform types are built in; others may be added by 
+ placing a jar on the class path that implements this interface, and 
+ names its implementing class in a 
+ <code>META-INF/services/com.powersurgepub.headout.TransformerProvider</code> 
+ file, to be found through java.util.ServiceLoader. An implementation must 
+ have a public constructor taking no arguments. 
+
+ @author Herb Bowie
+ */
+public interface TransformerProvider {
+  
+  /**
+   Get a short name for the transform type, for use on a command line. 
+  
+   @return A short name, without spaces or commas, such as 'md-toc'. 
+  */
+  public String getName();
+  
+  /**
+   Get the full name of the transform type, as shown in the user interface. 
+  
+   @return The full name, such as 'Create Markdown ToC from Markdown'. 
+  */
+  public String getTitle();
+  
+  /**
+   Get the default pattern for selecting files to be transformed in a batch. 
+  
+   @return A glob pattern, such as '**.{md,markdown}'. 
+  */
+  public String getInputGlob();
+  
+  /**
+   Get the ending to be given to the name of each output file in a batch, 
+   in place of the source file's extension. 
+  
+   @return A file name ending, such as '-toc.md'. 
+  */
+  public String getOutputSuffix();
+  
+  /**
+   Build a transformer driven solely by the passed options, without 
+   touching user preferences or any JavaFX controls. A new transformer is 
+   wanted for each call, since several may be in use at once. 
+  
+   @param options The options for the transformation. 
+   @return A new transformer. 
+  */
+  public HeadOutTransformer createTransformer(TransformOptions options);
+  
+  /**
+   Build a transformer for use with the user interface, whose controls may 
+   be used to adjust its options, with their initial values taken from 
+   user preferences. 
+  
+   @param options The options for the transformation, naming its type. 
+   @return A new transformer. 
+  */
+  public default HeadOutTransformer createInteractiveTransformer(
+      TransformOptions options) {
+    return createTransformer(options);
+  }
+  
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.logging.*;
+
+  import java.util.*;
+
+/**
+ The list of available transform types: HeadOut's own, at the indexes 
+ given by the constants in TransformOptions, followed by any others 
+ discovered through ServiceLoader (see TransformerProvider). The class 
+ path is only searched once, when the registry is first needed. <p>
+
+ Transformers for use with the user interface are built when first asked 
+ for, and then kept, so that switching between transform types neither 
+ rebuilds them nor loses any changes made to their controls. 
+
+ @author Herb Bowie
+ */
+public class TransformerRegistry {
+  
+  private static      TransformerRegistry shared = null;
+  
+  private             List<TransformerProvider> providers = new ArrayList<>();
+  private             List<HeadOutTransformer>  interactive = new ArrayList<>();
+  
+  /**
+   Get the single shared registry, building it if need be. 
+  
+   @return The registry. 
+  */
+  public static synchronized TransformerRegistry getShared() {
+    if (shared == null) {
+      shared = new TransformerRegistry();
+    }
+    return shared;
+  }
+  
+  private TransformerRegistry() {
+    for (int i = 0; i < TransformOptions.TRANSFORM_TYPES.length; i++) {
+      providers.add(new BuiltInProvider(i));
+    }
+    try {
+      Iterator<TransformerProvider> found 
+          = ServiceLoader.load(TransformerProvider.class).iterator();
+      while (found.hasNext()) {
+        try {
+          add(found.next());
+        } catch (ServiceConfigurationError e) {
+          logProblem(e.getMessage());
+        }
+      }
+    } catch (ServiceConfigurationError e) {
+      logProblem(e.getMessage());
+    }
+    for (int i = 0; i < providers.size(); i++) {
+      interactive.add(null);
+    }
+  }
+  
+  /**
+   Add a discovered provider, unless its name is already taken. 
+  
+   @param provider The provider to be added. 
+  */
+  private void add(TransformerProvider provider) {
+    String name = provider.getName();
+    if (name == null || name.length() == 0 || lookup(name) >= 0) {
+      logProblem("Transform type " + provider.getClass().getName() 
+          + " ignored: name '" + name + "' missing or already in use");
+    } else {
+      providers.add(provider);
+    }
+  }
+  
+  private void logProblem(String message) {
+    Logger logger = Logger.getShared();
+    if (logger != null) {
+      logger.recordEvent(LogEvent.MEDIUM, message, false);
+    }
+  }
+  
+  /**
+   Get the number of transform types available. 
+  
+   @return The number of transform types. 
+  */
+  public int size() {
+    return providers.size();
+  }
+  
+  /**
+   Get the provider for a transform type. 
+  
+   @param index The index of the transform type. 
+   @return The provider for the transform type. 
+  */
+  public TransformerProvider getProvider(int index) {
+    return providers.get(index);
+  }
+  
+  public String getName(int index) {
+    return providers.get(index).getName();
+  }
+  
+  public String getTitle(int index) {
+    return providers.get(index).getTitle();
+  }
+  
+  /**
+   Get the full names of all the transform types, in order. 
+  
+   @return The full names, suitable for a list of choices. 
+  */
+  public String[] getTitles() {
+    String[] titles = new String[providers.size()];
+    for (int i = 0; i < titles.length; i++) {
+      titles[i] = providers.get(i).getTitle();
+    }
+    return titles;
+  }
+  
+  /**
+   Find a transform type given its index, its short name or its full name.
+
+   @param type The index, short name or full name of a transform type.
+   @return The matching index, or -1 if no match.
+  */
+  public int lookup(String type) {
+    for (int i = 0; i < providers.size(); i++) {
+      TransformerProvider provider = providers.get(i);
+      if (type.equals(String.valueOf(i))
+          || type.equalsIgnoreCase(provider.getName())
+          || type.equalsIgnoreCase(provider.getTitle())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   Build a new transformer, without any user interface, for the given 
+   options. 
+  
+   @param options The options, including the transform type. 
+   @return A new transformer. 
+  */
+  public HeadOutTransformer createTransformer(TransformOptions options) {
+    return getProvider(options.getTransformTypeIndex())
+        .createTransformer(options);
+  }
+  
+  /**
+   Get the transformer for use with the user interface for a transform 
+   type, building it the first time it is asked for. To be called only 
+   from the JavaFX application thread. 
+  
+   @param index The index of the transform type. 
+   @return The transformer for the type. 
+  */
+  public HeadOutTransformer getInteractiveTransformer(int index) {
+    HeadOutTransformer transformer = interactive.get(index);
+    if (transformer == null) {
+      transformer = getProvider(index).createInteractiveTransformer(
+          new TransformOptions(index, getTitle(index)));
+      interactive.set(index, transformer);
+    }
+    return transformer;
+  }
+  
+  /**
+   One of HeadOut's own transform types. 
+  */
+  static class BuiltInProvider 
+      implements TransformerProvider {
+    
+    private             int                 index;
+    
+    BuiltInProvider(int index) {
+      this.index = index;
+    }
+    
+    public String getName() {
+      return TransformOptions.TRANSFORM_TYPE_NAMES[index];
+    }
+    
+    public String getTitle() {
+      return TransformOptions.TRANSFORM_TYPES[index];
+    }
+    
+    public String getInputGlob() {
+      return BatchTransformer.DEFAULT_GLOBS[index];
+    }
+    
+    public String getOutputSuffix() {
+      return BatchTransformer.OUTPUT_SUFFIXES[index];
+    }
+    
+    public HeadOutTransformer createTransformer(TransformOptions options) {
+      if (index == TransformOptions.MARKDOWN_FROM_OPML) {
+        return new OPMLtoMarkdown(options);
+      }
+      else
+      if (index == TransformOptions.EXTRACT_SECTION) {
+        return new SectionExtractor(options);
+      }
+      else
+      if (index == TransformOptions.OPML_FROM_MARKDOWN) {
+        return new MarkdowntoOPML(options);
+      } else {
+        return new GenTocFromMarkdown(options);
+      }
+    }
+    
+    public HeadOutTransformer createInteractiveTransformer(
+        TransformOptions options) {
+      int typeIndex = options.getTransformTypeIndex();
+      String typeString = options.getTransformTypeString();
+      if (index == TransformOptions.MARKDOWN_FROM_OPML) {
+        return new OPMLtoMarkdown(typeIndex, typeString);
+      }
+      else
+      if (index == TransformOptions.EXTRACT_SECTION) {
+        return new SectionExtractor(typeIndex, typeString);
+      }
+      else
+      if (index == TransformOptions.OPML_FROM_MARKDOWN) {
+        return new MarkdowntoOPML(typeIndex, typeString);
+      } else {
+        return new GenTocFromMarkdown(typeIndex, typeString);
+      }
+    }
+    
+  }
+
+}
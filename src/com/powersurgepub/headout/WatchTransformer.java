@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+  import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ Watches either a single input file or a whole directory tree, and
+ repeats a transformation whenever a source file is saved. Bursts of
+ events (editors often write a file several times in quick succession) are
+ gathered up until things have been quiet for a moment, and only the files
+ that actually changed are transformed again. Since the process stays
+ running, each regeneration avoids the cost of starting a new JVM. When
+ generating a Table of Contents from Markdown, the headings of each file
+ are kept between runs, and only the region of the file that was edited
+ is parsed again.
+
+ @author Herb Bowie
+ */
+public class WatchTransformer {
+
+  /** How long things must stay quiet before changed files are processed. */
+  public static final long  DEFAULT_DEBOUNCE_MILLIS = 250;
+
+  private             TransformOptions    options;
+
+  private             Path                sourceFile = null;
+  private             String              outputName = null;
+
+  private             BatchTransformer    batch = null;
+
+  private             long                debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+  private             PrintStream         report = System.err;
+
+  private             WatchService        watcher = null;
+  private             Map<WatchKey, Path> keys = new HashMap<>();
+  private             Map<Path, FileTime> lastModified = new HashMap<>();
+  private             Map<Path, IncrementalToc> incrementals = new HashMap<>();
+
+  /**
+   Watch a single input file.
+
+   @param options    The transformation to be repeated.
+   @param sourceFile The file to be watched.
+   @param outputName The output file, or a hyphen for standard output.
+  */
+  public WatchTransformer (
+      TransformOptions options,
+      Path sourceFile,
+      String outputName) {
+
+    this.options = options;
+    this.sourceFile = sourceFile.toAbsolutePath().normalize();
+    this.outputName = outputName;
+  }
+
+  /**
+   Watch every matching file within a directory tree.
+
+   @param options The transformation to be repeated.
+   @param batch   The batch definition identifying the files to be watched,
+                  and where their output should go.
+  */
+  public WatchTransformer (
+      TransformOptions options,
+      BatchTransformer batch) {
+
+    this.options = options;
+    this.batch = batch;
+  }
+
+  /**
+   Set the quiet period that must pass before changed files are processed.
+
+   @param debounceMillis The quiet period, in milliseconds.
+  */
+  public void setDebounceMillis(long debounceMillis) {
+    this.debounceMillis = debounceMillis;
+  }
+
+  public void setReport(PrintStream report) {
+    this.report = report;
+  }
+
+  /**
+   Transform everything once, and then keep watching until the thread is
+   interrupted.
+
+   @throws IOException If the files cannot be watched.
+  */
+  public void watch()
+      throws IOException {
+
+    watcher = FileSystems.getDefault().newWatchService();
+    try {
+      if (batch == null) {
+        register(sourceFile.getParent());
+        transformSource(sourceFile);
+      } else {
+        registerTree(batch.getInputDir());
+        batch.run();
+      }
+      report.println("Watching for changes; press Ctrl-C to stop");
+
+      Set<Path> changed = new LinkedHashSet<>();
+      while (true) {
+        WatchKey key = watcher.take();
+        while (key != null) {
+          collectChanges(key, changed);
+          key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        for (Path path : changed) {
+          if (hasChanged(path)) {
+            transformSource(path);
+          }
+        }
+        changed.clear();
+      } // end while watching
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // Watching stopped from another thread
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   Stop watching.
+  */
+  public void close() {
+    if (watcher != null) {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        // Nothing more can be done
+      }
+    }
+  }
+
+  /**
+   Note the files affected by one batch of watch events.
+
+   @param key     The key for a watched directory.
+   @param changed The set of files to be transformed again.
+  */
+  private void collectChanges(WatchKey key, Set<Path> changed) {
+    Path dir = keys.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW || dir == null) {
+        continue;
+      }
+      Path path = dir.resolve((Path)event.context());
+      if (batch != null
+          && event.kind() == ENTRY_CREATE
+          && Files.isDirectory(path)) {
+        try {
+          registerTree(path);
+        } catch (IOException e) {
+          report.println("  Could not watch " + path + ": " + e.getMessage());
+        }
+      }
+      if (isWatched(path)) {
+        changed.add(path);
+      }
+    } // end for each event
+    if (! key.reset()) {
+      keys.remove(key);
+    }
+  }
+
+  private boolean isWatched(Path path) {
+    if (batch == null) {
+      return path.equals(sourceFile);
+    } else {
+      return batch.matches(path);
+    }
+  }
+
+  /**
+   Has the file been modified since it was last transformed? Some editors
+   generate several events for a single save.
+
+   @param path The file in question.
+   @return True if the file exists and its modification time has changed.
+  */
+  private boolean hasChanged(Path path) {
+    try {
+      FileTime modified = Files.getLastModifiedTime(path);
+      return ! modified.equals(lastModified.get(path));
+    } catch (IOException e) {
+      // The file has gone away
+      lastModified.remove(path);
+      return false;
+    }
+  }
+
+  /**
+   Transform one source file, reporting the outcome and the time taken.
+
+   @param path The source file.
+  */
+  private void transformSource(Path path) {
+    long startTime = System.nanoTime();
+    String outcome;
+    try {
+      lastModified.put(path, Files.getLastModifiedTime(path));
+    } catch (IOException e) {
+      // Carry on; the transform will report the problem
+    }
+    if (isIncremental()) {
+      outcome = transformIncrementally(path);
+    }
+    else
+    if (batch == null) {
+      HeadOutTransformer transformer = HeadoutCommandLine.createTransformer(options);
+      try {
+        transformer.transformNow(
+            HeadoutCommandLine.getReader(path.toString()),
+            HeadoutCommandLine.getWriter(outputName));
+        outcome = "ok  ";
+      } catch (TransformException e) {
+        outcome = "FAIL " + e.getMessage();
+      }
+    } else {
+      BatchTransformer.FileResult result = batch.transformFile(path);
+      if (result.ok) {
+        outcome = "ok  ";
+      } else {
+        outcome = "FAIL " + result.message;
+      }
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    report.println("  " + outcome + " " + path.getFileName()
+        + " (" + String.valueOf(millis) + " ms)");
+  }
+
+  /**
+   Can the transformation be performed incrementally?
+
+   @return True when generating a Table of Contents from Markdown.
+  */
+  private boolean isIncremental() {
+    return (! options.isPipeline())
+        && (options.getTransformTypeIndex()
+            == TransformOptions.MARKDOWN_TOC_FROM_MARKDOWN
+          || options.getTransformTypeIndex()
+            == TransformOptions.HTML_TOC_FROM_MARKDOWN);
+  }
+
+  /**
+   Bring a file's headings up to date, reparsing only what changed, and
+   write its Table of Contents.
+
+   @param path The source file.
+   @return The outcome, for reporting.
+  */
+  private String transformIncrementally(Path path) {
+    IncrementalToc incremental = incrementals.get(path);
+    if (incremental == null) {
+      incremental = new IncrementalToc();
+      incrementals.put(path, incremental);
+    }
+    TextLineWriter writer;
+    try {
+      String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+      incremental.update(text);
+      if (batch == null) {
+        writer = HeadoutCommandLine.getWriter(outputName);
+      } else {
+        Path target = batch.getOutputPath(path);
+        if (target.getParent() != null) {
+          Files.createDirectories(target.getParent());
+        }
+        writer = new FileMaker(target.toFile());
+      }
+    } catch (IOException e) {
+      incrementals.remove(path);
+      return "FAIL " + e.getMessage();
+    }
+    incremental.writeToc(writer, options);
+    return "ok   reparsed "
+        + String.valueOf(incremental.getReparsedChars()) + " of "
+        + String.valueOf(incremental.getLength()) + " chars,";
+  }
+
+  private void register(Path dir)
+      throws IOException {
+    WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+    keys.put(key, dir);
+  }
+
+  private void registerTree(Path top)
+      throws IOException {
+    Files.walkFileTree(top, new SimpleFileVisitor<Path>() {
+      public FileVisitResult preVisitDirectory(
+          Path dir, BasicFileAttributes attrs)
+          throws IOException {
+        register(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.textio.*;
+
+  import java.util.*;
+
+  import org.junit.*;
+
+  import static org.junit.Assert.*;
+
+/**
+ Checks that converting OPML to Markdown in a single streaming pass 
+ writes the same headings as the default conversion. 
+
+ @author Herb Bowie
+ */
+public class OPMLtoMarkdownTest {
+  
+  private static final String OPML 
+      = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<opml version=\"2.0\">\n"
+      + "<head><title>Entities</title></head>\n"
+      + "<body>\n"
+      + "<outline text=\"Fish &amp;amp; Chips\">\n"
+      + "<outline text=\"Caf&amp;#233; Menu\"/>\n"
+      + "</outline>\n"
+      + "<outline text=\"Table of Contents\"/>\n"
+      + "<outline text=\"Salt &amp;amp; Vinegar\"/>\n"
+      + "</body>\n"
+      + "</opml>\n";
+  
+  @Test
+  public void streamingKeepsEntitiesInHeadings() throws TransformException {
+    List<String> headings = getHeadings(convert(false));
+    assertEquals(4, headings.size());
+    assertTrue(headings.get(0).contains(">Fish &amp; Chips</h1>"));
+    assertTrue(headings.get(1).contains(">Caf&#233; Menu</h2>"));
+    assertEquals(headings, getHeadings(convert(true)));
+  }
+  
+  private static String convert(boolean streaming) 
+      throws TransformException {
+    TransformOptions options 
+        = new TransformOptions(TransformOptions.MARKDOWN_FROM_OPML);
+    options.setStreaming(streaming);
+    MemoryLineWriter lineWriter = new MemoryLineWriter();
+    new OPMLtoMarkdown(options).transformNow(
+        new StringLineReader(OPML), lineWriter);
+    return lineWriter.toString();
+  }
+  
+  /**
+   Pick out the HTML heading lines. 
+  */
+  private static List<String> getHeadings(String markdown) {
+    List<String> headings = new ArrayList<>();
+    for (String line : markdown.split("\n")) {
+      if (line.startsWith("<h") && line.length() > 2 
+          && Character.isDigit(line.charAt(2))) {
+        headings.add(line);
+      }
+    }
+    return headings;
+  }
+
+}
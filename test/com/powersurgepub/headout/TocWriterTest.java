@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.headout;
+
+  import com.powersurgepub.psutils2.txbio.*;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+  import org.junit.*;
+
+  import static org.junit.Assert.*;
+
+/**
+ Checks the layout of the Tables of Contents written by TocWriter. The 
+ baseline is the HTML Table of Contents found in the user guide, as 
+ written by HeadOut through MarkupWriter before TocWriter existed. 
+
+ @author Herb Bowie
+ */
+public class TocWriterTest {
+  
+  /** The headings of the user guide, as level, ID and text. */
+  private static final String[][] GUIDE_HEADINGS = {
+    {"2", "introduction",            "Introduction"},
+    {"2", "getting-started",         "Getting Started"},
+    {"3", "system-requirements",     "System Requirements"},
+    {"3", "rights",                  "Rights"},
+    {"3", "installation",            "Installation"},
+    {"3", "faster-startup",          "Faster Startup"},
+    {"2", "data-fields",             "Data Fields"},
+    {"2", "user-interface",          "User Interface"},
+    {"2", "command-line",            "Command Line"},
+    {"3", "serving-transformations", "Serving Transformations"}
+  };
+  
+  @Test
+  public void htmlMatchesBaseline() throws IOException {
+    String html = writeToc(MarkupWriter.HTML_FRAGMENT_FORMAT, false);
+    assertEquals(readBaseline("toc-baseline.html"), trimEnd(html));
+  }
+  
+  @Test
+  public void compactHtmlHasOneLinePerEntry() {
+    String html = writeToc(MarkupWriter.HTML_FRAGMENT_FORMAT, true);
+    assertTrue(html.startsWith("<div id=\"toc\">\n<ul>\n"
+        + "<li><a href=\"#introduction\">Introduction</a></li>\n"));
+    assertTrue(html.endsWith("</ul>\n</li>\n</ul>\n</div>\n"));
+  }
+  
+  @Test
+  public void markdownIsNested() {
+    String markdown = writeToc(MarkupWriter.MARKDOWN_FORMAT, false);
+    assertTrue(markdown.startsWith("* [Introduction](#introduction)\n"
+        + "* [Getting Started](#getting-started)\n"
+        + "    * [System Requirements](#system-requirements)\n"));
+  }
+  
+  /**
+   Write a Table of Contents for the user guide's headings. 
+  */
+  private static String writeToc(int markupFormat, boolean compact) {
+    MemoryLineWriter lineWriter = new MemoryLineWriter();
+    lineWriter.openForOutput();
+    TocWriter tocWriter = new TocWriter(lineWriter, markupFormat);
+    tocWriter.setCompact(compact);
+    tocWriter.start();
+    for (String[] heading : GUIDE_HEADINGS) {
+      tocWriter.addHeading(Integer.parseInt(heading[0]), heading[1], heading[2]);
+    }
+    tocWriter.finish();
+    lineWriter.close();
+    return lineWriter.toString();
+  }
+  
+  private String readBaseline(String name) throws IOException {
+    InputStream in = getClass().getResourceAsStream(name);
+    assertNotNull("Missing baseline " + name, in);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n = in.read(buffer);
+    while (n >= 0) {
+      bytes.write(buffer, 0, n);
+      n = in.read(buffer);
+    }
+    in.close();
+    return trimEnd(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+  
+  /**
+   Drop any blank lines at the end, which belong to whatever follows the 
+   Table of Contents. 
+  */
+  private static String trimEnd(String s) {
+    int end = s.length();
+    while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+      end--;
+    }
+    return s.substring(0, end);
+  }
+
+}